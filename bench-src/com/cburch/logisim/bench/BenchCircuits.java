@@ -0,0 +1,72 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.bench;
+
+import java.io.File;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+
+// Helpers for loading the circuits used by the benchmarks. A name like
+// "ripple64" refers to bench-src/circuits/ripple64.circ (see CircuitGenerator),
+// or to the same file in the directory given by -Dlogisim.bench.circuits.
+// Anything ending in ".circ" is taken to be a path.
+public class BenchCircuits {
+
+  public static final String DIR_PROPERTY = "logisim.bench.circuits";
+
+  public static File find(String name) {
+    if (name.endsWith(".circ"))
+      return new File(name);
+    String dir = System.getProperty(DIR_PROPERTY, "bench-src/circuits");
+    return new File(dir, name + ".circ");
+  }
+
+  public static LogisimFile.FileWithSimulations load(String name) throws Exception {
+    Main.headless = true;
+    Loader loader = new Loader(null);
+    return loader.openLogisimFile(find(name));
+  }
+
+  // Loads the circuit and sets up a root state for its main circuit, with
+  // the initial propagation done, just as the TTY interface does.
+  public static CircuitState simulate(String name) throws Exception {
+    LogisimFile.FileWithSimulations file = load(name);
+    Project proj = new Project(file);
+    CircuitState state = CircuitState.createRootState(proj,
+        file.file.getMainCircuit());
+    state.getPropagator().propagate();
+    return state;
+  }
+}
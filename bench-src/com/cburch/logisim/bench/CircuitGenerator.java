@@ -0,0 +1,366 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitMutation;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.Attribute;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.file.LoadCanceledByUser;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.Port;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.tools.AddTool;
+import com.cburch.logisim.tools.Library;
+
+// CircuitGenerator writes the synthetic circuits used by the benchmarks into
+// bench-src/circuits. Each is built through the usual Circuit API, then saved
+// like any other project, so port locations always come from the components
+// themselves. Every connection is made by placing a labeled Tunnel on a port,
+// and every component gets a cell of its own, so there are no wires to lay
+// out. All of them run forever from a single clock at the top.
+//
+//   ripple64   a 64-bit accumulator, built from 1-bit registers and full
+//              adders made of individual gates, so each tick ripples a carry
+//              through 64 stages
+//   tree8      a binary tree of subcircuits, 8 levels deep (511 states), with
+//              a toggling 1-bit register in each of the 256 leaves
+//   chain64    a single chain of subcircuits, 64 levels deep, with just one
+//              register at the bottom
+//   ram20      a 1M x 32 RAM, written at a new address on every tick
+//   wide64x32  32 lanes of 64-bit registers, adders and XOR gates
+//
+// Usage: CircuitGenerator [directory]
+public class CircuitGenerator {
+
+  private static final String TEMPLATE =
+      "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n"
+      + "<project source=\"4.0.4-HC\" version=\"1.0\">\n"
+      + "  <lib desc=\"#Wiring\" name=\"0\"/>\n"
+      + "  <lib desc=\"#Gates\" name=\"1\"/>\n"
+      + "  <lib desc=\"#Memory\" name=\"2\"/>\n"
+      + "  <lib desc=\"#Arithmetic\" name=\"3\"/>\n"
+      + "  <main name=\"main\"/>\n"
+      + "  <options>\n"
+      + "    <a name=\"simlimit\" val=\"10000\"/>\n"
+      + "  </options>\n"
+      + "  <circuit name=\"main\"/>\n"
+      + "</project>\n";
+
+  private static final int CELL_WIDTH = 400;
+  private static final int CELL_HEIGHT = 300;
+  private static final int CELLS_PER_ROW = 40;
+
+  // Builds one circuit. Components are queued in a CircuitMutation, and
+  // placed in cells left to right, top to bottom.
+  private class Builder {
+    final Circuit circuit;
+    final CircuitMutation xn;
+    int cells = 0;
+
+    Builder(Circuit circuit) {
+      this.circuit = circuit;
+      this.xn = new CircuitMutation(circuit);
+    }
+
+    Location nextCell() {
+      int i = cells++;
+      return Location.create(200 + (i % CELLS_PER_ROW) * CELL_WIDTH,
+          200 + (i / CELLS_PER_ROW) * CELL_HEIGHT);
+    }
+
+    Component add(ComponentFactory factory, String... attrs) {
+      AttributeSet a = factory.createAttributeSet();
+      for (int i = 0; i < attrs.length; i += 2)
+        set(a, attrs[i], attrs[i+1]);
+      Component c = factory.createComponent(nextCell(), a);
+      xn.add(c);
+      return c;
+    }
+
+    Component add(String lib, String name, String... attrs) {
+      return add(factory(lib, name), attrs);
+    }
+
+    // Connects the given end of a component to the net with the given label.
+    void tunnel(Component c, int end, String label, int width) {
+      Location loc = c.getEnd(end).getLocation();
+      AttributeSet a = tunnel.createAttributeSet();
+      set(a, "label", label);
+      set(a, "width", "" + width);
+      xn.add(tunnel.createComponent(loc, a));
+    }
+
+    // Connects the port of a subcircuit instance that belongs to the pin with
+    // the given label.
+    void tunnel(Component sub, String pin, String label) {
+      List<Port> ports = Instance.getInstanceFor(sub).getPorts();
+      for (int i = 0; i < ports.size(); i++) {
+        if (pin.equals(ports.get(i).getToolTip())) {
+          tunnel(sub, i, label, 1);
+          return;
+        }
+      }
+      throw new IllegalArgumentException("no pin " + pin + " in " + sub);
+    }
+
+    Component pin(String label, boolean output, int width) {
+      Component c = add("Wiring", "Pin", "label", label, "width", "" + width,
+          "type", output ? "output" : "input", "facing", output ? "west" : "east");
+      tunnel(c, 0, label, width);
+      return c;
+    }
+
+    void clock(String label) {
+      tunnel(add("Wiring", "Clock"), 0, label, 1);
+    }
+
+    void constant(String label, int width, int value) {
+      Component c = add("Wiring", "Constant", "width", "" + width,
+          "value", "0x" + Integer.toHexString(value));
+      tunnel(c, 0, label, width);
+    }
+
+    // A register, clocked by clk, with d as input and q as output.
+    void register(String d, String q, String clk, int width) {
+      Component c = add("Memory", "Register", "width", "" + width);
+      tunnel(c, 0, q, width); // OUT
+      tunnel(c, 1, d, width); // IN
+      tunnel(c, 2, clk, 1); // CK
+    }
+
+    // A two-input gate; ends are the output, then the inputs.
+    void gate(String name, String out, String in0, String in1, int width) {
+      Component c = add("Gates", name, "inputs", "2", "width", "" + width);
+      tunnel(c, 0, out, width);
+      tunnel(c, 1, in0, width);
+      tunnel(c, 2, in1, width);
+    }
+
+    void adder(String out, String in0, String in1, int width) {
+      Component c = add("Arithmetic", "Adder", "width", "" + width);
+      tunnel(c, 0, in0, width); // IN0
+      tunnel(c, 1, in1, width); // IN1
+      tunnel(c, 2, out, width); // OUT
+    }
+
+    void finish() {
+      xn.execute();
+    }
+  }
+
+  private final LogisimFile file;
+  private final HashMap<String, ComponentFactory> factories = new HashMap<>();
+  private final ComponentFactory tunnel;
+
+  private CircuitGenerator() throws IOException, LoadCanceledByUser {
+    Loader loader = new Loader(null);
+    file = loader.openLogisimFile(null, new ByteArrayInputStream(
+          TEMPLATE.getBytes(StandardCharsets.UTF_8))).file;
+    tunnel = factory("Wiring", "Tunnel");
+  }
+
+  private ComponentFactory factory(String lib, String name) {
+    String key = lib + "/" + name;
+    ComponentFactory f = factories.get(key);
+    if (f == null) {
+      Library l = file.getLibrary(lib);
+      f = ((AddTool)l.getTool(name)).getFactory();
+      factories.put(key, f);
+    }
+    return f;
+  }
+
+  private static void set(AttributeSet attrs, String name, String value) {
+    @SuppressWarnings("unchecked")
+    Attribute<Object> attr = (Attribute<Object>)attrs.getAttribute(name);
+    if (attr == null)
+      throw new IllegalArgumentException("no attribute " + name);
+    attrs.setAttr(attr, attr.parse(value));
+  }
+
+  private Builder main() {
+    return new Builder(file.getMainCircuit());
+  }
+
+  private Circuit newCircuit(String name) {
+    Circuit circ = new Circuit(name, file);
+    file.addCircuit(circ);
+    return circ;
+  }
+
+  private void save(File dir, String name) {
+    File dest = new File(dir, name + ".circ");
+    if (!file.save(dest, new Project(new LogisimFile.FileWithSimulations(file))))
+      throw new IllegalStateException("could not save " + dest);
+    System.out.println("wrote " + dest);
+  }
+
+  // q += K each tick, one full adder per bit, K = 0x5555...
+  private void ripple(int n) {
+    Builder b = main();
+    b.clock("clk");
+    b.constant("zero", 1, 0);
+    b.constant("one", 1, 1);
+    for (int i = 0; i < n; i++) {
+      String a = "q" + i, k = i % 2 == 0 ? "one" : "zero";
+      String cin = i == 0 ? "zero" : "c" + i;
+      b.register("s" + i, a, "clk", 1);
+      b.gate("XOR Gate", "x" + i, a, k, 1);
+      b.gate("XOR Gate", "s" + i, "x" + i, cin, 1);
+      b.gate("AND Gate", "g" + i, a, k, 1);
+      b.gate("AND Gate", "p" + i, "x" + i, cin, 1);
+      b.gate("OR Gate", "c" + (i+1), "g" + i, "p" + i, 1);
+    }
+    b.pin("q" + (n-1), true, 1);
+    b.pin("c" + n, true, 1);
+    b.finish();
+  }
+
+  // Each level has inputs a and clk, and output q. The leaf toggles a
+  // register whenever a is high.
+  private Circuit leaf() {
+    Circuit circ = newCircuit("leaf");
+    Builder b = new Builder(circ);
+    b.pin("a", false, 1);
+    b.pin("clk", false, 1);
+    b.pin("q", true, 1);
+    b.gate("XOR Gate", "d", "a", "q", 1);
+    b.register("d", "q", "clk", 1);
+    b.finish();
+    return circ;
+  }
+
+  // Each level above the leaf holds fanout instances of the level below,
+  // chained q to a.
+  private Circuit level(String name, Circuit below, int fanout) {
+    Circuit circ = newCircuit(name);
+    Builder b = new Builder(circ);
+    b.pin("a", false, 1);
+    b.pin("clk", false, 1);
+    b.pin("q", true, 1);
+    ComponentFactory f = below.getSubcircuitFactory();
+    for (int i = 0; i < fanout; i++) {
+      Component sub = b.add(f);
+      b.tunnel(sub, "a", i == 0 ? "a" : "t" + i);
+      b.tunnel(sub, "clk", "clk");
+      b.tunnel(sub, "q", i == fanout - 1 ? "q" : "t" + (i+1));
+    }
+    b.finish();
+    return circ;
+  }
+
+  private void hierarchy(int depth, int fanout) {
+    Circuit sub = leaf();
+    for (int i = 1; i <= depth; i++)
+      sub = level("level" + i, sub, fanout);
+    Builder b = main();
+    b.clock("clk");
+    b.constant("one", 1, 1);
+    Component top = b.add(sub.getSubcircuitFactory());
+    b.tunnel(top, "a", "one");
+    b.tunnel(top, "clk", "clk");
+    b.tunnel(top, "q", "q");
+    b.pin("q", true, 1);
+    b.finish();
+  }
+
+  private void ram(int addrBits, int dataBits) {
+    Builder b = main();
+    b.clock("clk");
+    b.constant("one", 1, 1);
+    b.constant("inc", addrBits, 1);
+    b.constant("step", dataBits, 0x9e3779b9);
+    b.register("addr_next", "addr", "clk", addrBits);
+    b.adder("addr_next", "addr", "inc", addrBits);
+    b.register("data_next", "data", "clk", dataBits);
+    b.adder("data_next", "data", "step", dataBits);
+    Component ram = b.add("Memory", "RAM", "addrWidth", "" + addrBits,
+        "dataWidth", "" + dataBits);
+    // separate data bus: DATA (out), ADDR, DIN, CLK, WE
+    b.tunnel(ram, 0, "out", dataBits);
+    b.tunnel(ram, 1, "addr", addrBits);
+    b.tunnel(ram, 2, "data", dataBits);
+    b.tunnel(ram, 3, "clk", 1);
+    b.tunnel(ram, 4, "one", 1);
+    b.pin("out", true, dataBits);
+    b.finish();
+  }
+
+  private void wide(int width, int lanes) {
+    Builder b = main();
+    b.clock("clk");
+    for (int i = 0; i < lanes; i++) {
+      b.constant("k" + i, width, 0x9e3779b9 * (2*i + 1));
+      b.register("d" + i, "q" + i, "clk", width);
+      b.adder("s" + i, "q" + i, "k" + i, width);
+      b.gate("XOR Gate", "d" + i, "s" + i, "q" + ((i + 1) % lanes), width);
+    }
+    b.pin("q0", true, width);
+    b.finish();
+  }
+
+  private interface Design {
+    void build(CircuitGenerator g);
+  }
+
+  private static void generate(File dir, String name, Design d)
+      throws IOException, LoadCanceledByUser {
+    CircuitGenerator g = new CircuitGenerator();
+    d.build(g);
+    g.save(dir, name);
+  }
+
+  public static void main(String[] args) throws IOException, LoadCanceledByUser {
+    Main.headless = true;
+    File dir = new File(args.length > 0 ? args[0] : "bench-src/circuits");
+    dir.mkdirs();
+    generate(dir, "ripple64", g -> g.ripple(64));
+    generate(dir, "tree8", g -> g.hierarchy(8, 2));
+    generate(dir, "chain64", g -> g.hierarchy(64, 1));
+    generate(dir, "ram20", g -> g.ram(20, 32));
+    generate(dir, "wide64x32", g -> g.wide(64, 32));
+    System.exit(0);
+  }
+}
@@ -0,0 +1,130 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.cburch.logisim.data.Value;
+
+// The Value operations that components and CircuitWires use most, over a
+// fixed pool of values of the given width. One value in four has unknown or
+// error bits, so both the fast paths and the slow paths get some use.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ValueBenchmark {
+
+  private static final int POOL = 1024; // a power of 2
+
+  @Param({ "1", "8", "32", "64" })
+  public int width;
+
+  private Value[] vals = new Value[POOL];
+  private int i = 0;
+
+  @Setup
+  public void setup() {
+    Random rand = new Random(width);
+    long mask = width == 64 ? -1L : (1L << width) - 1;
+    for (int k = 0; k < POOL; k++) {
+      long v = rand.nextLong() & mask;
+      if (k % 4 != 3) {
+        vals[k] = Value.createKnown(width, v);
+      } else {
+        long unknown = rand.nextLong() & mask & ~v;
+        long error = rand.nextLong() & mask & ~v & ~unknown & rand.nextLong();
+        vals[k] = Value.create_unsafe(width, error, unknown, v);
+      }
+    }
+  }
+
+  private Value next() {
+    i = (i + 1) & (POOL - 1);
+    return vals[i];
+  }
+
+  @Benchmark
+  public Value and() {
+    return next().and(next());
+  }
+
+  @Benchmark
+  public Value or() {
+    return next().or(next());
+  }
+
+  @Benchmark
+  public Value xor() {
+    return next().xor(next());
+  }
+
+  @Benchmark
+  public Value not() {
+    return next().not();
+  }
+
+  @Benchmark
+  public Value combine() {
+    return next().combine(next());
+  }
+
+  @Benchmark
+  public boolean equal() {
+    return Value.equal(next(), next());
+  }
+
+  @Benchmark
+  public Value createKnown() {
+    return Value.createKnown(width, i++);
+  }
+
+  @Benchmark
+  public void getAll(Blackhole bh) {
+    bh.consume(next().getAll());
+  }
+}
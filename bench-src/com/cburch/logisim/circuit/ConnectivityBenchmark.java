@@ -0,0 +1,88 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.cburch.logisim.bench.BenchCircuits;
+
+// Time for CircuitWires.computeConnectivity() to build the connectivity map
+// of every circuit in the project from scratch, as after loading a file. This
+// lives in the circuit package, as CircuitWires isn't public. Like any edit,
+// it runs on the AWT thread.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class ConnectivityBenchmark {
+
+  @Param({ "ripple64", "tree8", "chain64", "ram20", "wide64x32" })
+  public String circuit;
+
+  private Circuit[] circuits;
+  private int incompatibilities;
+
+  @Setup
+  public void setup() throws Exception {
+    circuits = BenchCircuits.load(circuit).file.getCircuits().toArray(new Circuit[0]);
+  }
+
+  @Benchmark
+  public int computeConnectivity() throws Exception {
+    SwingUtilities.invokeAndWait(() -> {
+      incompatibilities = 0;
+      for (Circuit circ : circuits) {
+        circ.wires.discardConnectivity();
+        Set<WidthIncompatibilityData> errs = circ.wires.getWidthIncompatibilityData();
+        if (errs != null)
+          incompatibilities += errs.size();
+      }
+    });
+    return incompatibilities;
+  }
+}
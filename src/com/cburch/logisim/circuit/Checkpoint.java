@@ -0,0 +1,249 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import com.cburch.logisim.comp.Checkpointable;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+// A compact binary snapshot of a running simulation: the state of every
+// component in a CircuitState tree (register and memory contents, clock
+// phases, pin values, etc.), plus the value each component is driving onto
+// each bus, and the clock tick count. Restoring a checkpoint into a fresh
+// root state for the same circuit resumes the simulation exactly where it
+// was saved, e.g. to boot a machine once and then start many test runs from
+// the booted state.
+//
+// Components are identified by factory name and location, the same as for
+// the non-volatile state saved by XmlWriter, so a checkpoint is only valid
+// for the circuit design it was taken from. Only component state implementing
+// Checkpointable is saved. Checkpoints should be taken between propagation
+// steps (e.g. after Propagator.propagate() returns, or with the simulator
+// thread stopped), since pending events are not saved.
+//
+// Format: magic, version, root circuit name, tick count, then the root state:
+//   int n, then n times: UTF key, byte kind, and either a nested state (for a
+//     subcircuit) or the component's own checkpoint data;
+//   int m, then m times: UTF key, int x, int y, Value driven at (x, y).
+public class Checkpoint {
+
+  private static final int MAGIC = 0x4c474b50; // "LGKP"
+  private static final int VERSION = 2; // 2: Random state holds a long
+
+  private static final int KIND_SUBSTATE = 1;
+  private static final int KIND_DATA = 2;
+
+  public static void save(CircuitState root, File file) throws IOException {
+    try (OutputStream out = new FileOutputStream(file)) {
+      save(root, out);
+    }
+  }
+
+  public static void save(CircuitState root, OutputStream dest) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(dest, 1 << 16));
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeUTF(root.getCircuit().getName());
+    out.writeInt(root.getPropagator().getTickCount());
+    writeState(root, out);
+    out.flush();
+  }
+
+  public static void restore(CircuitState root, File file) throws IOException {
+    try (InputStream in = new FileInputStream(file)) {
+      restore(root, in);
+    }
+  }
+
+  // Resets root and its propagator, then loads the saved state into it. The
+  // caller must ensure that nothing else is simulating root at the time.
+  public static void restore(CircuitState root, InputStream src) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(src, 1 << 16));
+    if (in.readInt() != MAGIC)
+      throw new IOException("not a simulation checkpoint");
+    int version = in.readInt();
+    if (version != VERSION)
+      throw new IOException("unsupported checkpoint version " + version);
+    String name = in.readUTF();
+    if (!name.equals(root.getCircuit().getName()))
+      throw new IOException("checkpoint is for circuit \"" + name
+          + "\", not \"" + root.getCircuit().getName() + "\"");
+    int ticks = in.readInt();
+
+    // Propagating once after the reset brings every substate, every
+    // component's state object, and every bus into existence, so there is
+    // something to restore into. Once restored, all components are
+    // propagated again, and they reproduce exactly the values they were
+    // driving when the checkpoint was taken.
+    Propagator prop = root.getPropagator();
+    prop.reset();
+    prop.propagate();
+    readState(root, in);
+    prop.setTickCount(ticks);
+    prop.propagate();
+  }
+
+  private static String key(Component comp) {
+    return comp.getFactory().getName() + "@" + comp.getLocation();
+  }
+
+  // Maps keys to components. Keys shared by several components (e.g. stacked
+  // on top of each other) are left out, so those components are never saved.
+  private static HashMap<String, Component> index(Circuit circuit) {
+    HashMap<String, Component> index = new HashMap<>();
+    HashSet<String> dups = new HashSet<>();
+    for (Component comp : circuit.getNonWires()) {
+      String k = key(comp);
+      if (index.put(k, comp) != null)
+        dups.add(k);
+    }
+    for (String k : dups)
+      index.remove(k);
+    return index;
+  }
+
+  private static void writeState(CircuitState state, DataOutputStream out)
+      throws IOException {
+    HashMap<String, Component> index = index(state.getCircuit());
+
+    ArrayList<Component> comps = new ArrayList<>();
+    for (Component comp : state.getCircuit().getNonWires()) {
+      if (index.get(key(comp)) != comp)
+        continue;
+      Object data = state.getData(comp);
+      if (data instanceof CircuitState || data instanceof Checkpointable)
+        comps.add(comp);
+    }
+    out.writeInt(comps.size());
+    for (Component comp : comps) {
+      Object data = state.getData(comp);
+      out.writeUTF(key(comp));
+      if (data instanceof CircuitState) {
+        out.writeByte(KIND_SUBSTATE);
+        writeState((CircuitState) data, out);
+      } else {
+        out.writeByte(KIND_DATA);
+        ((Checkpointable) data).writeCheckpoint(out);
+      }
+    }
+
+    ArrayList<CircuitWires.BusConnection> driven = new ArrayList<>();
+    CircuitWires.State wires = state.getWireData();
+    if (wires != null) {
+      for (CircuitWires.ValuedBus vb : wires.buses)
+        for (CircuitWires.BusConnection bc : vb.connections)
+          if (bc.drivenValue != null && index.get(key(bc.component)) == bc.component)
+            driven.add(bc);
+    }
+    out.writeInt(driven.size());
+    for (CircuitWires.BusConnection bc : driven) {
+      out.writeUTF(key(bc.component));
+      out.writeInt(bc.location.getX());
+      out.writeInt(bc.location.getY());
+      bc.drivenValue.write(out);
+    }
+  }
+
+  private static Component lookup(HashMap<String, Component> index,
+      String key, CircuitState state) throws IOException {
+    Component comp = index.get(key);
+    if (comp == null)
+      throw new IOException("checkpoint component " + key
+          + " not found in circuit \"" + state.getCircuit().getName() + "\"");
+    return comp;
+  }
+
+  private static void readState(CircuitState state, DataInputStream in)
+      throws IOException {
+    HashMap<String, Component> index = index(state.getCircuit());
+
+    int n = in.readInt();
+    for (int i = 0; i < n; i++) {
+      String key = in.readUTF();
+      int kind = in.readByte();
+      Component comp = lookup(index, key, state);
+      Object data = state.getData(comp);
+      if (kind == KIND_SUBSTATE && data instanceof CircuitState)
+        readState((CircuitState) data, in);
+      else if (kind == KIND_DATA && data instanceof Checkpointable)
+        ((Checkpointable) data).readCheckpoint(in);
+      else
+        throw new IOException("checkpoint state for " + key
+            + " does not match circuit \"" + state.getCircuit().getName() + "\"");
+    }
+
+    CircuitWires.State wires = state.getWireData();
+    int m = in.readInt();
+    for (int i = 0; i < m; i++) {
+      String key = in.readUTF();
+      Location loc = Location.create(in.readInt(), in.readInt());
+      Value val = Value.read(in);
+      Component comp = lookup(index, key, state);
+      CircuitWires.ValuedBus vb = wires == null ? null : wires.busAt.get(loc);
+      if (vb == null)
+        throw new IOException("checkpoint bus at " + loc
+            + " not found in circuit \"" + state.getCircuit().getName() + "\"");
+      for (CircuitWires.BusConnection bc : vb.connections) {
+        if (bc.component == comp && bc.location.equals(loc)) {
+          bc.drivenValue = val;
+          break;
+        }
+      }
+      wires.markDirty(vb);
+      if (vb.dependentBuses != null)
+        for (CircuitWires.ValuedBus dep : vb.dependentBuses)
+          wires.markDirty(dep);
+    }
+
+    // Settle the buses before any component looks at them. Otherwise, e.g., a
+    // register whose clock was high at the checkpoint would first see the
+    // (low) clock left over from the reset, and then a spurious rising edge.
+    if (wires != null)
+      state.getCircuit().wires.propagate(state, new ArrayList<>());
+    state.markAllComponentsDirty();
+  }
+
+}
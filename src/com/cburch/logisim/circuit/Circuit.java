@@ -249,7 +249,13 @@ public class Circuit implements AttributeDefaultProvider {
    */
   public void doTestVector(Project project, Instance pin[], Value[] val)
       throws TestException {
-    CircuitState state = project.getCircuitState();
+    doTestVector(project.getCircuitState(), pin, val);
+  }
+
+  // Runs one test vector row against an explicit root state, so that several
+  // independent states (e.g. one per batch job) can be tested concurrently.
+  public void doTestVector(CircuitState state, Instance pin[], Value[] val)
+      throws TestException {
     state.reset();
 
     for (int i = 0; i < pin.length; ++i) {
@@ -581,6 +587,7 @@ public class Circuit implements AttributeDefaultProvider {
       ComponentFactory factory = c.getFactory();
       if (factory instanceof Clock) {
         clocks.add(c);
+        CircuitState.clocksChanged();
       } else if (factory instanceof SubcircuitFactory) {
         SubcircuitFactory subcirc = (SubcircuitFactory) factory;
         subcirc.getSubcircuit().circuitsUsingThis.put(c, this);
@@ -601,6 +608,7 @@ public class Circuit implements AttributeDefaultProvider {
     comps = new HashSet<Component>();
     wires = new CircuitWires();
     clocks.clear();
+    CircuitState.clocksChanged();
     for (Component comp : oldComps) {
       if (comp.getFactory() instanceof SubcircuitFactory) {
         SubcircuitFactory sub = (SubcircuitFactory) comp.getFactory();
@@ -625,6 +633,7 @@ public class Circuit implements AttributeDefaultProvider {
       ComponentFactory factory = c.getFactory();
       if (factory instanceof Clock) {
         clocks.remove(c);
+        CircuitState.clocksChanged();
       } else if (factory instanceof Rom) {
         Rom.closeHexFrame(c);
       } else if (factory instanceof SubcircuitFactory) {
@@ -32,11 +32,13 @@ package com.cburch.logisim.circuit;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // import com.cburch.logisim.circuit.Propagator.DrivenValue;
 import com.cburch.logisim.comp.Component;
@@ -104,7 +106,7 @@ public class CircuitState implements InstanceData {
           if (substate != null && substate.parentComp == comp) {
             synchronized (dirtyLock) {
               substates.remove(substate);
-              substatesDirty = true;
+              substatesChanged();
             }
             substate.parentState = null;
             substate.parentComp = null;
@@ -137,17 +139,20 @@ public class CircuitState implements InstanceData {
         knownClocks = false;
         wireData = null;
         componentData.clear();
-        synchronized (valuesLock) {
-          slowpath_values.clear(); // slow path
-          clearFastpathGrid(); // fast path
-        }
+        values.clear();
         synchronized (dirtyLock) {
           dirtyComponents.clear();
           dirtyPoints.clear();
           // dirtyPointVals.clear();
           substates.clear();
-          substatesWorking = new CircuitState[0];
-          substatesDirty = true;
+          substatesWorking = new ArrayList<>();
+          substatesChanged();
+          for (CircuitState sub : pointSubstates)
+            sub.queuedForPoints = false;
+          for (CircuitState sub : componentSubstates)
+            sub.queuedForComponents = false;
+          pointSubstates.clear();
+          componentSubstates.clear();
         }
         // slowpath_drivers.clear();
       }
@@ -185,7 +190,7 @@ public class CircuitState implements InstanceData {
             sub.parentState = null;
             synchronized (dirtyLock) {
               substates.remove(sub);
-              substatesDirty = true;
+              substatesChanged();
             }
           }
         }
@@ -204,18 +209,15 @@ public class CircuitState implements InstanceData {
   private CircuitWires.State wireData;
   private HashMap<Component, Object> componentData = new HashMap<>();
   
-  private static final int FASTPATH_GRID_WIDTH = 200;
-  private static final int FASTPATH_GRID_HEIGHT = 200;
-
-  // slowpath_values and fastpath_values store values resulting from propagation
+  // values stores the values resulting from propagation
   // *within* this circuit, i.e. the outputs of componnents in this circuit
   // together with the values carried on wires and buses in this circuit. When
   // components embedded in this circuit are called upon to re-calculate /
   // propagate, the components will call getValue() to pick out values from
-  // these data structures. These are the values you would see if you stick a
-  // probe at some location on the circuit sheet.
-  Map<Location, Value> slowpath_values = new HashMap<>(); // protected by valuesLock
-  Value[][] fastpath_values = new Value[FASTPATH_GRID_HEIGHT][FASTPATH_GRID_WIDTH]; // protected by valuesLock
+  // this data structure. These are the values you would see if you stick a
+  // probe at some location on the circuit sheet. Only the simulator thread
+  // writes here, and reads never block (see ValueStore).
+  private final ValueStore values = new ValueStore();
 
   // slowpath_drivers and fastpass_drivers store {component,value} pairs for each
   // component that is currently emitting a value *into* this circuit, i.e.
@@ -228,8 +230,6 @@ public class CircuitState implements InstanceData {
   // HashMap<Location, DrivenValue> slowpath_drivers = new HashMap<>(); // used by Propagator, protected by valuesLock
   // DrivenValue[][] fastpath_drivers = new DrivenValue[FASTPATH_GRID_HEIGHT][FASTPATH_GRID_WIDTH]; // used by Propagator, protected by valuesLock
 
-  Object valuesLock = new Object();
-
   // HashSet<Propagator.ComponentPoint> visited = new HashSet<>(); // used by Propagator
   // int visitedNonce; // used by Propagator;
   // The visited member holds the set of every [component,loc] pair (where the
@@ -247,9 +247,22 @@ public class CircuitState implements InstanceData {
   private HashSet<CircuitState> substates = new HashSet<>(); // protected by dirtyLock
   private Object dirtyLock = new Object();
 
+  // pointSubstates and componentSubstates hold those substates that have (or
+  // have descendants that have) pending dirty points or dirty components,
+  // respectively, so that processDirtyPoints() and processDirtyComponents()
+  // can skip over clean subtrees. A substate is in its parent's list iff the
+  // corresponding queuedFor flag is set, and both are protected by the
+  // parent's dirtyLock. See notifyDirtyPoints() and notifyDirtyComponents().
+  private ArrayList<CircuitState> pointSubstates = new ArrayList<>(); // protected by dirtyLock
+  private ArrayList<CircuitState> componentSubstates = new ArrayList<>(); // protected by dirtyLock
+  private boolean queuedForPoints, queuedForComponents; // protected by parentState.dirtyLock
+
 
-  private static int lastId = 0;
-  private int id = lastId++;
+  // States are created on many threads at once (test batches, server
+  // sessions), and ids must stay unique, since they fix the order substates
+  // are visited in (see BY_ID).
+  private static final AtomicInteger lastId = new AtomicInteger();
+  private int id = lastId.getAndIncrement();
 
   private CircuitState(Project proj, Circuit circuit, Propagator prop) {
     this.proj = proj;
@@ -290,12 +303,19 @@ public class CircuitState implements InstanceData {
       // (b/c no other threads have a reference to this yet), and to avoid the
       // possibility of deadlock (though that shouldn't happen either since no
       // other threads have references to this yet).
-      for (CircuitState oldSub : src.substates) {
+      // copies get fresh ids, handed out in the originals' order, so the
+      // copy visits its substates in the same order as the original
+      ArrayList<CircuitState> oldSubs = new ArrayList<>(src.substates);
+      oldSubs.sort(BY_ID);
+      for (CircuitState oldSub : oldSubs) {
         CircuitState newSub = new CircuitState(src.proj, oldSub.circuit, this.base);
         newSub.copyFrom(oldSub);
         newSub.parentState = this;
         this.substates.add(newSub);
-        this.substatesDirty = true;
+        this.substatesChanged();
+        newSub.queuedForPoints = newSub.queuedForComponents = true;
+        this.pointSubstates.add(newSub);
+        this.componentSubstates.add(newSub);
         substateData.put(oldSub, newSub);
       }
     }
@@ -318,29 +338,21 @@ public class CircuitState implements InstanceData {
       }
     }
     // Propagator.copyDrivenValues(this, src);
-    // note: we don't bother with our this.valuesLock here: it isn't needed
-    // (b/c no other threads have a reference to this yet), and to avoid the
-    // possibility of deadlock (though that shouldn't happen either since no
-    // other threads have references to this yet).
-    this.slowpath_values.clear(); // slow path
-    synchronized (src.valuesLock) {
-      this.slowpath_values.putAll(src.slowpath_values); // slow path
-      for(int y = 0; y < FASTPATH_GRID_HEIGHT; y++) { // fast path
-        System.arraycopy(src.fastpath_values[y], 0,
-            this.fastpath_values[y], 0, FASTPATH_GRID_WIDTH);
-      }
-    }
+    this.values.copyFrom(src.values);
     synchronized(src.dirtyLock) {
       // note: we don't bother with our this.dirtyLock here: it isn't needed
       // (b/c no other threads have a reference to this yet), and to avoid the
       // possibility of deadlock (though that shouldn't happen either since no
       // other threads have references to this yet).
       this.dirtyComponents.addAll(src.dirtyComponents);
-      this.dirtyPoints.addAll(src.dirtyPoints);
+      // events are owned (and recycled) by a single propagator, so copy them
+      for (Propagator.SimulatorEvent ev : src.dirtyPoints)
+        this.dirtyPoints.add(ev.cloneFor(this));
       // this.dirtyPointVals.addAll(src.dirtyPointVals);
     }
     if (src.wireData != null) {
       this.wireData = circuit.wires.newState(this); // all buses will be marked as dirty
+      this.values.useIndex(this.wireData.getLocationIndex());
       // this.wireData = (CircuitWires.State) src.wireData.clone();
     }
   }
@@ -413,23 +425,7 @@ public class CircuitState implements InstanceData {
   }
 
   public Value getValue(Location p) {
-    Value v = null;
-    if (p.x >= 0 && p.y >= 0
-        && p.x % 10 == 0 && p.y % 10 == 0
-        && p.x < FASTPATH_GRID_WIDTH*10
-        && p.y < FASTPATH_GRID_HEIGHT*10) {
-      // fast path
-      int x = p.x/10;
-      int y = p.y/10;
-      synchronized (valuesLock) {
-        v = fastpath_values[y][x];
-      }
-    } else {
-      // slow path
-      synchronized (valuesLock) {
-        v = slowpath_values.get(p);
-      }
-    }
+    Value v = values.get(p);
     if (v != null)
       return v;
     v = CircuitWires.getBusValue(this, p);
@@ -446,28 +442,76 @@ public class CircuitState implements InstanceData {
     return parentState != null;
   }
 
-  private void markAllComponentsDirty() {
+  void markAllComponentsDirty() {
     synchronized (dirtyLock) {
       dirtyComponents.addAll(circuit.getNonWires());
     }
+    notifyDirtyComponents();
   }
 
   public void markComponentAsDirty(Component comp) {
+    if (base.markCompiled(this, comp))
+      return;
     synchronized (dirtyLock) {
       dirtyComponents.add(comp);
     }
+    notifyDirtyComponents();
   }
 
   public void markComponentsDirty(Collection<Component> comps) {
     synchronized (dirtyLock) {
       dirtyComponents.addAll(comps);
     }
+    notifyDirtyComponents();
   }
 
   void markPointAsDirty(Propagator.SimulatorEvent ev) {
     synchronized(dirtyLock) {
       dirtyPoints.add(ev);
     }
+    notifyDirtyPoints();
+  }
+
+  // Ensure each ancestor will descend into this state during the next
+  // processDirtyPoints(). The walk stops at the first state that is already
+  // queued in its parent, as everything above it must be queued too. Note
+  // that the queuedFor flag is cleared (by the parent) before the state is
+  // processed, so anything marked dirty during processing gets re-queued.
+  private void notifyDirtyPoints() {
+    CircuitState child = this;
+    CircuitState parent = parentState;
+    while (parent != null) {
+      synchronized (parent.dirtyLock) {
+        if (child.queuedForPoints)
+          return;
+        child.queuedForPoints = true;
+        parent.pointSubstates.add(child);
+      }
+      child = parent;
+      parent = parent.parentState;
+    }
+  }
+
+  // Same as notifyDirtyPoints(), but for processDirtyComponents().
+  private void notifyDirtyComponents() {
+    CircuitState child = this;
+    CircuitState parent = parentState;
+    while (parent != null) {
+      synchronized (parent.dirtyLock) {
+        if (child.queuedForComponents)
+          return;
+        child.queuedForComponents = true;
+        parent.componentSubstates.add(child);
+      }
+      child = parent;
+      parent = parent.parentState;
+    }
+  }
+
+  // Substates that get attached to this state may already have pending work.
+  private void notifyDirtySubstate(CircuitState sub) {
+    sub.notifyDirtyPoints();
+    sub.notifyDirtyComponents();
   }
 
   // DEBUG: private void dumpDirty() {
@@ -490,8 +534,11 @@ public class CircuitState implements InstanceData {
   // DEBUG: }
 
   ArrayList<Component> dirtyComponentsWorking = new ArrayList<>();
+  private ArrayList<CircuitState> componentSubstatesWorking = new ArrayList<>();
   // DEBUG: void processDirtyComponents() { processDirtyComponents("-="); }
-  void processDirtyComponents(/* DEBUG: String tab */) {
+  // If all is true, every substate is visited, otherwise only those that
+  // have queued themselves in componentSubstates.
+  void processDirtyComponents(boolean all /* DEBUG: , String tab */) {
     // DEBUG: System.out.printf(tab+" Start of processDirtyComponents(%s)\n", this);
     // DEBUG: System.out.printf(tab+" NOTE: parentState = %s\n", parentState);
     if (!dirtyComponentsWorking.isEmpty())
@@ -500,22 +547,24 @@ public class CircuitState implements InstanceData {
       ArrayList<Component> other = dirtyComponents;
       dirtyComponents = dirtyComponentsWorking; // dirtyComponents is now empty
       dirtyComponentsWorking = other; // working set is now ready to process
-      if (substatesDirty) {
-        substatesDirty = false;
-        substatesWorking = substates.toArray(substatesWorking);
-			}
+      ArrayList<CircuitState> otherSubs = componentSubstates;
+      componentSubstates = componentSubstatesWorking; // now empty
+      componentSubstatesWorking = otherSubs; // ready to process
+      for (CircuitState sub : componentSubstatesWorking)
+        sub.queuedForComponents = false;
+      updateSubstatesWorking();
       // DEBUG: dumpDirty();
     }
+    componentSubstatesWorking.sort(BY_ID);
+
+    base.stateVisited();
 
     // DEBUG: boolean finished = false, progress = false;
     try { // comp.propagate() can fail if external (or std) library is buggy
       for (Component comp : dirtyComponentsWorking) {
         // DEBUG: progress = true;
 				// DEBUG: System.out.printf("Propagating (from %s) for dirty component %s\n", this, comp);
-        comp.propagate(this);
-        // pin values also get propagated to parent state
-        if (comp.getFactory() instanceof Pin && parentState != null)
-          parentComp.propagate(parentState);
+        propagateComponent(comp);
       }
       // DEBUG: finished = true;
     } finally {
@@ -528,14 +577,11 @@ public class CircuitState implements InstanceData {
     // DEBUG:   dumpDirty();
 
     // DEBUG: boolean moreprogress = false;
-    for (CircuitState substate : substatesWorking) {
-      // DEBUG: moreprogress = true;
-			// DEBUG: System.out.printf("Recurse down for substate %s\n", substate);
-      if (substate == null)
-        break;
-      // DEBUG: substate.processDirtyComponents(tab+"==");
-      substate.processDirtyComponents();
-			// DEBUG: System.out.printf("Done recurse for substate %s\n", substate);
+    try {
+      processSubstates(all ? substatesWorking : componentSubstatesWorking,
+          false, all);
+    } finally {
+      componentSubstatesWorking.clear();
     }
 
     // DEBUG: if (moreprogress)
@@ -547,9 +593,12 @@ public class CircuitState implements InstanceData {
   // private ArrayList<Location> dirtyPointsWorking = new ArrayList<>();
   // private ArrayList<Value> dirtyPointValsWorking = new ArrayList<>();
   private ArrayList<Propagator.SimulatorEvent> dirtyPointsWorking = new ArrayList<>();
-  private CircuitState[] substatesWorking = new CircuitState[0];
+  private ArrayList<CircuitState> substatesWorking = new ArrayList<>();
   private boolean substatesDirty = true;
-  void processDirtyPoints() {
+  private ArrayList<CircuitState> pointSubstatesWorking = new ArrayList<>();
+  // If all is true, every substate is visited, otherwise only those that
+  // have queued themselves in pointSubstates.
+  void processDirtyPoints(boolean all) {
     if (!dirtyPointsWorking.isEmpty())
       throw new IllegalStateException("INTERNAL ERROR: dirtyPointsWorking not empty");
     synchronized (dirtyLock) {
@@ -559,11 +608,14 @@ public class CircuitState implements InstanceData {
       // dirtyPointVals = dirtyPointValsWorking; // dirtyPointVals is now empty
       dirtyPointsWorking = other; // working set is now ready to process
       // dirtyPointValsWorking = otherVals; // working set is now ready to process
-      if (substatesDirty) {
-        substatesDirty = false;
-        substatesWorking = substates.toArray(substatesWorking);
-      }
+      ArrayList<CircuitState> otherSubs = pointSubstates;
+      pointSubstates = pointSubstatesWorking; // now empty
+      pointSubstatesWorking = otherSubs; // ready to process
+      for (CircuitState sub : pointSubstatesWorking)
+        sub.queuedForPoints = false;
+      updateSubstatesWorking();
     }
+    pointSubstatesWorking.sort(BY_ID);
     // Note: When a new wire map is created (because wires or splitters have
     // changed, for example), we need to mark all the splitter locations as
     // dirty. This used to be handled here by detecting when the map was voided,
@@ -598,18 +650,145 @@ public class CircuitState implements InstanceData {
     //     }
     //   }
     // }
+    base.stateVisited();
     // if (!dirtyPointsWorking.isEmpty()) {
       // circuit.wires.propagate(this, dirtyPointsWorking, dirtyPointValsWorking);
       circuit.wires.propagate(this, dirtyPointsWorking);
+      // the events have now been consumed, so hand them back to the propagator
+      for (int i = dirtyPointsWorking.size() - 1; i >= 0; i--)
+        base.recycle(dirtyPointsWorking.get(i));
       dirtyPointsWorking.clear();
       // dirtyPointValsWorking.clear();
     // }
 
-    for (CircuitState substate : substatesWorking) {
-      if (substate == null)
-        break;
-      substate.processDirtyPoints();
+    try {
+      processSubstates(all ? substatesWorking : pointSubstatesWorking,
+          true, all);
+    } finally {
+      pointSubstatesWorking.clear();
+    }
+  }
+
+  // Substates are always visited in order of id, so the walk (and hence the
+  // order in which events get created) is the same no matter what order the
+  // substates were queued in, and no matter how many threads are used.
+  private static final Comparator<CircuitState> BY_ID =
+      (a, b) -> Integer.compare(a.id, b.id);
+
+  // Incremented whenever a clock is added to or removed from any circuit, or
+  // has its durations changed, so that Propagator can tell when its
+  // ClockTable is out of date. Circuits are shared by every simulation of a
+  // project, so this is global, and atomic, as edits and loads can happen on
+  // several threads at once. Changes to the shape of one simulation's tree of
+  // states are tracked by its own Propagator instead (see treeChanged).
+  private static final AtomicInteger clockEpoch = new AtomicInteger();
+
+  static int getClockEpoch() {
+    return clockEpoch.get();
+  }
+
+  public static void clocksChanged() {
+    clockEpoch.incrementAndGet();
+  }
+
+  private void substatesChanged() { // precondition: dirtyLock held
+    substatesDirty = true;
+    base.treeChanged();
+  }
+
+  private void updateSubstatesWorking() { // precondition: dirtyLock held
+    if (substatesDirty) {
+      substatesDirty = false;
+      substatesWorking.clear();
+      substatesWorking.addAll(substates);
+      substatesWorking.sort(BY_ID);
+    }
+  }
+
+  // Recurse into the given substates, either one after another, or split
+  // across worker threads (see Propagator.fork).
+  private void processSubstates(ArrayList<CircuitState> subs,
+      boolean points, boolean all) {
+    if (base.canFork(subs.size())) {
+      base.fork(this, subs, points, all);
+      return;
     }
+    for (CircuitState sub : subs)
+      processSubstate(sub, points, all);
+  }
+
+  void processSubstate(CircuitState sub, boolean points, boolean all) {
+    if (sub.parentState != this) // skip if detached meanwhile
+      return;
+    if (points)
+      sub.processDirtyPoints(all);
+    else
+      sub.processDirtyComponents(all);
+  }
+
+  // Hand every pending dirty component in this subtree over to the compiled
+  // schedule instead of propagating it (see Propagator.propagateCompiled).
+  void drainDirtyComponents(CompiledSchedule sched) {
+    if (!dirtyComponentsWorking.isEmpty())
+      throw new IllegalStateException("INTERNAL ERROR: dirtyComponentsWorking not empty");
+    synchronized (dirtyLock) {
+      ArrayList<Component> other = dirtyComponents;
+      dirtyComponents = dirtyComponentsWorking; // dirtyComponents is now empty
+      dirtyComponentsWorking = other; // working set is now ready to drain
+      ArrayList<CircuitState> otherSubs = componentSubstates;
+      componentSubstates = componentSubstatesWorking; // now empty
+      componentSubstatesWorking = otherSubs; // ready to drain
+      for (CircuitState sub : componentSubstatesWorking)
+        sub.queuedForComponents = false;
+    }
+    componentSubstatesWorking.sort(BY_ID);
+    base.stateVisited();
+    try {
+      for (Component comp : dirtyComponentsWorking) {
+        if (!sched.mark(this, comp))
+          propagateComponent(comp); // not scheduled, so do it now
+      }
+    } finally {
+      dirtyComponentsWorking.clear();
+    }
+    try {
+      for (CircuitState sub : componentSubstatesWorking) {
+        if (sub.parentState == this) // skip if detached meanwhile
+          sub.drainDirtyComponents(sched);
+      }
+    } finally {
+      componentSubstatesWorking.clear();
+    }
+  }
+
+  void propagateComponent(Component comp) {
+    PropagationProfile profile = base.profile;
+    if (profile == null) {
+      comp.propagate(this);
+    } else {
+      long t = System.nanoTime();
+      comp.propagate(this);
+      profile.evaluated(this, comp, System.nanoTime() - t);
+    }
+    // pin values also get propagated to parent state
+    if (comp.getFactory() instanceof Pin && parentState != null)
+      propagateParentComp();
+  }
+
+  // Like parentComp.propagate(parentState), but that would use the parent's
+  // reusableInstanceState, which sibling substates may be using concurrently
+  // (see Propagator.fork). So each substate keeps its own.
+  private InstanceStateImpl parentInstanceState;
+
+  private void propagateParentComp() {
+    if (!(parentComp instanceof InstanceComponent)) {
+      parentComp.propagate(parentState);
+      return;
+    }
+    if (parentInstanceState == null)
+      parentInstanceState = new InstanceStateImpl(parentState, null);
+    parentInstanceState.repurpose(parentState, parentComp);
+    ((InstanceFactory)parentComp.getFactory()).propagate(parentInstanceState);
   }
 
   public void reset() {
@@ -626,10 +805,7 @@ public class CircuitState implements InstanceData {
         it.remove();
       }
     }
-    synchronized (valuesLock) {
-      slowpath_values.clear(); // slow path
-      clearFastpathGrid(); // fast path
-    }
+    values.clear();
     synchronized (dirtyLock) {
       dirtyComponents.clear();
       dirtyPoints.clear();
@@ -653,7 +829,7 @@ public class CircuitState implements InstanceData {
         Thread.dumpStack();
         synchronized(dirtyLock) {
           substates.remove(oldState);
-          substatesDirty = true;
+          substatesChanged();
         }
         oldState.parentState = null;
         oldState.parentComp = null;
@@ -661,11 +837,12 @@ public class CircuitState implements InstanceData {
       CircuitState newState = new CircuitState(proj, circ, base);
       synchronized(dirtyLock) {
         substates.add(newState);
-        substatesDirty = true;
+        substatesChanged();
       }
       newState.parentState = this;
       newState.parentComp = comp;
       componentData.put(comp, newState);
+      notifyDirtySubstate(newState);
       return newState;
   }
   
@@ -698,9 +875,11 @@ public class CircuitState implements InstanceData {
 				// DEBUG: System.out.println("adding new substate " + sub);
         sub.parentState = this;
 				substates.add(sub);
-				substatesDirty = true;
+				substatesChanged();
 				dirtyComponents.add(comp);
 			}
+      notifyDirtyComponents();
+      notifyDirtySubstate(sub);
     } else {
 			componentData.put(comp, data);
 		}
@@ -720,40 +899,28 @@ public class CircuitState implements InstanceData {
     base.setValue(this, pt, val, cause, delay);
   }
 
-  private void clearFastpathGrid() { // precondition: valuesLock held
-    for (int y = 0; y < FASTPATH_GRID_HEIGHT; y++)
-      for (int x = 0; x < FASTPATH_GRID_WIDTH; x++)
-        fastpath_values[y][x] = null;
-  }
-
   // for CircuitWires - to set value at point
-  void setValueByWire(Value v, Location[] points, CircuitWires.BusConnection[] connections) {
-    for (Location p : points) {
-      if (p.x >= 0 && p.y >= 0
-          && p.x % 10 == 0 && p.y % 10 == 0
-          && p.x < FASTPATH_GRID_WIDTH*10
-          && p.y < FASTPATH_GRID_HEIGHT*10) {
-        synchronized (valuesLock) {
-          fastpath(p, v);
-        }
-      } else {
-        synchronized (valuesLock) {
-          slowpath(p, v);
-        }
-      }
+  void setValueByWire(Value v, Location[] points, int[] slots,
+      CircuitWires.BusConnection[] connections) {
+    values.beginWrite();
+    for (int slot : slots)
+      values.set(slot, v);
+    values.endWrite();
+    for (Location p : points)
       base.locationTouched(this, p);
-    }
     for (CircuitWires.BusConnection bc : connections) {
       if (bc.isSink || (bc.isBidirectional && !Value.equal(v, bc.drivenValue)))
         markComponentAsDirty(bc.component);
     }
   }
 
-  void clearValuesByWire() {
-    synchronized (valuesLock) {
-      slowpath_values.clear(); // slow path
-      clearFastpathGrid(); // fast path
-    }
+  void clearValuesByWire(ValueStore.Index index) {
+    values.clear(index);
+  }
+
+  void carryValuesByWire(ValueStore.Index prev, ValueStore.Index next,
+      Collection<Location> erased) {
+    values.carry(prev, next, erased);
   }
 
   // // for CircuitWires - to set value at point where there is no bus, just a
@@ -776,36 +943,6 @@ public class CircuitState implements InstanceData {
   //     markDirtyComponentsAt(p);
   // }
 
-  private boolean fastpath(Location p, Value v) { // precondition: valuesLock held
-    int x = p.x/10;
-    int y = p.y/10;
-    if (v == Value.NIL) {
-      if (fastpath_values[y][x] != null) {
-        fastpath_values[y][x] = null;
-        return true;
-      } else {
-        return false;
-      }
-    } else {
-      if (!v.equals(fastpath_values[y][x])) {
-        fastpath_values[y][x] = v;
-        return true;
-      } else {
-        return false;
-      }
-    }
-  }
-  
-  private boolean slowpath(Location p, Value v) { // precondition: valuesLock held
-    if (v == Value.NIL) {
-      Object old = slowpath_values.remove(p);
-      return (old != null && old != Value.NIL);
-    } else {
-      Object old = slowpath_values.put(p, v);
-      return !v.equals(old);
-    }
-  }
-
   // private void markDirtyComponentsAt(Location p) {
   //   boolean found = false;
   //   for (Component comp : circuit.getComponents(p)) {
@@ -835,48 +972,39 @@ public class CircuitState implements InstanceData {
     wireData = data;
   }
 
-  boolean toggleClocks(int ticks) {
-    boolean hasClocks = false;
-
+  // Adds this state's clocks, and those of its substates, to a new ClockTable.
+  void collectClocks(ClockTable table) {
     if (temporaryClock != null)
-      hasClocks |= temporaryClockValidateOrTick(ticks);
+      table.addTemporaryClock(this);
 
-    for (Component clock : circuit.getClocks()) {
-      hasClocks = true;
-      boolean dirty = Clock.tick(this, ticks, clock);
-      if (dirty) {
-        markComponentAsDirty(clock);
-        // If simulator is in single step mode, we want to hilight the
-        // invalidated components (which are likely Pins, Buttons, or other
-        // inputs), so pass this component to the simulator for display.
-        proj.getSimulator().addPendingInput(this, clock);
-      }
-    }
+    for (Component clock : circuit.getClocks())
+      table.addClock(this, clock);
 
     synchronized (dirtyLock) {
-      if (substatesDirty) {
-        substatesDirty = false;
-        substatesWorking = substates.toArray(substatesWorking);
-      }
-    }
-    for (CircuitState substate : substatesWorking) {
-      if (substate == null)
-        break;
-      hasClocks |= substate.toggleClocks(ticks);
+      updateSubstatesWorking();
     }
+    for (CircuitState substate : substatesWorking)
+      substate.collectClocks(table);
+  }
 
-    return hasClocks;
+  void tickClock(int ticks, Component clock) {
+    boolean dirty = Clock.tick(this, ticks, clock);
+    if (dirty) {
+      markComponentAsDirty(clock);
+      // If simulator is in single step mode, we want to hilight the
+      // invalidated components (which are likely Pins, Buttons, or other
+      // inputs), so pass this component to the simulator for display.
+      proj.getSimulator().addPendingInput(this, clock);
+    }
   }
 
-  private boolean temporaryClockValidateOrTick(int ticks) {
+  boolean temporaryClockValidateOrTick(int ticks) {
     // temporaryClock.getFactory() will be Pin, normally a 1 bit input
-    Pin pin;
-    try {
-      pin = (Pin)temporaryClock.getFactory();
-    } catch (ClassCastException e) {
+    if (temporaryClock == null || !(temporaryClock.getFactory() instanceof Pin)) {
       temporaryClock = null;
       return false;
     }
+    Pin pin = (Pin)temporaryClock.getFactory();
     Instance i = Instance.getInstanceFor(temporaryClock);
     if (i == null || !pin.isInputPin(i) || pin.getWidth(i).getWidth() != 1) {
       temporaryClock = null;
@@ -912,6 +1040,7 @@ public class CircuitState implements InstanceData {
 
   public boolean setTemporaryClock(Component clk) {
     temporaryClock = clk;
+    base.treeChanged();
     return clk == null ? true : temporaryClockValidateOrTick(-1);
   }
   
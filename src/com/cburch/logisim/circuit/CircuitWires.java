@@ -33,14 +33,17 @@ package com.cburch.logisim.circuit;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Stroke;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.swing.SwingUtilities;
 
 import com.cburch.logisim.comp.Component;
@@ -68,10 +71,12 @@ public class CircuitWires {
 
   // Connectivity holds info about how the Circuit's buses, wires, tunnels, and
   // splitters are connected to each other and to components. This gets
-  // re-computed from scratch each time the circuit changes. It does *not* hold
-  // any Values, which are dynamically computed by the simulator. It holds only
-  // the static connectivity defined by the circuit. Within this data structure
-  // are:
+  // re-computed from scratch each time the circuit changes, except after edits
+  // that don't involve splitters, where a new map is instead derived from the
+  // previous one by rebuilding just the bundles near the edits (see
+  // updateConnectivity). It does *not* hold any Values, which are dynamically
+  // computed by the simulator. It holds only the static connectivity defined
+  // by the circuit. Within this data structure are:
   // - WireBundle: a bus/wire as drawn by the user. Think: like an unbroken,
   //   physical ribbon cable that acts as a bundle of one or more threads. It
   //   has a width 1 <= n <= 32 (or incompatibilityData if the width is not
@@ -106,6 +111,22 @@ public class CircuitWires {
     // Given a location, returns a list of Components that have a port at that location.
     HashMap<Location, ArrayList<Component>> componentsAtLocations = new HashMap<>();
 
+    // Dense numbering of the locations where a component touches a bus, i.e.
+    // every location at which CircuitState will ever store a value.
+    ValueStore.Index locationIndex = ValueStore.Index.EMPTY;
+
+    // For a map derived from an earlier one by updateConnectivity: the earlier
+    // map, the bundles of that map which were rebuilt, the bundles that replaced
+    // them, the locationIndex entries of the latter, and the components having
+    // ports at the edited locations. Together these let a State for base be
+    // updated rather than rebuilt. Only the newest map holds on to its base,
+    // lest old maps pile up in memory.
+    volatile Connectivity base = null;
+    ArrayList<WireBundle> staleBundles = null;
+    ArrayList<WireBundle> freshBundles = null;
+    ArrayList<Location> freshLocations = null;
+    ArrayList<Component> editedComponents = null;
+
     // The isValid flag remains true unless something goes wrong during initialization.
     volatile boolean isValid = true;
   
@@ -260,6 +281,7 @@ public class CircuitWires {
 
     BusConnection[] connections; // sink and source components connected to this bus
     Location[] locations; // set of all locations for those connections
+    int[] slots; // ValueStore slot for each of those locations
 
     Value localDrivenValue; // sum of connections[i].drivenValue
     Value busVal; // cached, resolved value carried by this bus (or error for conflicts, etc.)
@@ -294,6 +316,9 @@ public class CircuitWires {
       int n = locs.size();
       locations = n == xpoints.length ? xpoints : locs.toArray(new Location[n]);
       connections = conns.toArray(new BusConnection[conns.size()]);
+      slots = new int[n];
+      for (int i = 0; i < n; i++)
+        slots[i] = cmap.locationIndex.slotFor(locations[i]);
     }
 
     // ValuedBus(ValuedBus vb) { // for cloning
@@ -362,9 +387,9 @@ public class CircuitWires {
         dirty = false;
         return busVal;
       }
-      int error = 0, unknown = 0, value = 0;
+      long error = 0, unknown = 0, value = 0;
       for (int i = 0; i < width; i++) {
-        int mask = 1 << i;
+        long mask = 1L << i;
         Value tv = threads[i].threadValue();
         if (tv == Value.TRUE)
           value |= mask;
@@ -460,6 +485,60 @@ public class CircuitWires {
     }
     static final ValuedBus[] EMPTY_DEPENDENCIES = new ValuedBus[0];
 
+    // Updates prev, which was built from cm.base, to match cm. Buses for
+    // bundles that survived the edits are taken over from prev, values and all,
+    // and only the buses for rebuilt bundles start out dirty. The rebuilt
+    // bundles never touch a splitter, so none of them have dependent buses, and
+    // none of the surviving buses can depend on them. Afterwards prev must no
+    // longer be used.
+    State(State prev, Connectivity cm) {
+      connectivity = cm;
+      busAt = new HashMap<>(prev.busAt);
+      HashSet<ValuedBus> stale = new HashSet<>();
+      for (WireBundle wb : cm.staleBundles) {
+        stale.add(prev.busAt.get(wb.xpoints[0]));
+        for (Location loc : wb.xpoints)
+          busAt.remove(loc);
+      }
+      buses = new ValuedBus[cm.bundles.size()];
+      int idx = 0;
+      for (WireBundle wb : cm.freshBundles) {
+        ValuedBus vb = new ValuedBus(idx++, wb, cm);
+        buses[vb.idx] = vb;
+        for (Location loc : wb.xpoints)
+          busAt.put(loc, vb);
+        for (BusConnection bc : vb.connections)
+          if (!bc.isSink)
+            bc.drivenValue = prev.getDrivenValue(bc.component, bc.location);
+        if (vb.width > 0)
+          vb.dependentBuses = EMPTY_DEPENDENCIES;
+      }
+      // dirty buses go first, then clean ones, as markDirty() expects
+      for (ValuedBus vb : prev.buses) {
+        if (vb.dirty && !stale.contains(vb)) {
+          vb.idx = idx++;
+          buses[vb.idx] = vb;
+        }
+      }
+      numDirty = idx;
+      for (ValuedBus vb : prev.buses) {
+        if (!vb.dirty && !stale.contains(vb)) {
+          vb.idx = idx++;
+          buses[vb.idx] = vb;
+        }
+      }
+      if (idx != buses.length)
+        throw new IllegalStateException("bus count mismatch while updating state");
+    }
+
+    ValueStore.Index getLocationIndex() {
+      return connectivity.locationIndex;
+    }
+
+    ArrayList<Component> getComponents() { // all but wires, splitters, tunnels, and pulls
+      return connectivity.allComponents;
+    }
+
     Value getDrivenValue(Component c, Location loc) {
       ValuedBus vb = busAt.get(loc);
       if (vb == null)
@@ -561,10 +640,14 @@ public class CircuitWires {
   private Bounds bounds = Bounds.EMPTY_BOUNDS;
   private volatile Connectivity masterConnectivity = null;
 
+  // The most recently computed connectivity map, and the locations touched by
+  // edits since then, or null if the next map must be computed from scratch.
+  // Used only by the AWT thread (and main, during startup).
+  private Connectivity lastConnectivity = null;
+  private HashSet<Location> editedPoints = null;
+
   CircuitWires() { }
 
-  // NOTE: this could be made much more efficient in most cases to
-  // avoid voiding the connectivity map.
   /*synchronized*/ boolean add(Component comp) {
     // DEBUG: System.out.println("wires adding " + comp);
     boolean added = true;
@@ -586,7 +669,7 @@ public class CircuitWires {
     }
     if (added) {
       points.add(comp);
-      voidConnectivity();
+      voidConnectivity(comp, endLocations(comp));
     }
     return added;
   }
@@ -594,7 +677,7 @@ public class CircuitWires {
   /*synchronized*/ void add(Component comp, EndData end) {
     // DEBUG: System.out.println("wires adding for " + comp + " end " + end);
     points.add(comp, end);
-    voidConnectivity();
+    voidConnectivity(comp, end.getLocation());
   }
 
   private boolean addWire(Wire w) {
@@ -753,17 +836,21 @@ public class CircuitWires {
     // map is used to initialize a new State. We also need to know which
     // interesting components are at those locations.
     for (Location p : ret.allLocations) {
-      ArrayList<Component> a = null;
-      for (Component comp : points.getComponents(p)) {
-        if ((comp instanceof Wire) || (comp instanceof Splitter))
-          continue;
-        if (a == null)
-          a = new ArrayList<>();
-        a.add(comp);
-      }
+      ArrayList<Component> a = componentsAt(p);
       if (a != null)
         ret.componentsAtLocations.put(p, a);
     }
+
+    // Number the locations where a component touches a bus. These are the
+    // only places CircuitState ever stores values (see ValuedBus.locations).
+    HashMap<Location, Integer> slots = new HashMap<>();
+    for (WireBundle b : ret.getBundles()) {
+      for (Location p : b.xpoints) {
+        if (ret.componentsAtLocations.containsKey(p) && !slots.containsKey(p))
+          slots.put(p, slots.size());
+      }
+    }
+    ret.locationIndex = new ValueStore.Index(slots);
     
     // Compute the exception set before leaving.
     Collection<WidthIncompatibilityData> exceptions = points
@@ -780,6 +867,182 @@ public class CircuitWires {
     }
   }
 
+  // Returns the non-wire, non-splitter components having a port at p, or null
+  // if there are none.
+  private ArrayList<Component> componentsAt(Location p) {
+    ArrayList<Component> a = null;
+    for (Component comp : points.getComponents(p)) {
+      if ((comp instanceof Wire) || (comp instanceof Splitter))
+        continue;
+      if (a == null)
+        a = new ArrayList<>();
+      a.add(comp);
+    }
+    return a;
+  }
+
+  // To be called by getConnectivity() only. Derives a new map from prev, given
+  // the locations touched by edits since prev was computed. Only the bundles
+  // at those locations, and any bundles now joined to them, are rebuilt, by a
+  // search outward from each edited location along wires and tunnels. Every
+  // other bundle, and its threads, is shared with prev. This is the same
+  // whether the edits added or removed things: an addition merely finds
+  // several old bundles joined into one new one, and a removal finds one old
+  // bundle split into several (or none). Returns null if some rebuilt bundle
+  // would touch a splitter, or if too many slots in the location index have
+  // gone to waste, in which case the map should be computed from scratch.
+  private Connectivity updateConnectivity(Connectivity prev, Set<Location> edited) {
+    HashMap<String, ArrayList<Location>> tunnelSets = null;
+    HashSet<WireBundle> stale = new HashSet<>();
+    HashMap<Location, WireBundle> fresh = new HashMap<>();
+    ArrayList<WireBundle> freshBundles = new ArrayList<>();
+    ArrayDeque<Location> todo = new ArrayDeque<>(edited);
+    ArrayDeque<Location> reached = new ArrayDeque<>();
+    while (!todo.isEmpty()) {
+      Location p = todo.poll();
+      if (fresh.containsKey(p))
+        continue;
+      WireBundle old = prev.getBundleAt(p);
+      if (old != null && stale.add(old))
+        Collections.addAll(todo, old.xpoints);
+      // Find out whether anything at p would make a bundle of its own: a
+      // wire, a tunnel, a pull resistor, or a port that is not input-only.
+      boolean anchored = false;
+      for (Component comp : points.getComponents(p)) {
+        if (comp instanceof Splitter)
+          return null;
+        Object factory = comp.getFactory();
+        if (comp instanceof Wire || factory instanceof PullResistor) {
+          anchored = true;
+        } else if (factory instanceof Tunnel) {
+          anchored |= !comp.getAttributeSet().getValue(StdAttr.LABEL).trim().equals("");
+        } else if (components.contains(comp)) {
+          EndData e = comp.getEnd(p);
+          anchored |= e != null && e.getType() != EndData.INPUT_ONLY;
+        }
+      }
+      if (!anchored)
+        continue;
+      WireBundle b = new WireBundle(p);
+      freshBundles.add(b);
+      fresh.put(p, b);
+      reached.push(p);
+      while (!reached.isEmpty()) {
+        Location q = reached.pop();
+        old = prev.getBundleAt(q);
+        if (old != null && stale.add(old))
+          Collections.addAll(todo, old.xpoints);
+        for (Component comp : points.getComponents(q)) {
+          if (comp instanceof Splitter)
+            return null;
+          Object factory = comp.getFactory();
+          if (comp instanceof Wire) {
+            Location r = ((Wire) comp).getOtherEnd(q);
+            if (!fresh.containsKey(r)) {
+              fresh.put(r, b);
+              b.tempPoints.add(r);
+              reached.push(r);
+            }
+          } else if (factory instanceof Tunnel) {
+            String label = comp.getAttributeSet().getValue(StdAttr.LABEL).trim();
+            if (label.equals(""))
+              continue;
+            if (tunnelSets == null)
+              tunnelSets = getTunnelSets();
+            for (Location r : tunnelSets.get(label)) {
+              if (!fresh.containsKey(r)) {
+                fresh.put(r, b);
+                b.tempPoints.add(r);
+                reached.push(r);
+              }
+            }
+          } else if (factory instanceof PullResistor) {
+            b.addPullValue(PullResistor.getPullValue(Instance.getInstanceFor(comp)));
+          }
+        }
+        b.setWidth(points.getWidth(q), q);
+      }
+    }
+
+    // Renumber the location index, keeping the slots of surviving locations.
+    ArrayList<Location> removed = new ArrayList<>();
+    for (WireBundle old : stale)
+      for (Location p : old.xpoints)
+        removed.add(p);
+    ArrayList<Location> added = new ArrayList<>();
+    HashMap<Location, ArrayList<Component>> componentsAtLocations =
+        new HashMap<>(prev.componentsAtLocations);
+    for (Location p : edited) {
+      ArrayList<Component> a = componentsAt(p);
+      if (a != null)
+        componentsAtLocations.put(p, a);
+      else
+        componentsAtLocations.remove(p);
+    }
+    for (Location p : fresh.keySet())
+      if (componentsAtLocations.containsKey(p))
+        added.add(p);
+    ValueStore.Index index = prev.locationIndex.update(removed, added);
+    if (index.size() > 2 * index.count() + 1024)
+      return null;
+
+    // finish constructing the new bundles and their (single-bundle) threads
+    for (WireBundle b : freshBundles) {
+      b.xpoints = b.tempPoints.toArray(new Location[b.tempPoints.size()]);
+      b.tempPoints = null;
+      BitWidth width = b.getWidth();
+      if (width != BitWidth.UNKNOWN) {
+        int n = width.getWidth();
+        b.threads = new WireThread[n];
+        for (int i = 0; i < n; i++) {
+          WireThread t = new WireThread();
+          t.addBundlePosition(i, b);
+          t.finishConstructing();
+          b.threads[i] = t;
+        }
+      }
+    }
+
+    Connectivity ret = new Connectivity();
+    ret.bundles = new HashSet<>(prev.bundles);
+    ret.bundles.removeAll(stale);
+    ret.bundles.addAll(freshBundles);
+    ret.pointBundles = new HashMap<>(prev.pointBundles);
+    for (Location p : removed)
+      ret.pointBundles.remove(p);
+    ret.pointBundles.putAll(fresh);
+    ret.allComponents.addAll(components);
+    ret.allLocations.addAll(points.getAllLocations());
+    ret.componentsAtLocations = componentsAtLocations;
+    ret.locationIndex = index;
+
+    LinkedHashSet<Component> touched = new LinkedHashSet<>();
+    for (Location p : edited)
+      for (Component comp : points.getComponents(p))
+        if (components.contains(comp))
+          touched.add(comp);
+    ret.editedComponents = new ArrayList<>(touched);
+    ret.staleBundles = new ArrayList<>(stale);
+    ret.freshBundles = freshBundles;
+    ret.freshLocations = added;
+    ret.base = prev;
+    prev.base = null;
+
+    Collection<WidthIncompatibilityData> exceptions = points
+        .getWidthIncompatibilityData();
+    if (exceptions != null && exceptions.size() > 0) {
+      for (WidthIncompatibilityData wid : exceptions) {
+        ret.addWidthIncompatibilityData(wid);
+      }
+    }
+    for (WireBundle b : ret.getBundles()) {
+      WidthIncompatibilityData e = b.getWidthIncompatibilityData();
+      if (e != null)
+        ret.addWidthIncompatibilityData(e);
+    }
+    return ret;
+  }
+
   private void connectPullResistors(Connectivity ret) {
     for (Component comp : pulls) {
       Location loc = comp.getEnd(0).getLocation();
@@ -794,8 +1057,8 @@ public class CircuitWires {
     }
   }
 
-  private void connectTunnels(Connectivity ret) {
-    // determine the sets of tunnels
+  // Returns the locations of all tunnels, grouped by label.
+  private HashMap<String, ArrayList<Location>> getTunnelSets() {
     HashMap<String, ArrayList<Location>> tunnelSets = new HashMap<>();
     for (Component comp : tunnels) {
       String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
@@ -809,6 +1072,12 @@ public class CircuitWires {
         tunnelSet.add(comp.getLocation());
       }
     }
+    return tunnelSets;
+  }
+
+  private void connectTunnels(Connectivity ret) {
+    // determine the sets of tunnels
+    HashMap<String, ArrayList<Location>> tunnelSets = getTunnelSets();
 
     // now connect the bundles that are tunnelled together
     for (ArrayList<Location> tunnelSet : tunnelSets.values()) {
@@ -1057,12 +1326,24 @@ public class CircuitWires {
       return ret;
     if (SwingUtilities.isEventDispatchThread()) {
       // AWT event thread.
-      ret = new Connectivity();
       try {
-        computeConnectivity(ret);
+        if (editedPoints != null && lastConnectivity != null)
+          ret = updateConnectivity(lastConnectivity, editedPoints);
+        if (ret == null) {
+          ret = new Connectivity();
+          computeConnectivity(ret);
+          if (lastConnectivity != null)
+            lastConnectivity.base = null;
+        }
         masterConnectivity = ret; // volatile write by AWT thread
+        lastConnectivity = ret;
+        editedPoints = new HashSet<>();
       } catch (Exception t) {
+        if (ret == null)
+          ret = new Connectivity();
         ret.invalidate();
+        lastConnectivity = null;
+        editedPoints = null;
         System.err.println(t.getLocalizedMessage());
       }
       return ret;
@@ -1150,12 +1431,42 @@ public class CircuitWires {
   // }
 
   void propagate(CircuitState circState, ArrayList<Propagator.SimulatorEvent> dirtyPoints) {
+    State s = getCurrentState(circState);
+
+    // make note of updates from simulator
+    int npoints = dirtyPoints.size();
+    for (int k = 0; k < npoints; k++) { // for each point of interest
+      Propagator.SimulatorEvent ev = dirtyPoints.get(k);
+      noteDrivenValue(s, ev.loc, ev.cause, ev.val);
+    }
+
+    recalculate(circState, s);
+  }
+
+  // Same as above, but for a single value emitted by a component, used by
+  // compiled simulation (see CompiledSchedule), which has no events.
+  void propagate(CircuitState circState, Location p, Component cause, Value val) {
+    State s = getCurrentState(circState);
+    noteDrivenValue(s, p, cause, val);
+    recalculate(circState, s);
+  }
+
+  private State getCurrentState(CircuitState circState) {
     Connectivity map = getConnectivity();
-    ArrayList<WireThread> dirtyThreads = new ArrayList<>();
 
     // get state, or create a new one if current state is outdated
     State s = circState.getWireData();
-    if (s == null || s.connectivity != map) {
+    if (s != null && s.connectivity != map && s.connectivity == map.base) {
+      // Only some buses were rebuilt: the values at all other locations stay as
+      // they are. The components at the edited locations need another look, as
+      // they may have been added, or lost their connection to a bus. Components
+      // on rebuilt buses get marked dirty when the bus values are recomputed.
+      ValueStore.Index prevIndex = s.getLocationIndex();
+      s = new State(s, map);
+      circState.setWireData(s);
+      circState.carryValuesByWire(prevIndex, map.locationIndex, map.freshLocations);
+      circState.markComponentsDirty(map.editedComponents);
+    } else if (s == null || s.connectivity != map) {
       // DEBUG: System.out.printf("computing new State from %s\n", s);
       // if it is outdated, we need to compute for all threads
       s = new State(map, s);
@@ -1165,59 +1476,54 @@ public class CircuitWires {
       // might no longer be connected to those same buses (or might not 
       // be connected to any bus), and vice versa. So we should mark all
       // components as dirty.
-      circState.clearValuesByWire();
+      circState.clearValuesByWire(map.locationIndex);
       circState.markComponentsDirty(map.allComponents);
       // circState.markDirtyPoints(map.allLocations);
     }
+    return s;
+  }
 
-    // make note of updates from simulator
-    int npoints = dirtyPoints.size();
-    for (int k = 0; k < npoints; k++) { // for each point of interest
-
-      Propagator.SimulatorEvent ev = dirtyPoints.get(k);
-      Location p = ev.loc;
-      Component cause = ev.cause;
-      Value val = ev.val;
-
-      ValuedBus vb = s.busAt.get(p);
-      if (vb == null) {
-        // DEBUG: System.out.printf("simulator event, but no bus: comp=%s loc=%s val=%s\n", cause, p, val);
-        // point is not wired: just set that point's value and be done
-        // todo: we could keep track of the affected components here
-        // DEBUG: System.out.printf("  loc %s not wired, accept val %s\n", p, val);
-        // circState.setValueByWire(val, p);
-      } else if (vb.width <= 0) {
-        // point is wired to a bus with invalid width: ignore new value
-        // propagate NIL across entire bundle
-        // for (Location buspt : vb.componentPoints)
-        //   circState.setValueByWire(buspt, Value.NIL);
-        // int n = vb.componentPoints.length;
-        // for (int i = 0; i < n; i++) {
-        //   Location buspt = vb.componentPoints[i];
-        //   Component[] affected = vb.componentsAffected[i];
-        //   circState.setValueByWire(buspt, Value.NIL, affected);
-        // }
-      } else {
-        // common case... it is wired to a normal bus: update the stored value
-        // of this point on the bus, mark the bus as dirty, and (if not
-        // degenerate) mark as dirty any related buses.
-        // DEBUG: System.out.printf("  loc %s is wired, processing val %s\n", p, val);
-        // fixme: sort the connections list, sources first, then bidir, then sinks
-        for (BusConnection bc : vb.connections) {
-          if (bc.location.equals(p) && bc.component.equals(cause)) {
-            Value old = bc.drivenValue;
-            if (Value.equal(old, val))
-              continue;
-            bc.drivenValue = val;
-            s.markDirty(vb);
-            for (ValuedBus dep : vb.dependentBuses)
-              s.markDirty(dep);
-            break;
-          }
+  private void noteDrivenValue(State s, Location p, Component cause, Value val) {
+    ValuedBus vb = s.busAt.get(p);
+    if (vb == null) {
+      // DEBUG: System.out.printf("simulator event, but no bus: comp=%s loc=%s val=%s\n", cause, p, val);
+      // point is not wired: just set that point's value and be done
+      // todo: we could keep track of the affected components here
+      // DEBUG: System.out.printf("  loc %s not wired, accept val %s\n", p, val);
+      // circState.setValueByWire(val, p);
+    } else if (vb.width <= 0) {
+      // point is wired to a bus with invalid width: ignore new value
+      // propagate NIL across entire bundle
+      // for (Location buspt : vb.componentPoints)
+      //   circState.setValueByWire(buspt, Value.NIL);
+      // int n = vb.componentPoints.length;
+      // for (int i = 0; i < n; i++) {
+      //   Location buspt = vb.componentPoints[i];
+      //   Component[] affected = vb.componentsAffected[i];
+      //   circState.setValueByWire(buspt, Value.NIL, affected);
+      // }
+    } else {
+      // common case... it is wired to a normal bus: update the stored value
+      // of this point on the bus, mark the bus as dirty, and (if not
+      // degenerate) mark as dirty any related buses.
+      // DEBUG: System.out.printf("  loc %s is wired, processing val %s\n", p, val);
+      // fixme: sort the connections list, sources first, then bidir, then sinks
+      for (BusConnection bc : vb.connections) {
+        if (bc.location.equals(p) && bc.component.equals(cause)) {
+          Value old = bc.drivenValue;
+          if (Value.equal(old, val))
+            continue;
+          bc.drivenValue = val;
+          s.markDirty(vb);
+          for (ValuedBus dep : vb.dependentBuses)
+            s.markDirty(dep);
+          break;
         }
       }
     }
+  }
 
+  private void recalculate(CircuitState circState, State s) {
     if (s.numDirty <= 0)
       return;
 
@@ -1235,13 +1541,17 @@ public class CircuitWires {
     // recompute threadVal for all threads passing through dirty buses (if not degenerate),
     // recompute aggregate busVal for all dirty buses,
     // and post those results to the circuit state
+    PropagationProfile profile = circState.getPropagator().profile;
     for (int i = 0; i < s.numDirty; i++) {
       ValuedBus vb = s.buses[i];
+      if (profile != null)
+        profile.recalculated(circState, vb,
+            vb.locations.length > 0 ? vb.locations[0] : null, vb.width);
       Value old = vb.busVal;
       Value val = vb.recalculate();
       if (Value.equal(old, val))
         continue;
-      circState.setValueByWire(val, vb.locations, vb.connections);
+      circState.setValueByWire(val, vb.locations, vb.slots, vb.connections);
       // int n = vb.componentPoints.length;
       // for (int j = 0; j < n; j++) {
       //   Location p = vb.componentPoints[j];
@@ -1303,12 +1613,12 @@ public class CircuitWires {
       }
     }
     points.remove(comp);
-    voidConnectivity();
+    voidConnectivity(comp, endLocations(comp));
   }
 
   /*synchronized*/ void remove(Component comp, EndData end) {
     points.remove(comp, end);
-    voidConnectivity();
+    voidConnectivity(comp, end.getLocation());
   }
 
   private void removeWire(Wire w) {
@@ -1330,7 +1640,7 @@ public class CircuitWires {
     points.add(comp, newEnd);
     // DEBUG: System.out.printf("replaced %s %s with %s\n", comp, oldEnd, newEnd);
 
-    voidConnectivity();
+    voidConnectivity(comp, oldEnd.getLocation(), newEnd.getLocation());
   }
 
   private void voidConnectivity() {
@@ -1339,5 +1649,46 @@ public class CircuitWires {
     // calls it during startup. It should not be called by the simulation
     // thread.
     masterConnectivity = null; // volatile write by AWT thread (and sometimes main/startup)
+    connectivityEpoch.incrementAndGet();
+    editedPoints = null;
+  }
+
+  // Same as above, but for an edit to comp that only affects connectivity at
+  // the given locations, so the next map can be derived from the last one.
+  // Splitters have threads reaching into several bundles, so edits to them
+  // always void the map entirely.
+  private void voidConnectivity(Component comp, Location... locs) {
+    if (comp instanceof Splitter || editedPoints == null) {
+      voidConnectivity();
+      return;
+    }
+    masterConnectivity = null; // volatile write by AWT thread (and sometimes main/startup)
+    connectivityEpoch.incrementAndGet();
+    Collections.addAll(editedPoints, locs);
+  }
+
+  // Throws away the connectivity map, so that the next use recomputes it from
+  // scratch. Only used for benchmarking (see bench-src). AWT thread only.
+  void discardConnectivity() {
+    voidConnectivity();
+  }
+
+  private static Location[] endLocations(Component comp) {
+    List<EndData> ends = comp.getEnds();
+    Location[] locs = new Location[ends.size()];
+    for (int i = 0; i < locs.length; i++)
+      locs[i] = ends.get(i).getLocation();
+    return locs;
+  }
+
+  // Incremented whenever the connectivity of any circuit is voided. A CircuitState
+  // only notices new connectivity when CircuitWires.propagate() is called for
+  // it, so Propagator visits every state, clean or not, after this changes.
+  // Atomic, since circuits can be loaded and edited on several threads at
+  // once, and a lost update could leave a propagator believing it is current.
+  private static final AtomicInteger connectivityEpoch = new AtomicInteger();
+
+  static int getConnectivityEpoch() {
+    return connectivityEpoch.get();
   }
 }
@@ -0,0 +1,138 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.AttributeSet;
+import com.cburch.logisim.std.wiring.Clock;
+
+// ClockTable is a flattened list of every clock in the whole tree of
+// CircuitStates, used by Propagator.toggleClocks(). Each entry records the
+// state, the clock component, and its high, low, and phase durations, along
+// with the next half-cycle at which the clock's level changes. The entries are
+// kept in a queue ordered by that half-cycle, so each tick touches only those
+// clocks that actually flip, rather than walking every substate. A clock with
+// high and low durations of 1 still flips on every tick, of course, but deep
+// hierarchies with only a few clocks no longer pay for every substate.
+//
+// The table is thrown away whenever a clock is added, removed, or has its
+// durations changed, whenever a temporary clock is chosen, and whenever the
+// shape of the tree of substates changes (see CircuitState.getClockEpoch() and
+// Propagator.treeChanged()). The first tick after the table is built
+// visits every clock, just as before, so that clocks in new substates get
+// their initial state. Only the simulation thread touches this.
+class ClockTable {
+
+  private static class Entry implements Comparable<Entry> {
+    final CircuitState state;
+    final Component clock;
+    final int high, low, cycle, phase;
+    final int order; // position in the old depth-first walk, breaks ties
+    long next; // next half-cycle at which the level changes
+
+    Entry(CircuitState state, Component clock, int order) {
+      this.state = state;
+      this.clock = clock;
+      this.order = order;
+      AttributeSet attrs = clock.getAttributeSet();
+      high = attrs.getValue(Clock.ATTR_HIGH).intValue();
+      low = attrs.getValue(Clock.ATTR_LOW).intValue();
+      cycle = high + low;
+      phase = ((attrs.getValue(Clock.ATTR_PHASE).intValue() % cycle) + cycle) % cycle;
+    }
+
+    // Mirrors Clock.ClockState.updateTick(): the clock is low for the first
+    // low half-cycles of each period, and high for the rest.
+    void schedule(long ticks) {
+      long pos = ((ticks + phase) % cycle + cycle) % cycle;
+      next = ticks + (pos < low ? low - pos : cycle - pos);
+    }
+
+    public int compareTo(Entry other) {
+      if (next != other.next)
+        return next < other.next ? -1 : 1;
+      return Integer.compare(order, other.order);
+    }
+  }
+
+  final int epoch, treeEpoch;
+  private final ArrayList<Entry> entries = new ArrayList<>();
+  private final ArrayList<CircuitState> temporary = new ArrayList<>();
+  private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+  private boolean primed = false;
+
+  ClockTable(CircuitState root, int epoch, int treeEpoch) {
+    this.epoch = epoch;
+    this.treeEpoch = treeEpoch;
+    root.collectClocks(this);
+  }
+
+  void addClock(CircuitState state, Component clock) {
+    entries.add(new Entry(state, clock, entries.size()));
+  }
+
+  void addTemporaryClock(CircuitState state) {
+    temporary.add(state);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  boolean tick(int ticks) {
+    boolean hasClocks = !entries.isEmpty();
+    for (CircuitState state : temporary)
+      hasClocks |= state.temporaryClockValidateOrTick(ticks);
+
+    if (!primed) {
+      // Visit every clock once, in the usual order.
+      primed = true;
+      for (Entry e : entries) {
+        e.state.tickClock(ticks, e.clock);
+        e.schedule(ticks);
+        queue.add(e);
+      }
+      return hasClocks;
+    }
+
+    Entry e;
+    while ((e = queue.peek()) != null && e.next <= ticks) {
+      queue.poll();
+      e.state.tickClock(ticks, e.clock);
+      e.schedule(ticks);
+      queue.add(e);
+    }
+    return hasClocks;
+  }
+}
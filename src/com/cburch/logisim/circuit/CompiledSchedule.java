@@ -0,0 +1,656 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceFactory;
+import com.cburch.logisim.std.memory.Rom;
+import com.cburch.logisim.std.wiring.Clock;
+import com.cburch.logisim.std.wiring.Constant;
+import com.cburch.logisim.std.wiring.Ground;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Power;
+import com.cburch.logisim.std.wiring.PullResistor;
+import com.cburch.logisim.std.wiring.Transistor;
+import com.cburch.logisim.std.wiring.TransmissionGate;
+import com.cburch.logisim.std.wiring.Tunnel;
+
+// CompiledSchedule is a levelized alternative to Propagator's event queue, used
+// when the compiled simulation mode is selected (see Options.ATTR_SIM_MODE).
+// When a circuit is built only from combinational components, plus registers
+// and flip-flops clocked directly by clocks or input pins, every component in
+// the whole tree of CircuitStates is ranked once, in topological order, using
+// the connectivity from CircuitWires. Edges into clocked components are cut, so
+// any cycle that remains is a combinational loop. After that, each call to
+// Propagator.propagate() becomes a single straight-line pass over just those
+// components that need it:
+//
+//   1. Pins, subcircuits, clocks and constants, so that clock edges reach all
+//      the clocked components.
+//   2. Clocked components, which all see their inputs from before the edge,
+//      as their outputs are held back until all of them have been evaluated.
+//   3. Everything else, in order of rank.
+//
+// There are no delays. A value emitted by a component reaches the wires at
+// once, so most components are evaluated at most once per pass. Circuits that
+// don't fit (combinational loops, tri-state buses, pull resistors, bidirectional
+// ports, gated or derived clocks, or components that aren't known to be pure
+// functions of their inputs) are left to the event-driven simulation.
+//
+// Only the simulation thread touches this, and only during a pass does it
+// take over CircuitState.markComponentAsDirty() and Propagator.setValue().
+class CompiledSchedule {
+
+  // Kinds of node
+  private static final byte COMB = 0; // pure function of its inputs
+  private static final byte SEQ = 1; // clocked, see InstanceFactory.getClockPort()
+  private static final byte WIRING = 2; // pin, subcircuit, clock, or constant
+
+  // Libraries whose components, aside from those excluded in isPure(), are
+  // pure functions of their inputs.
+  private static final String[] PURE_PACKAGES = {
+    "com.cburch.logisim.std.arith",
+    "com.cburch.logisim.std.base",
+    "com.cburch.logisim.std.gates",
+    "com.cburch.logisim.std.plexers",
+    "com.cburch.logisim.std.wiring",
+  };
+
+  private static class IntList {
+    int[] a = new int[16];
+    int size;
+
+    void add(int v) {
+      if (size == a.length)
+        a = Arrays.copyOf(a, 2 * size);
+      a[size++] = v;
+    }
+  }
+
+  // One node for each component of each CircuitState. Buses only exist while
+  // building, as extra graph nodes numbered from n upward.
+  private int n;
+  private CircuitState[] nodeState;
+  private Component[] nodeComp;
+  private byte[] kind;
+  private int[] rank;
+  private int maxRank;
+  private IdentityHashMap<CircuitState, HashMap<Component, Integer>> index =
+      new IdentityHashMap<>();
+
+  private boolean settled = true; // false if some state wasn't ready yet
+  private String unsuitable; // why circuit can't be compiled, or null
+
+  // Worklist: a stack of queued nodes for each rank.
+  private int[] head;
+  private int[] next;
+  private boolean[] queued;
+  private int lowest; // lowest rank that might have queued nodes
+  private int current; // rank of node most recently taken from the worklist
+  private int rounds; // times the pass went back down to a lower rank
+  private IntList held = new IntList(); // non-WIRING nodes marked in phase 1
+
+  // Outputs of clocked components, held back during phase 2.
+  private int numDeferred;
+  private CircuitState[] defState = new CircuitState[16];
+  private Location[] defLoc = new Location[16];
+  private Value[] defVal = new Value[16];
+  private Component[] defCause = new Component[16];
+
+  private Thread thread; // simulation thread, only while a pass is running
+  private int phase;
+  private long evaluations; // component evaluations during the last pass
+
+  CompiledSchedule(CircuitState root) {
+    build(root);
+  }
+
+  // Whether every state had been simulated for long enough to compile it.
+  // If not, try again later.
+  boolean isSettled() {
+    return settled;
+  }
+
+  boolean isSuitable() {
+    return settled && unsuitable == null;
+  }
+
+  String getUnsuitableReason() {
+    return unsuitable;
+  }
+
+  long getEvaluations() {
+    return evaluations;
+  }
+
+  private static boolean isPure(ComponentFactory f) {
+    if (f instanceof Transistor || f instanceof TransmissionGate)
+      return false; // these act as switches, not logic
+    if (f instanceof Rom)
+      return true;
+    String pkg = f.getClass().getPackage().getName();
+    for (String p : PURE_PACKAGES) {
+      if (pkg.equals(p))
+        return true;
+    }
+    return false;
+  }
+
+  private static boolean isSource(ComponentFactory f) {
+    return f instanceof Clock || f instanceof Constant
+        || f instanceof Power || f instanceof Ground;
+  }
+
+  private static Instance pinFor(Component sub, Location loc) {
+    Instance[] pins = ((CircuitAttributes)sub.getAttributeSet()).getPinInstances();
+    for (int i = 0; i < pins.length && i < sub.getEnds().size(); i++) {
+      if (sub.getEnd(i).getLocation().equals(loc))
+        return pins[i];
+    }
+    return null;
+  }
+
+  private boolean fail(String reason) {
+    unsuitable = reason;
+    return false;
+  }
+
+  // Graph built by build(), with buses as extra nodes.
+  private IntList edgeFrom = new IntList(), edgeTo = new IntList();
+  private IntList cutFrom = new IntList(), cutTo = new IntList(); // into SEQ nodes
+  private int[] feed; // bus that a pin passes along, or -1
+  private int[] driver; // only driver of each bus, or -1
+  private CircuitWires.ValuedBus[] busObj;
+  private int[] busBase; // for each bus, number of first bus in same state
+  private byte[] clockSafe; // for each bus, 0 = unknown, 1 = no, 2 = yes
+
+  private void build(CircuitState root) {
+    // Number the components of every state, breadth-first through the tree.
+    ArrayList<CircuitState> states = new ArrayList<>();
+    ArrayList<CircuitWires.State> wireData = new ArrayList<>();
+    ArrayList<CircuitState> owners = new ArrayList<>();
+    ArrayList<Component> comps = new ArrayList<>();
+    IdentityHashMap<CircuitState, Integer> stateNum = new IdentityHashMap<>();
+    states.add(root);
+    for (int k = 0; k < states.size(); k++) {
+      CircuitState s = states.get(k);
+      CircuitWires.State w = s.getWireData();
+      if (w == null) {
+        settled = false;
+        return;
+      }
+      wireData.add(w);
+      stateNum.put(s, k);
+      HashMap<Component, Integer> map = new HashMap<>();
+      index.put(s, map);
+      for (Component c : w.getComponents()) {
+        map.put(c, comps.size());
+        comps.add(c);
+        owners.add(s);
+        if (c.getFactory() instanceof SubcircuitFactory) {
+          Object sub = s.getData(c);
+          if (!(sub instanceof CircuitState)
+              || ((CircuitState)sub).getParentState() != s) {
+            settled = false;
+            return;
+          }
+          states.add((CircuitState)sub);
+        }
+      }
+    }
+    n = comps.size();
+    nodeState = owners.toArray(new CircuitState[n]);
+    nodeComp = comps.toArray(new Component[n]);
+
+    // Classify the components.
+    kind = new byte[n];
+    int[] clockPort = new int[n];
+    for (int i = 0; i < n; i++) {
+      ComponentFactory f = nodeComp[i].getFactory();
+      clockPort[i] = -1;
+      if (f instanceof SubcircuitFactory || f instanceof Pin || isSource(f)) {
+        kind[i] = WIRING;
+        continue;
+      }
+      if (f instanceof InstanceFactory)
+        clockPort[i] = ((InstanceFactory)f).getClockPort(Instance.getInstanceFor(nodeComp[i]));
+      if (clockPort[i] >= 0)
+        kind[i] = SEQ;
+      else if (isPure(f))
+        kind[i] = COMB;
+      else {
+        fail("unsupported component " + f.getName());
+        return;
+      }
+    }
+
+    // Number the buses.
+    int numBuses = 0;
+    int[] stateBase = new int[states.size()];
+    for (int k = 0; k < states.size(); k++) {
+      stateBase[k] = n + numBuses;
+      numBuses += wireData.get(k).buses.length;
+    }
+    busObj = new CircuitWires.ValuedBus[numBuses];
+    busBase = new int[numBuses];
+    for (int k = 0; k < states.size(); k++) {
+      for (CircuitWires.ValuedBus vb : wireData.get(k).buses) {
+        busObj[stateBase[k] - n + vb.idx] = vb;
+        busBase[stateBase[k] - n + vb.idx] = stateBase[k];
+      }
+    }
+    feed = new int[n];
+    Arrays.fill(feed, -1);
+    driver = new int[numBuses];
+    Arrays.fill(driver, -1);
+
+    // Connect components to buses, and subcircuits to their input pins.
+    for (int k = 0; k < states.size(); k++) {
+      if (!connect(states.get(k), wireData.get(k), stateBase[k]))
+        return;
+    }
+    for (int b = 0; b < numBuses; b++) {
+      int d = driver[b];
+      if (d < 0 || busObj[b].dependentBuses == null)
+        continue;
+      for (CircuitWires.ValuedBus dep : busObj[b].dependentBuses) {
+        edgeFrom.add(d);
+        edgeTo.add(busBase[b] + dep.idx);
+      }
+    }
+
+    // Clocked components must get their clock straight from a clock or an input
+    // pin, perhaps by way of subcircuit pins, so that phase 1 delivers it.
+    clockSafe = new byte[numBuses];
+    for (int i = 0; i < n; i++) {
+      if (kind[i] != SEQ)
+        continue;
+      Location loc = nodeComp[i].getEnd(clockPort[i]).getLocation();
+      CircuitWires.ValuedBus vb = nodeState[i].getWireData().busAt.get(loc);
+      if (vb == null || vb.width <= 0)
+        continue;
+      int k = stateNum.get(nodeState[i]);
+      if (!isClockSafe(stateBase[k] + vb.idx)) {
+        fail("clock for " + nodeComp[i] + " is gated or derived");
+        return;
+      }
+    }
+
+    if (!levelize(n + numBuses))
+      return;
+
+    // Done building: drop what's no longer needed.
+    edgeFrom = edgeTo = cutFrom = cutTo = null;
+    feed = driver = busBase = null;
+    busObj = null;
+    clockSafe = null;
+
+    head = new int[maxRank + 1];
+    Arrays.fill(head, -1);
+    next = new int[n];
+    queued = new boolean[n];
+    lowest = maxRank + 1;
+  }
+
+  private boolean connect(CircuitState s, CircuitWires.State w, int base) {
+    HashMap<Component, Integer> map = index.get(s);
+    for (CircuitWires.ValuedBus vb : w.buses) {
+      if (vb.width <= 0)
+        continue; // carries nothing
+      int b = base + vb.idx;
+      for (CircuitWires.BusConnection bc : vb.connections) {
+        Component c = bc.component;
+        ComponentFactory f = c.getFactory();
+        if (f instanceof Tunnel)
+          continue;
+        if (f instanceof PullResistor)
+          return fail("pull resistor");
+        if (bc.isBidirectional)
+          return fail("bidirectional port on " + c);
+        Integer ni = map.get(c);
+        if (ni == null) { // connectivity changed meanwhile
+          settled = false;
+          return false;
+        }
+        int i = ni;
+        if (f instanceof Pin) {
+          if (Pin.FACTORY.isInputPin(Instance.getInstanceFor(c))) {
+            if (!addDriver(b, i))
+              return false;
+          } else {
+            addEdge(b, i);
+            feed[i] = b; // what an output pin passes up to the parent
+          }
+        } else if (f instanceof SubcircuitFactory) {
+          CircuitState sub = (CircuitState)s.getData(c);
+          Instance pin = pinFor(c, bc.location);
+          Integer pi = pin == null ? null : index.get(sub).get(pin.getComponent());
+          if (pi == null)
+            continue;
+          if (Pin.FACTORY.isInputPin(pin)) {
+            addEdge(b, i);
+            feed[pi] = b; // what an input pin passes down to the child
+          } else if (!addDriver(b, pi)) {
+            return false; // the child's output pin drives this bus
+          }
+        } else if (bc.isSink) {
+          if (kind[i] == SEQ) {
+            cutFrom.add(b);
+            cutTo.add(i);
+          } else {
+            addEdge(b, i);
+          }
+        } else if (!addDriver(b, i)) {
+          return false;
+        }
+      }
+    }
+    // A subcircuit drives its input pins directly.
+    for (Component c : w.getComponents()) {
+      if (!(c.getFactory() instanceof SubcircuitFactory))
+        continue;
+      int i = map.get(c);
+      HashMap<Component, Integer> subMap = index.get((CircuitState)s.getData(c));
+      for (Instance pin : ((CircuitAttributes)c.getAttributeSet()).getPinInstances()) {
+        Integer pi = subMap.get(pin.getComponent());
+        if (pi != null && Pin.FACTORY.isInputPin(pin))
+          addEdge(i, pi);
+      }
+    }
+    return true;
+  }
+
+  private void addEdge(int from, int to) {
+    edgeFrom.add(from);
+    edgeTo.add(to);
+  }
+
+  private boolean addDriver(int b, int i) {
+    int old = driver[b - n];
+    if (old >= 0 && old != i)
+      return fail("multiple drivers on one bus");
+    driver[b - n] = i;
+    addEdge(i, b);
+    return true;
+  }
+
+  private boolean isClockSafe(int b) {
+    int j = b - n;
+    if (clockSafe[j] != 0)
+      return clockSafe[j] == 2;
+    clockSafe[j] = 1; // in case of cycles
+    boolean ok = isClockSafeDriver(driver[j]);
+    CircuitWires.ValuedBus[] deps = busObj[j].dependentBuses;
+    for (int k = 0; ok && deps != null && k < deps.length; k++)
+      ok = isClockSafeDriver(driver[busBase[j] + deps[k].idx - n]);
+    clockSafe[j] = (byte)(ok ? 2 : 1);
+    return ok;
+  }
+
+  private boolean isClockSafeDriver(int d) {
+    if (d < 0)
+      return true; // undriven
+    ComponentFactory f = nodeComp[d].getFactory();
+    if (isSource(f))
+      return true;
+    if (f instanceof Pin) // top-level input, or passed through a subcircuit
+      return feed[d] < 0 || isClockSafe(feed[d]);
+    return false;
+  }
+
+  // Rank every node by the length of the longest path leading to it (Kahn's
+  // algorithm), failing if there is a cycle. A clocked component is ranked
+  // after the buses it was cut from, which only matters when one of its
+  // inputs changes in phase 3.
+  private boolean levelize(int numNodes) {
+    int m = edgeFrom.size;
+    int[] start = new int[numNodes + 1];
+    int[] indegree = new int[numNodes];
+    for (int e = 0; e < m; e++) {
+      start[edgeFrom.a[e] + 1]++;
+      indegree[edgeTo.a[e]]++;
+    }
+    for (int v = 0; v < numNodes; v++)
+      start[v + 1] += start[v];
+    int[] adj = new int[m];
+    int[] pos = Arrays.copyOf(start, numNodes);
+    for (int e = 0; e < m; e++)
+      adj[pos[edgeFrom.a[e]]++] = edgeTo.a[e];
+
+    int[] level = new int[numNodes];
+    int[] order = new int[numNodes];
+    int count = 0;
+    for (int v = 0; v < numNodes; v++) {
+      if (indegree[v] == 0)
+        order[count++] = v;
+    }
+    for (int q = 0; q < count; q++) {
+      int v = order[q];
+      for (int e = start[v]; e < start[v + 1]; e++) {
+        int u = adj[e];
+        if (level[u] < level[v] + 1)
+          level[u] = level[v] + 1;
+        if (--indegree[u] == 0)
+          order[count++] = u;
+      }
+    }
+    if (count < numNodes)
+      return fail("combinational loop");
+
+    rank = Arrays.copyOf(level, n);
+    for (int e = 0; e < cutFrom.size; e++) {
+      int i = cutTo.a[e];
+      rank[i] = Math.max(rank[i], level[cutFrom.a[e]] + 1);
+    }
+    maxRank = 0;
+    for (int i = 0; i < n; i++)
+      maxRank = Math.max(maxRank, rank[i]);
+    return true;
+  }
+
+  // Called (by way of CircuitState.markComponentAsDirty) for any component
+  // that needs to be evaluated. Returns false to let the caller queue it the
+  // usual way, if not on the simulation thread during a pass.
+  boolean mark(CircuitState state, Component comp) {
+    if (thread != Thread.currentThread())
+      return false;
+    HashMap<Component, Integer> map = index.get(state);
+    Integer i = map == null ? null : map.get(comp);
+    if (i == null) // nothing to do for tunnels, else the circuit changed
+      return comp.getFactory() instanceof Tunnel;
+    push(i);
+    return true;
+  }
+
+  // Called (by way of Propagator.setValue) for every value emitted by a
+  // component. Returns false if not on the simulation thread during a pass.
+  boolean setValue(CircuitState state, Location loc, Value val, Component cause) {
+    if (thread != Thread.currentThread())
+      return false;
+    if (phase == 2) {
+      if (numDeferred == defState.length) {
+        int m = 2 * numDeferred;
+        defState = Arrays.copyOf(defState, m);
+        defLoc = Arrays.copyOf(defLoc, m);
+        defVal = Arrays.copyOf(defVal, m);
+        defCause = Arrays.copyOf(defCause, m);
+      }
+      defState[numDeferred] = state;
+      defLoc[numDeferred] = loc;
+      defVal[numDeferred] = val;
+      defCause[numDeferred] = cause;
+      numDeferred++;
+    } else {
+      state.getCircuit().wires.propagate(state, loc, cause, val);
+    }
+    return true;
+  }
+
+  private void push(int i) {
+    if (queued[i])
+      return;
+    queued[i] = true;
+    if (phase == 1 && kind[i] != WIRING) {
+      held.add(i);
+      return;
+    }
+    int r = rank[i];
+    next[i] = head[r];
+    head[r] = i;
+    if (r < lowest)
+      lowest = r;
+  }
+
+  private int pop() {
+    while (lowest <= maxRank && head[lowest] < 0)
+      lowest++;
+    if (lowest > maxRank)
+      return -1;
+    int i = head[lowest];
+    head[lowest] = next[i];
+    queued[i] = false;
+    if (lowest < current)
+      rounds++;
+    current = lowest;
+    return i;
+  }
+
+  private void evaluate(int i) {
+    evaluations++;
+    nodeState[i].propagateComponent(nodeComp[i]);
+  }
+
+  // Evaluate queued nodes in order of rank until there are none left. Returns
+  // false if the pass had to go back to a lower rank more than limit times,
+  // e.g. because of a loop through asynchronous inputs like clear or preset.
+  private boolean drain(int limit) {
+    current = 0;
+    rounds = 0;
+    for (int i = pop(); i >= 0; i = pop()) {
+      if (rounds > limit) {
+        push(i);
+        return false;
+      }
+      evaluate(i);
+    }
+    return true;
+  }
+
+  // Start a pass. Until end(), marks and values from the calling thread come
+  // here rather than going to the CircuitState dirty lists and event queue.
+  void begin() {
+    thread = Thread.currentThread();
+    phase = 1;
+    evaluations = 0;
+  }
+
+  // Run the pass over everything marked since begin(). Returns false if it
+  // had to give up (see drain).
+  boolean run(int limit) {
+    // phase 1: pins, subcircuits, clocks, and constants
+    if (!drain(limit))
+      return false;
+
+    // phase 2: clocked components, with outputs held back
+    phase = 2;
+    int m = held.size;
+    for (int k = 0; k < m; k++) {
+      int i = held.a[k];
+      if (kind[i] != SEQ) {
+        queued[i] = false;
+        push(i);
+      }
+    }
+    for (int k = 0; k < m; k++) {
+      int i = held.a[k];
+      if (kind[i] == SEQ) {
+        queued[i] = false;
+        evaluate(i);
+      }
+    }
+    held.size = 0;
+
+    // phase 3: everything else
+    phase = 3;
+    for (int k = 0; k < numDeferred; k++) {
+      defState[k].getCircuit().wires.propagate(defState[k],
+          defLoc[k], defCause[k], defVal[k]);
+      defState[k] = null;
+      defLoc[k] = null;
+      defVal[k] = null;
+      defCause[k] = null;
+    }
+    numDeferred = 0;
+    return drain(limit);
+  }
+
+  // Finish a pass. Anything still queued (if run gave up, or a component
+  // threw an exception) is handed back to be propagated the usual way.
+  void end() {
+    thread = null;
+    phase = 0;
+    for (int k = 0; k < held.size; k++) {
+      int i = held.a[k];
+      if (queued[i]) {
+        queued[i] = false;
+        nodeState[i].markComponentAsDirty(nodeComp[i]);
+      }
+    }
+    held.size = 0;
+    for (int r = 0; r <= maxRank; r++) {
+      for (int i = head[r]; i >= 0; i = next[i]) {
+        if (queued[i]) {
+          queued[i] = false;
+          nodeState[i].markComponentAsDirty(nodeComp[i]);
+        }
+      }
+      head[r] = -1;
+    }
+    lowest = maxRank + 1;
+    for (int k = 0; k < numDeferred; k++) {
+      defState[k].setValue(defLoc[k], defVal[k], defCause[k], 1);
+      defState[k] = null;
+      defLoc[k] = null;
+      defVal[k] = null;
+      defCause[k] = null;
+    }
+    numDeferred = 0;
+  }
+}
@@ -35,7 +35,8 @@ import static com.cburch.logisim.circuit.SplayQueue.Node;
 // values that extend type SplayQueue.Node. This supports (approximately) a
 // subset of the java.util.PriorityQueue API, but only enough to support
 // Propagator.
-public class LinkedQueue<T extends SplayQueue.Node> {
+public class LinkedQueue<T extends SplayQueue.Node>
+  implements PropagationQueue<T> {
 
   // Objects in the queue must be subclasses of SplayQueue.Node.
 
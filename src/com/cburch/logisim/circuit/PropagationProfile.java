@@ -0,0 +1,252 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.instance.StdAttr;
+
+// PropagationProfile collects statistics about where simulation time goes.
+// When profiling is turned on for a Propagator (see Propagator.setProfiling),
+// CircuitState.propagateComponent() times each component evaluation,
+// Propagator.setValue() counts each event emitted, and CircuitWires counts
+// each time a bus is recalculated. Evaluations, events, and nanoseconds are
+// tallied per ComponentFactory, per Circuit, and per CircuitState (i.e. per
+// instance path). Components inside a subcircuit are charged to the
+// subcircuit's own CircuitState; the subcircuit component itself is charged
+// only for passing values in and out.
+//
+// Only the simulation thread records anything, and while profiling is on the
+// Propagator doesn't split work across threads. The GUI reads snapshots from
+// another thread, hence the synchronization. When profiling is off, none of
+// this is touched at all.
+public class PropagationProfile {
+
+  public static final int BY_FACTORY = 0;
+  public static final int BY_CIRCUIT = 1;
+  public static final int BY_INSTANCE = 2;
+  public static final int BY_NET = 3;
+
+  private static final String[] KIND_NAMES = { "factory", "circuit", "instance", "net" };
+
+  public static class Row {
+    final int kind;
+    String name;
+    long evaluations, events, nanos;
+
+    Row(int kind, String name) {
+      this.kind = kind;
+      this.name = name;
+    }
+
+    Row(Row r) {
+      this(r.kind, r.name);
+      evaluations = r.evaluations;
+      events = r.events;
+      nanos = r.nanos;
+    }
+
+    public int getKind() { return kind; }
+    public String getName() { return name; }
+    public long getEvaluations() { return evaluations; }
+    public long getEvents() { return events; }
+    public long getNanos() { return nanos; }
+  }
+
+  // For nets, evaluations holds the number of recalculations.
+  private static class Net extends Row {
+    final CircuitState state;
+    final Location loc;
+    final int width;
+
+    Net(CircuitState state, Location loc, int width) {
+      super(BY_NET, null);
+      this.state = state;
+      this.loc = loc;
+      this.width = width;
+    }
+  }
+
+  private final IdentityHashMap<ComponentFactory, Row> byFactory = new IdentityHashMap<>();
+  private final IdentityHashMap<Circuit, Row> byCircuit = new IdentityHashMap<>();
+  private final IdentityHashMap<CircuitState, Row> byInstance = new IdentityHashMap<>();
+  private final IdentityHashMap<Object, Net> byNet = new IdentityHashMap<>();
+  private long startNanos = System.nanoTime();
+
+  synchronized void evaluated(CircuitState state, Component comp, long nanos) {
+    Row r = rowFor(comp.getFactory());
+    r.evaluations++;
+    r.nanos += nanos;
+    r = rowFor(state.getCircuit());
+    r.evaluations++;
+    r.nanos += nanos;
+    r = rowFor(state);
+    r.evaluations++;
+    r.nanos += nanos;
+  }
+
+  synchronized void emitted(CircuitState state, Component cause) {
+    if (cause != null)
+      rowFor(cause.getFactory()).events++;
+    rowFor(state.getCircuit()).events++;
+    rowFor(state).events++;
+  }
+
+  synchronized void recalculated(CircuitState state, Object bus, Location loc, int width) {
+    Net n = byNet.get(bus);
+    if (n == null) {
+      n = new Net(state, loc, width);
+      byNet.put(bus, n);
+    }
+    n.evaluations++;
+  }
+
+  private Row rowFor(ComponentFactory factory) {
+    Row r = byFactory.get(factory);
+    if (r == null) {
+      r = new Row(BY_FACTORY, factory.getName());
+      byFactory.put(factory, r);
+    }
+    return r;
+  }
+
+  private Row rowFor(Circuit circuit) {
+    Row r = byCircuit.get(circuit);
+    if (r == null) {
+      r = new Row(BY_CIRCUIT, null);
+      byCircuit.put(circuit, r);
+    }
+    return r;
+  }
+
+  private Row rowFor(CircuitState state) {
+    Row r = byInstance.get(state);
+    if (r == null) {
+      r = new Row(BY_INSTANCE, null);
+      byInstance.put(state, r);
+    }
+    return r;
+  }
+
+  public synchronized void clear() {
+    byFactory.clear();
+    byCircuit.clear();
+    byInstance.clear();
+    byNet.clear();
+    startNanos = System.nanoTime();
+  }
+
+  // Wall-clock time since profiling started (or was last cleared).
+  public synchronized long getElapsedNanos() {
+    return System.nanoTime() - startNanos;
+  }
+
+  // Returns a copy of the rows of the given kind, busiest first. Names of
+  // circuits, instances, and nets are computed here rather than while
+  // profiling, as circuits may be renamed in the meantime.
+  public synchronized List<Row> getRows(int kind) {
+    ArrayList<Row> ret = new ArrayList<>();
+    switch (kind) {
+    case BY_FACTORY:
+      for (Row r : byFactory.values())
+        ret.add(new Row(r));
+      break;
+    case BY_CIRCUIT:
+      for (Circuit circ : byCircuit.keySet()) {
+        Row r = new Row(byCircuit.get(circ));
+        r.name = circ.getName();
+        ret.add(r);
+      }
+      break;
+    case BY_INSTANCE:
+      for (CircuitState state : byInstance.keySet()) {
+        Row r = new Row(byInstance.get(state));
+        r.name = getPath(state);
+        ret.add(r);
+      }
+      break;
+    case BY_NET:
+      for (Net n : byNet.values()) {
+        Row r = new Row(n);
+        r.name = getPath(n.state) + ":" + n.loc + "[" + n.width + "]";
+        ret.add(r);
+      }
+      break;
+    default:
+      throw new IllegalArgumentException("unknown profile kind " + kind);
+    }
+    if (kind == BY_NET)
+      ret.sort((a, b) -> Long.compare(b.evaluations, a.evaluations));
+    else
+      ret.sort((a, b) -> Long.compare(b.nanos, a.nanos));
+    return ret;
+  }
+
+  // A path like "main/alu(120,40)/adder(60,30)", naming each subcircuit
+  // component by its label, or failing that, by its circuit and location.
+  public static String getPath(CircuitState state) {
+    CircuitState parent = state.getParentState();
+    Component comp = state.getSubcircuit();
+    if (parent == null || comp == null)
+      return state.getCircuit().getName();
+    String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
+    String name = label != null && !label.isEmpty() ? label
+        : state.getCircuit().getName() + comp.getLocation();
+    return getPath(parent) + "/" + name;
+  }
+
+  public static String getKindName(int kind) {
+    return KIND_NAMES[kind];
+  }
+
+  // Comma-separated values, one row per factory, circuit, instance, and net,
+  // with a header line.
+  public void writeCsv(PrintStream out) {
+    out.println("kind,name,evaluations,events,nanoseconds");
+    for (int kind = BY_FACTORY; kind <= BY_NET; kind++) {
+      for (Row r : getRows(kind))
+        out.printf("%s,%s,%d,%d,%d\n", KIND_NAMES[kind], quote(r.name),
+            r.evaluations, r.events, r.nanos);
+    }
+  }
+
+  private static String quote(String s) {
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0)
+      return s;
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+}
@@ -30,14 +30,20 @@
 
 package com.cburch.logisim.circuit;
 
-//import java.util.PriorityQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.lang.ref.WeakReference;
 
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.comp.ComponentDrawContext;
 import com.cburch.logisim.data.AttributeEvent;
 import com.cburch.logisim.data.AttributeListener;
+import com.cburch.logisim.data.AttributeOption;
 import com.cburch.logisim.data.Location;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.file.Options;
@@ -85,6 +91,12 @@ public class Propagator {
         p.updateRandomness();
       else if (e.getAttribute().equals(Options.ATTR_SIM_LIMIT))
         p.updateSimLimit();
+      else if (e.getAttribute().equals(Options.ATTR_SIM_QUEUE))
+        p.updateQueueType();
+      else if (e.getAttribute().equals(Options.ATTR_SIM_THREADS))
+        p.updateSimThreads();
+      else if (e.getAttribute().equals(Options.ATTR_SIM_MODE))
+        p.updateSimMode();
     }
   }
 
@@ -95,6 +107,11 @@ public class Propagator {
   //   DrivenValue(Component c, Value v) { driver = c; val = v; }
   // }
 
+  // SimulatorEvent objects are owned by a single Propagator and are recycled
+  // through its free list (see allocEvent() and recycle()), so in steady state
+  // no events get allocated. An event is live from the time it is added to
+  // toProcess until CircuitWires.propagate() has consumed it from the
+  // dirtyPoints list of its CircuitState.
   public static class SimulatorEvent extends SplayQueue.Node
     implements Comparable<SimulatorEvent> {
 
@@ -106,9 +123,17 @@ public class Propagator {
     Component cause; // component emitting the value
     Value val; // value being emitted
 
+    SimulatorEvent nextFree; // free list link, only used while recycled
+
     private SimulatorEvent(int time, int serialNumber,
         CircuitState state, Location loc, Component cause, Value val) {
-      super(((long)time << 32) | (serialNumber & 0xFFFFFFFFL));
+      super(0);
+      init(time, serialNumber, state, loc, cause, val);
+    }
+
+    private void init(int time, int serialNumber,
+        CircuitState state, Location loc, Component cause, Value val) {
+      this.key = ((long)time << 32) | (serialNumber & 0xFFFFFFFFL);
       this.time = time;
       this.serialNumber = serialNumber;
       this.state = state;
@@ -123,7 +148,7 @@ public class Propagator {
     public SimulatorEvent cloneFor(CircuitState newState) {
       Propagator newProp = newState.getPropagator();
       int dtime = newProp.clock - state.getPropagator().clock;
-      SimulatorEvent ret = new SimulatorEvent(time + dtime,
+      SimulatorEvent ret = newProp.allocEvent(time + dtime,
           newProp.eventSerialNumber++, newState, loc, cause, val);
       return ret;
     }
@@ -199,26 +224,166 @@ public class Propagator {
   private volatile int simRandomShift;
 
   // The simulator event queue can be implemented by a PriorityQueue,
-  // SplayQueue, or LinkedQueue. LinkedQueue seems fastest in practice, though
-  // it has poor worst-case performance. SplayQueue should have good
-  // expected-case performance, but it seems a bit slower than LinkedQueue.
-  // Priority queue seems slightly worse than the others. It is trivial to
-  // switch between the implementations, just re-comment these next lines.
+  // SplayQueue, LinkedQueue, or TimingWheelQueue, chosen by the
+  // Options.ATTR_SIM_QUEUE project option. LinkedQueue seems fastest in
+  // practice for small circuits, though it has poor worst-case performance.
+  // SplayQueue should have good expected-case performance, but it seems a bit
+  // slower than LinkedQueue. Priority queue seems slightly worse than the
+  // others. TimingWheelQueue has O(1) add and remove for the short delays that
+  // make up nearly all events, so it should scale best for large circuits.
+  private PropagationQueue<SimulatorEvent> toProcess = new LinkedQueue<>();
+  private AttributeOption queueType = Options.SIM_QUEUE_LINKED; // type of toProcess
+  private volatile AttributeOption requestedQueueType = Options.SIM_QUEUE_LINKED;
+
+  private static class HeapQueue<T extends SplayQueue.Node & Comparable<T>>
+    implements PropagationQueue<T> {
+    private PriorityQueue<T> heap = new PriorityQueue<>();
+    public void add(T t) { heap.add(t); }
+    public int size() { return heap.size(); }
+    public boolean isEmpty() { return heap.isEmpty(); }
+    public void clear() { heap.clear(); }
+    public T peek() { return heap.peek(); }
+    public T remove() { return heap.poll(); }
+  }
+
+  // Parallel propagation. When simThreads > 1, the substates of a CircuitState
+  // are split into up to simThreads contiguous chunks, and each chunk is
+  // processed by a Worker (see fork()). Each CircuitState is only ever touched
+  // by one worker at a time, but workers share this Propagator, so anything a
+  // worker would do to it (adding events, recycling events, counting visits)
+  // is deferred into the worker and then replayed by the simulation thread,
+  // in chunk order, once all workers have finished. That is the same order
+  // the sequential walk would have done it in, so the same serial numbers and
+  // noise get assigned to the same events, and the results are identical.
+  private volatile int simThreads = 1;
+  private boolean forking = false; // true while workers are running
+  private Worker[] workers = new Worker[0];
+  private static final ThreadLocal<Worker> currentWorker = new ThreadLocal<>();
+  private static ForkJoinPool workerPool; // shared by all propagators
+
+  private static synchronized ForkJoinPool getWorkerPool() {
+    if (workerPool == null)
+      workerPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    return workerPool;
+  }
+
+  private static class Worker extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    // chunk of work
+    CircuitState parent;
+    ArrayList<CircuitState> subs;
+    int from, to;
+    boolean points, all;
+
+    // deferred calls to setValue()
+    int n = 0;
+    CircuitState[] evState = new CircuitState[16];
+    Location[] evLoc = new Location[16];
+    Value[] evVal = new Value[16];
+    Component[] evCause = new Component[16];
+    int[] evDelay = new int[16];
+
+    // deferred calls to recycle(), and visit count
+    ArrayList<SimulatorEvent> recycled = new ArrayList<>();
+    long visits;
+
+    @Override
+    protected void compute() {
+      currentWorker.set(this);
+      try {
+        for (int i = from; i < to; i++)
+          parent.processSubstate(subs.get(i), points, all);
+      } finally {
+        currentWorker.remove();
+      }
+    }
+
+    void defer(CircuitState state, Location loc, Value val, Component cause, int delay) {
+      if (n == evState.length) {
+        int m = 2 * n;
+        evState = Arrays.copyOf(evState, m);
+        evLoc = Arrays.copyOf(evLoc, m);
+        evVal = Arrays.copyOf(evVal, m);
+        evCause = Arrays.copyOf(evCause, m);
+        evDelay = Arrays.copyOf(evDelay, m);
+      }
+      evState[n] = state;
+      evLoc[n] = loc;
+      evVal[n] = val;
+      evCause[n] = cause;
+      evDelay[n] = delay;
+      n++;
+    }
 
-  // private PriorityQueue<SimulatorEvent> toProcess = new PriorityQueue<>();
-  // private SplayQueue<SimulatorEvent> toProcess = new SplayQueue<>();
-  private LinkedQueue<SimulatorEvent> toProcess = new LinkedQueue<>();
+    void commit(Propagator prop) {
+      for (int i = 0; i < n; i++) {
+        prop.setValue(evState[i], evLoc[i], evVal[i], evCause[i], evDelay[i]);
+        evState[i] = null;
+        evLoc[i] = null;
+        evVal[i] = null;
+        evCause[i] = null;
+      }
+      n = 0;
+      for (SimulatorEvent ev : recycled)
+        prop.recycle(ev);
+      recycled.clear();
+      prop.statesVisited += visits;
+      visits = 0;
+      parent = null;
+      subs = null;
+    }
+  }
+
+  // Compiled simulation (see CompiledSchedule). A schedule is compiled when
+  // first needed, and thrown away whenever the connectivity of any circuit, or
+  // the shape of the tree of substates, changes. Until it can be recompiled,
+  // and whenever the circuit turns out to be unsuitable, events are used.
+  private volatile boolean simCompiled = false;
+  private CompiledSchedule compiled; // null if unsuitable, or not compiled yet
+  private int compiledEpoch = -1; // connectivity epoch compiled for
+  private int compiledTreeEpoch = -1; // tree epoch compiled for
+  private CompiledSchedule passSchedule; // non-null during a compiled pass
 
   private int clock = 0;
   private boolean isOscillating = false;
   private boolean oscAdding = false;
   private PropagationPoints oscPoints = new PropagationPoints();
   private int halfClockCycles = 0;
+  private ClockTable clockTable; // null until needed, see toggleClocks()
+
+  // Incremented whenever a substate is attached to or detached from any state
+  // in this simulation, or a temporary clock is chosen, so the ClockTable and
+  // the compiled schedule can tell when they are out of date. Each simulation
+  // has its own, so one never invalidates another's, and it is atomic since
+  // both the GUI and the simulation thread attach and detach substates.
+  private final AtomicInteger treeEpoch = new AtomicInteger();
   private Random noiseSource = new Random();
   private int noiseCount = 0;
 
   private int eventSerialNumber = 0;
 
+  // Statistics on how much of the CircuitState tree gets walked. A state is
+  // visited once for each call to processDirtyPoints or
+  // processDirtyComponents, i.e. at most twice per step.
+  private long statesVisited = 0; // see stateVisited()
+  private long stepCount = 0;
+  private int statesVisitedLastStep = 0;
+  private int connectivityEpoch = -1; // last CircuitWires epoch seen
+
+  // Free list of recycled events. Only the simulation thread touches this, as
+  // it is the only thread that creates events (in setValue) and consumes them
+  // (in CircuitState.processDirtyPoints). Workers defer their recycling.
+  private SimulatorEvent freeEvents = null;
+  private long eventAllocations = 0; // events allocated (not recycled) ever
+  private long eventCount = 0; // calls to setValue ever, excluding wires
+  private long eventAllocationsAtTick = 0; // value of eventAllocations at last tick
+  private long eventAllocationsPerTick = 0; // allocations during last full tick
+
+  // Profiling (see PropagationProfile). This is null unless profiling is
+  // turned on, and it is only ever checked, never touched, when it is null.
+  volatile PropagationProfile profile;
+
   static int lastId = 0;
   int id = lastId++;
 
@@ -234,6 +399,9 @@ public class Propagator {
     root.getProject().getOptions().getAttributeSet().addAttributeWeakListener(this, l);
     updateRandomness();
     updateSimLimit();
+    updateQueueType();
+    updateSimThreads();
+    updateSimMode();
   }
 
   // // precondition: state.valuesLock held
@@ -283,10 +451,115 @@ public class Propagator {
     return halfClockCycles;
   }
 
+  // For Checkpoint, when restoring a saved simulation. The clock table is
+  // rebuilt, so that every clock is brought up to date on the next tick.
+  void setTickCount(int ticks) {
+    halfClockCycles = ticks;
+    clockTable = null;
+  }
+
   public boolean isOscillating() {
     return isOscillating;
   }
 
+  // Number of times the dirty points and components of the state tree have
+  // been processed, i.e. simulation steps plus one per propagate() call.
+  public long getStepCount() {
+    return stepCount;
+  }
+
+  // Total number of CircuitState visits over all steps.
+  public long getStateVisitCount() {
+    return statesVisited;
+  }
+
+  // Number of CircuitState visits during the most recent step.
+  public int getStatesVisitedLastStep() {
+    return statesVisitedLastStep;
+  }
+
+  private void processDirty() { // Safe to call from sim thread
+    // If any circuit's connectivity changed, every state needs to check for
+    // it, otherwise only states with pending work need to be visited.
+    int epoch = CircuitWires.getConnectivityEpoch();
+    boolean all = epoch != connectivityEpoch;
+    connectivityEpoch = epoch;
+    long before = statesVisited;
+    root.processDirtyPoints(all);
+    root.processDirtyComponents(all);
+    statesVisitedLastStep = (int)(statesVisited - before);
+    stepCount++;
+  }
+
+  // Total number of values emitted by components, whether they went through
+  // the event queue or were handled by a compiled pass.
+  public long getEventCount() {
+    return eventCount;
+  }
+
+  // Total number of SimulatorEvent objects ever allocated by this propagator.
+  // Once the free list is warmed up, this should stop increasing.
+  public long getEventAllocationCount() {
+    return eventAllocations;
+  }
+
+  // Number of SimulatorEvent objects allocated between the two most recent
+  // calls to toggleClocks(). This should be zero in steady state.
+  public long getEventAllocationsPerTick() {
+    return eventAllocationsPerTick;
+  }
+
+  private SimulatorEvent allocEvent(int time, int serialNumber,
+      CircuitState state, Location loc, Component cause, Value val) {
+    SimulatorEvent ev = freeEvents;
+    if (ev == null) {
+      eventAllocations++;
+      return new SimulatorEvent(time, serialNumber, state, loc, cause, val);
+    }
+    freeEvents = ev.nextFree;
+    ev.nextFree = null;
+    ev.init(time, serialNumber, state, loc, cause, val);
+    return ev;
+  }
+
+  // Called by CircuitState whenever a substate is attached or detached, and
+  // when a temporary clock is chosen (see treeEpoch). Safe from any thread.
+  void treeChanged() {
+    treeEpoch.incrementAndGet();
+  }
+
+  // Called by CircuitState once per processDirtyPoints or
+  // processDirtyComponents.
+  void stateVisited() {
+    if (forking) {
+      Worker w = currentWorker.get();
+      if (w != null) {
+        w.visits++;
+        return;
+      }
+    }
+    statesVisited++;
+  }
+
+  // Return an event to the free list. The caller must guarantee the event is
+  // no longer held by toProcess or by any CircuitState.dirtyPoints list.
+  void recycle(SimulatorEvent ev) {
+    if (forking) {
+      Worker w = currentWorker.get();
+      if (w != null) {
+        w.recycled.add(ev);
+        return;
+      }
+    }
+    ev.state = null; // drop references so recycled events don't pin anything
+    ev.loc = null;
+    ev.cause = null;
+    ev.val = null;
+    ev.left = ev.right = null;
+    ev.nextFree = freeEvents;
+    freeEvents = ev;
+  }
+
   boolean isPending() {
     return !toProcess.isEmpty();
   }
@@ -301,9 +574,19 @@ public class Propagator {
   }
 
   public boolean propagate(Simulator.ProgressListener propListener, Simulator.Event propEvent) { // Safe to call from sim thread
+    checkQueueType();
+    if (simCompiled) {
+      CompiledSchedule sched = getCompiledSchedule();
+      if (sched != null) {
+        if (propagateCompiled(sched))
+          return sched.getEvaluations() > 0;
+        // Gave up, perhaps because of oscillation. Let the events sort it out,
+        // and don't use the schedule again until the circuit changes.
+        compiled = null;
+      }
+    }
     oscPoints.clear();
-    root.processDirtyPoints();
-    root.processDirtyComponents();
+    processDirty();
 
     int oscThreshold = simLimit;
     int logThreshold = 3 * oscThreshold / 4;
@@ -357,9 +640,70 @@ public class Propagator {
   //   return head;
   // }
 
+  // Returns the schedule for the circuit as it is now, compiling it if need
+  // be, or null if the circuit is unsuitable or not ready to be compiled.
+  private CompiledSchedule getCompiledSchedule() { // Safe to call from sim thread
+    int epoch = CircuitWires.getConnectivityEpoch();
+    int treeEpoch = this.treeEpoch.get();
+    if (epoch == compiledEpoch && treeEpoch == compiledTreeEpoch)
+      return compiled;
+    compiled = null;
+    if (epoch != connectivityEpoch)
+      return null; // some states haven't seen the new connectivity yet
+    CompiledSchedule sched = new CompiledSchedule(root);
+    if (!sched.isSettled())
+      return null; // try again after the next propagate
+    // DEBUG: if (!sched.isSuitable())
+    // DEBUG:   System.out.println("not compiled: " + sched.getUnsuitableReason());
+    compiledEpoch = epoch;
+    compiledTreeEpoch = treeEpoch;
+    compiled = sched.isSuitable() ? sched : null;
+    return compiled;
+  }
+
+  // One straight-line pass over everything that is pending, instead of
+  // stepping through events. Returns false if the pass had to give up, in
+  // which case whatever is left is pending as usual.
+  private boolean propagateCompiled(CompiledSchedule sched) { // Safe to call from sim thread
+    oscPoints.clear();
+    long before = statesVisited;
+    boolean ok = false;
+    passSchedule = sched;
+    sched.begin();
+    try {
+      // There are no delays, so pending events all take effect right away.
+      while (!toProcess.isEmpty()) {
+        SimulatorEvent ev = toProcess.remove();
+        ev.state.markPointAsDirty(ev);
+      }
+      root.processDirtyPoints(false);
+      root.drainDirtyComponents(sched);
+      ok = sched.run(simLimit);
+    } finally {
+      passSchedule = null;
+      sched.end();
+    }
+    statesVisitedLastStep = (int)(statesVisited - before);
+    stepCount++;
+    if (ok)
+      isOscillating = false;
+    return ok;
+  }
+
+  // Called by CircuitState for components that need to be propagated.
+  // Returns true if the compiled pass in progress has taken care of it.
+  boolean markCompiled(CircuitState state, Component comp) {
+    CompiledSchedule sched = passSchedule;
+    return sched != null && sched.mark(state, comp);
+  }
+
   void reset() {
+    compiled = null;
+    compiledEpoch = -1;
     halfClockCycles = 0;
-    toProcess.clear();
+    clockTable = null;
+    while (!toProcess.isEmpty())
+      recycle(toProcess.remove());
     root.reset();
     isOscillating = false;
   }
@@ -367,6 +711,22 @@ public class Propagator {
   void setValue(CircuitState state, Location pt, Value val, Component cause, int delay) {
     if (cause instanceof Wire || cause instanceof Splitter)
       return;
+    PropagationProfile prof = profile;
+    if (prof != null)
+      prof.emitted(state, cause);
+    CompiledSchedule sched = passSchedule;
+    if (sched != null && sched.setValue(state, pt, val, cause)) {
+      eventCount++;
+      return;
+    }
+    if (forking) {
+      Worker w = currentWorker.get();
+      if (w != null) {
+        w.defer(state, pt, val, cause, delay);
+        return; // counted when replayed
+      }
+    }
+    eventCount++;
     if (delay <= 0) {
       delay = 1;
     }
@@ -384,7 +744,7 @@ public class Propagator {
         }
       }
     }
-    toProcess.add(new SimulatorEvent(clock + delay, eventSerialNumber, state, pt, cause, val));
+    toProcess.add(allocEvent(clock + delay, eventSerialNumber, state, pt, cause, val));
 
     // DEBUG: System.out.printf("%s: set %s in %s to %s by %s after %s\n",
     // DEBUG:     clock, pt, state, val, cause, delay);
@@ -394,9 +754,9 @@ public class Propagator {
   }
 
   boolean step(PropagationPoints changedPoints) { // Safe to call from sim thread
+    checkQueueType();
     oscPoints.clear();
-    root.processDirtyPoints();
-    root.processDirtyComponents();
+    processDirty();
 
     if (toProcess.isEmpty())
       return false;
@@ -463,17 +823,34 @@ public class Propagator {
 
 		// DEBUG: System.out.println("-- process dirty points --");
 		// DEBUG: root.dump("for %s before processDirtyPoints", this);
-    root.processDirtyPoints();
 		// DEBUG: root.dump("for %s after processDirtyPoints, before processDirtyComponents", this);
 		// DEBUG: System.out.println("-- process dirty components --");
-    root.processDirtyComponents();
+    processDirty();
 		// DEBUG: root.dump("for %s after processDirtyComponents", this);
 		// DEBUG: System.out.println("-- Done --");
   }
 
+  public void setProfiling(boolean enable) {
+    if (!enable)
+      profile = null;
+    else if (profile == null)
+      profile = new PropagationProfile();
+  }
+
+  public PropagationProfile getProfile() {
+    return profile;
+  }
+
   public boolean toggleClocks() {
     halfClockCycles++;
-    return root.toggleClocks(halfClockCycles);
+    eventAllocationsPerTick = eventAllocations - eventAllocationsAtTick;
+    eventAllocationsAtTick = eventAllocations;
+    int epoch = CircuitState.getClockEpoch();
+    int treeEpoch = this.treeEpoch.get();
+    ClockTable table = clockTable;
+    if (table == null || table.epoch != epoch || table.treeEpoch != treeEpoch)
+      clockTable = table = new ClockTable(root, epoch, treeEpoch);
+    return table.tick(halfClockCycles);
   }
 
   @Override
@@ -491,6 +868,102 @@ public class Propagator {
     simRandomShift = logVal;
   }
 
+  private void updateQueueType() {
+    Options opts = root.getProject().getOptions();
+    // The option may be changed by the GUI thread at any time, but only the
+    // simulation thread touches toProcess, so it does the actual switch.
+    requestedQueueType = opts.getAttributeSet().getValue(Options.ATTR_SIM_QUEUE);
+  }
+
+  private void checkQueueType() { // Safe to call from sim thread
+    AttributeOption type = requestedQueueType;
+    if (type == queueType)
+      return;
+    PropagationQueue<SimulatorEvent> q;
+    if (type == Options.SIM_QUEUE_SPLAY)
+      q = new SplayQueue<>();
+    else if (type == Options.SIM_QUEUE_HEAP)
+      q = new HeapQueue<>();
+    else if (type == Options.SIM_QUEUE_WHEEL)
+      q = new TimingWheelQueue<>();
+    else
+      q = new LinkedQueue<>();
+    while (!toProcess.isEmpty())
+      q.add(toProcess.remove());
+    toProcess = q;
+    queueType = type;
+  }
+
+  private void updateSimThreads() {
+    Options opts = root.getProject().getOptions();
+    Integer threads = opts.getAttributeSet().getValue(Options.ATTR_SIM_THREADS);
+    simThreads = threads == null ? 1 : Math.max(1, threads.intValue());
+  }
+
+  private void updateSimMode() {
+    Options opts = root.getProject().getOptions();
+    simCompiled = opts.getAttributeSet().getValue(Options.ATTR_SIM_MODE) == Options.SIM_MODE_COMPILED;
+  }
+
+  // Whether the given number of substates should be split across workers.
+  // Workers never fork again themselves, and oscillation tracking (which
+  // records touched locations in order) is always done sequentially, as is
+  // everything while profiling.
+  boolean canFork(int n) { // Safe to call from sim thread
+    return n > 1 && simThreads > 1 && !forking && !oscAdding && profile == null;
+  }
+
+  // Process subs (substates of parent) in parallel, then replay all deferred
+  // work in the order the sequential walk would have done it.
+  void fork(CircuitState parent, ArrayList<CircuitState> subs,
+      boolean points, boolean all) { // Safe to call from sim thread
+    int n = subs.size();
+    int k = Math.min(simThreads, n);
+    if (workers.length < k) {
+      Worker[] w = Arrays.copyOf(workers, k);
+      for (int i = workers.length; i < k; i++)
+        w[i] = new Worker();
+      workers = w;
+    }
+    for (int i = 0; i < k; i++) {
+      Worker w = workers[i];
+      w.reinitialize();
+      w.parent = parent;
+      w.subs = subs;
+      w.from = (int)((long)n * i / k);
+      w.to = (int)((long)n * (i + 1) / k);
+      w.points = points;
+      w.all = all;
+    }
+    ForkJoinPool pool = getWorkerPool();
+    RuntimeException failure = null;
+    forking = true;
+    try {
+      for (int i = 1; i < k; i++)
+        pool.execute(workers[i]);
+      // this thread does the first chunk itself
+      try {
+        workers[0].invoke();
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+      for (int i = 1; i < k; i++) {
+        try {
+          workers[i].join();
+        } catch (RuntimeException e) {
+          if (failure == null)
+            failure = e;
+        }
+      }
+    } finally {
+      forking = false;
+    }
+    for (int i = 0; i < k; i++)
+      workers[i].commit(this);
+    if (failure != null)
+      throw failure;
+  }
+
   private void updateSimLimit() {
     Options opts = root.getProject().getOptions();
     Object limit = opts.getAttributeSet().getValue(Options.ATTR_SIM_LIMIT);
@@ -87,7 +87,48 @@ public abstract class RadixOption extends AttributeOption {
         return 10; // 128M..512M
       case 31:
       case 32:
-        return 11; // 1G..2G
+      case 33:
+      case 34:
+        return 11; // 1G..8G
+      case 35:
+      case 36:
+      case 37:
+        return 12; // 16G..64G
+      case 38:
+      case 39:
+      case 40:
+        return 13; // 128G..512G
+      case 41:
+      case 42:
+      case 43:
+      case 44:
+        return 14; // 1T..8T
+      case 45:
+      case 46:
+      case 47:
+        return 15; // 16T..64T
+      case 48:
+      case 49:
+      case 50:
+        return 16; // 128T..512T
+      case 51:
+      case 52:
+      case 53:
+      case 54:
+        return 17; // 1P..8P
+      case 55:
+      case 56:
+      case 57:
+        return 18; // 16P..64P
+      case 58:
+      case 59:
+      case 60:
+        return 19; // 128P..512P
+      case 61:
+      case 62:
+      case 63:
+      case 64:
+        return 20; // 1E..8E
       default:
         return 1;
       }
@@ -144,7 +185,49 @@ public abstract class RadixOption extends AttributeOption {
       case 30:
       case 31:
       case 32:
+      case 33:
         return 10;
+      case 34:
+      case 35:
+      case 36:
+        return 11;
+      case 37:
+      case 38:
+      case 39:
+        return 12;
+      case 40:
+      case 41:
+      case 42:
+      case 43:
+        return 13;
+      case 44:
+      case 45:
+      case 46:
+        return 14;
+      case 47:
+      case 48:
+      case 49:
+        return 15;
+      case 50:
+      case 51:
+      case 52:
+      case 53:
+        return 16;
+      case 54:
+      case 55:
+      case 56:
+        return 17;
+      case 57:
+      case 58:
+      case 59:
+        return 18;
+      case 60:
+      case 61:
+      case 62:
+      case 63:
+        return 19;
+      case 64:
+        return 20;
       default:
         return 1;
       }
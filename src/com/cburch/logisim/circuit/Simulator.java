@@ -44,19 +44,30 @@ import com.cburch.logisim.util.UniquelyNamedThread;
 
 public class Simulator {
 
+  // Tick frequency for running as fast as possible (see setTickFrequency).
+  public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
   public static class Event {
     private Simulator source;
     private boolean didTick, didSingleStep, didPropagate;
+    private int tickCount;
 
     public Event(Simulator src, boolean t, boolean s, boolean p) {
+      this(src, t ? 1 : 0, s, p);
+    }
+
+    public Event(Simulator src, int ticks, boolean s, boolean p) {
       source = src;
-      didTick = t;
+      didTick = ticks > 0;
+      tickCount = ticks;
       didSingleStep = s;
       didPropagate = p;
     }
 
     public Simulator getSource() { return source; }
     public boolean didTick() { return didTick; }
+    // In max-speed mode, one event covers a whole batch of ticks.
+    public int getTickCount() { return tickCount; }
     public boolean didSingleStep() { return didSingleStep; }
     public boolean didPropagate() { return didPropagate; }
   }
@@ -88,7 +99,12 @@ public class Simulator {
   //
   // [auto-tick]   If autoTicking is on and autoPropagation is on, the thread
   //               periodically wakes up and invokes toggleClocks() then
-  //               propagate().
+  //               propagate(). At MAX_SPEED, it doesn't wait at all, and
+  //               instead runs a batch of ticks back to back, sized to take
+  //               about MAX_SPEED_BATCH_NANOS, then notifies listeners just
+  //               once for the whole batch. Notifying listeners means
+  //               repainting and logging, which would otherwise cost far more
+  //               than the propagation itself at high tick rates.
   //
   // [manual-tick] If the User/GUI requests a tick happen and autoPropagation is
   //               on, the thread wakes up and invokes toggleClocks() then
@@ -110,12 +126,21 @@ public class Simulator {
     private Simulator sim;
     private long lastTick = System.nanoTime();
 
+    private static final long MAX_SPEED_BATCH_NANOS = 1000000000L / 30;
+    private static final int MAX_SPEED_BATCH_LIMIT = 1 << 20;
+    private int batchSize = 1;
+
+    // Incremented by every request, so a batch of ticks can be cut short
+    // without taking the lock after each tick.
+    private volatile int requestCount;
+
     // NOTE: These variables must only be accessed with lock held.
     private Propagator _propagator = null;
     private boolean _autoPropagating = true;
     private boolean _autoTicking = false;
     private double _autoTickFreq = 1.0; // Hz
     private long _autoTickNanos = (long)Math.round(1e9 / (2*_autoTickFreq));
+    private boolean _maxSpeed = false;
     private int _manualTicksRequested = 0;
     private int _manualStepsRequested = 0;
     private boolean _nudgeRequested = false;
@@ -131,6 +156,13 @@ public class Simulator {
       sim = s;
     }
 
+    // Called with lock held after any change to the request variables.
+    private void wake() {
+      requestCount++;
+      if (Thread.currentThread() != this)
+        notifyAll();
+    }
+
     synchronized Propagator getPropagator() { return _propagator; }
     synchronized boolean isExceptionEncountered() { return _oops; }
     synchronized boolean isAutoTicking() { return _autoTicking; }
@@ -162,8 +194,7 @@ public class Simulator {
       _propagator = value;
       _manualTicksRequested = 0;
       _manualStepsRequested = 0;
-      if (Thread.currentThread() != this)
-        notifyAll();
+      wake();
       return true;
     }
     
@@ -175,8 +206,7 @@ public class Simulator {
         _manualStepsRequested = 0; // manual steps not allowed in autoPropagating mode
       else
         _nudgeRequested = false; // nudges not allowed in single-step mode
-      if (Thread.currentThread() != this)
-        notifyAll();
+      wake();
       return true;
     }
 
@@ -184,8 +214,7 @@ public class Simulator {
       if (_autoTicking == value)
         return false;
       _autoTicking = value;
-      if (Thread.currentThread() != this)
-        notifyAll();
+      wake();
       return true;
     }
 
@@ -194,45 +223,48 @@ public class Simulator {
         return false;
       _autoTickFreq = freq;
       _autoTickNanos = freq <= 0 ? 0 : (long)Math.round(1e9 / (2*_autoTickFreq));
-      if (Thread.currentThread() != this)
-        notifyAll();
+      _maxSpeed = freq == MAX_SPEED;
+      wake();
       return true;
     }
 
     synchronized void requestStep() {
       _manualStepsRequested++;
       _autoPropagating = false;
-      if (Thread.currentThread() != this)
-        notifyAll();
+      wake();
     }
 
     synchronized void requestTick(int count) {
       _manualTicksRequested += count;
-      if (Thread.currentThread() != this)
-        notifyAll();
+      wake();
+    }
+
+    synchronized boolean requestPause() {
+      boolean wasTicking = _autoTicking;
+      _autoTicking = false;
+      _manualTicksRequested = 0;
+      wake();
+      return wasTicking;
     }
 
     synchronized void requestReset() {
       _resetRequested = true;
       _manualTicksRequested = 0;
       _manualStepsRequested = 0;
-      if (Thread.currentThread() != this)
-        notifyAll();
+      wake();
     }
 
     synchronized boolean requestNudge() {
       if (!_autoPropagating)
         return false;
       _nudgeRequested = true;
-      if (Thread.currentThread() != this)
-        notifyAll();
+      wake();
       return true;
     }
 
     synchronized void requestShutDown() {
       _complete = true;
-      if (Thread.currentThread() != this)
-        notifyAll();
+      wake();
     }
 
     int cnt;
@@ -245,6 +277,8 @@ public class Simulator {
       boolean doTickIfStable = false;
       boolean doStep = false;
       boolean doProp = false;
+      int batch = 0; // max-speed ticks to run, including the first
+      int seq = 0;
       long now = 0;
 
       synchronized (this) {
@@ -286,7 +320,12 @@ public class Simulator {
           }
          
           long delta = 0;
-          if (_autoTicking && _autoPropagating && _autoTickNanos > 0) {
+          if (_autoTicking && _autoPropagating && _maxSpeed) {
+            doTick = true;
+            doProp = true;
+            batch = batchSize;
+            ready = true;
+          } else if (_autoTicking && _autoPropagating && _autoTickNanos > 0) {
             // see if it is time to do an auto-tick
             long deadline = lastTick + _autoTickNanos;
             delta = deadline - now;
@@ -309,6 +348,7 @@ public class Simulator {
           }
         } while (!ready);
 
+        seq = requestCount;
         _oops = false;
       }
       // DEBUGGING
@@ -320,6 +360,7 @@ public class Simulator {
       boolean stepped = false;
       boolean propagated = false;
       boolean hasClocks = true;
+      int tickCount = 0;
 
       if (doReset) try {
         stepPoints.clear();
@@ -334,6 +375,7 @@ public class Simulator {
       if (doTick || (doTickIfStable && prop != null && !prop.isPending())) {
         lastTick = now;
         ticked = true;
+        tickCount = 1;
         if (prop != null)
           hasClocks = prop.toggleClocks();
       }
@@ -346,6 +388,14 @@ public class Simulator {
         stepPoints.clear();
         if (prop != null)
           propagated |= prop.propagate(p, evt);
+        // At max speed, carry on with the rest of the batch, unless some
+        // request needs attention first.
+        while (prop != null && tickCount < batch && hasClocks
+            && !prop.isOscillating() && requestCount == seq) {
+          hasClocks = prop.toggleClocks();
+          prop.propagate(p, evt);
+          tickCount++;
+        }
       } catch (Exception err) {
         oops = true;
         err.printStackTrace();
@@ -365,6 +415,15 @@ public class Simulator {
      
       osc = prop != null && prop.isOscillating();
 
+      if (batch > 0 && tickCount == batch) {
+        // Aim for the next batch to take MAX_SPEED_BATCH_NANOS, but don't
+        // grow or shrink it by more than half at a time.
+        long elapsed = Math.max(1, System.nanoTime() - now);
+        long ideal = MAX_SPEED_BATCH_NANOS * batch / elapsed;
+        ideal = Math.max(batch / 2, Math.min(batch + batch / 2 + 1, ideal));
+        batchSize = (int)Math.max(1, Math.min(MAX_SPEED_BATCH_LIMIT, ideal));
+      }
+
       boolean clockDied = false;
       synchronized (this) {
         _oops = oops;
@@ -384,7 +443,7 @@ public class Simulator {
       // accompanied by a tick, step, or propagate. That allows for a repaint in
       // some components.
       if (ticked || stepped || propagated || doNudge)
-        sim._firePropagationCompleted(ticked, stepped && !propagated, propagated); // todo: fixme: ack, wrong thread!
+        sim._firePropagationCompleted(tickCount, stepped && !propagated, propagated); // todo: fixme: ack, wrong thread!
       if (clockDied)
         sim.fireSimulatorStateChanged(); ; // todo: fixme: ack, wrong thread!
 
@@ -558,7 +617,7 @@ public class Simulator {
   }
 
   // called from simThread, but probably should not be
-  private void _firePropagationCompleted(boolean t, boolean s, boolean p) {
+  private void _firePropagationCompleted(int t, boolean s, boolean p) {
     int n = _numListeners;
     Listener[] list = _listeners;
     if (n < 0) {
@@ -668,6 +727,15 @@ public class Simulator {
     simThread.requestTick(count);
   }
 
+  // Stops the clock and drops any ticks still requested, e.g. when a memory
+  // watchpoint is hit. The tick in progress finishes propagating first. This
+  // may be called by components from within propagation, so listeners hear
+  // of the change later, on the event thread.
+  public void pause() {
+    if (simThread.requestPause())
+      SwingUtilities.invokeLater(() -> fireSimulatorStateChanged());
+  }
+
   // User/GUI manually requests a reset
   public void reset() {
     simThread.requestReset();
@@ -36,11 +36,12 @@ package com.cburch.logisim.circuit;
 // A simple splay tree implementation, using keys of type long, and values that
 // extend type SplayQueue.Node. This supports (approximately) a subset of the
 // java.util.PriorityQueue API, but only enough to support Propagator.
-public class SplayQueue<T extends SplayQueue.Node> {
+public class SplayQueue<T extends SplayQueue.Node>
+  implements PropagationQueue<T> {
 
   // Objects in the queue must be subclasses of Node.
   public static class Node {
-    final long key;
+    long key; // mutable only so Propagator can recycle events, never while queued
     Node left, right;
     public Node(long key) { this.key = key; }
   }
@@ -0,0 +1,196 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+import static com.cburch.logisim.circuit.SplayQueue.Node;
+
+// A timing wheel (calendar queue) implementation, using keys of type long, and
+// values that extend type SplayQueue.Node. The upper 32 bits of each key are
+// taken to be the event time, and the lower 32 bits a serial number that
+// breaks ties between events at the same time (see Propagator.SimulatorEvent).
+//
+// Events scheduled less than WHEEL_SIZE time units past the current time go
+// into a bucket indexed by their time, giving O(1) add and remove. Nearly all
+// propagation delays are small, even after being shifted by simRandomShift, so
+// this is the common case. Events further in the future go into an overflow
+// SplayQueue, and are moved into the wheel once the current time catches up.
+//
+// Invariant: every queued event with time in [now, now + WHEEL_SIZE) is in the
+// wheel, and every other queued event is in the overflow queue. Each bucket
+// then holds events of a single time only, and because serial numbers are
+// handed out in increasing order, appending at the tail keeps a bucket sorted.
+public class TimingWheelQueue<T extends SplayQueue.Node>
+  implements PropagationQueue<T> {
+
+  private static final int WHEEL_BITS = 10;
+  private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+  private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+
+  // Buckets are singly-linked through Node.right. The occupied bitmap has one
+  // bit per non-empty bucket, so the wheel can skip ahead over empty buckets.
+  private Node[] head = new Node[WHEEL_SIZE];
+  private Node[] tail = new Node[WHEEL_SIZE];
+  private long[] occupied = new long[WHEEL_SIZE / 64];
+  private SplayQueue<T> overflow = new SplayQueue<>();
+  private int now; // time of the earliest bucket that might be non-empty
+  private int inWheel; // number of nodes in the wheel (not in overflow)
+  private int size;
+
+  private static int timeOf(Node t) {
+    return (int)(t.key >> 32);
+  }
+
+  // add(t) inserts a new node into the queue.
+  public void add(T t) {
+    int dt = timeOf(t) - now; // may overflow, intentionally, as in Propagator
+    if (dt < 0) {
+      // Event is in the past relative to the wheel, which Propagator never
+      // does. Handle it anyway by rewinding the wheel.
+      rewind(timeOf(t));
+      dt = 0;
+    }
+    size++;
+    if (dt < WHEEL_SIZE)
+      append(t);
+    else
+      overflow.add(t);
+  }
+
+  private void append(Node t) {
+    int b = timeOf(t) & WHEEL_MASK;
+    t.left = t.right = null;
+    if (tail[b] == null) {
+      head[b] = t;
+      occupied[b >>> 6] |= 1L << b;
+    } else
+      tail[b].right = t;
+    tail[b] = t;
+    inWheel++;
+  }
+
+  // Move everything into overflow, then restart the wheel at the given time.
+  private void rewind(int time) {
+    for (int b = 0; b < WHEEL_SIZE && inWheel > 0; b++) {
+      Node t = head[b];
+      while (t != null) {
+        Node next = t.right;
+        t.left = t.right = null;
+        @SuppressWarnings("unchecked")
+        T queued = (T) t; // only ever T's are added to the wheel
+        overflow.add(queued);
+        inWheel--;
+        t = next;
+      }
+      head[b] = tail[b] = null;
+    }
+    for (int w = 0; w < occupied.length; w++)
+      occupied[w] = 0;
+    now = time;
+    migrate();
+  }
+
+  // Move events from overflow into the wheel, now that they are close enough.
+  private void migrate() {
+    T t;
+    while ((t = overflow.peek()) != null && timeOf(t) - now < WHEEL_SIZE)
+      append(overflow.remove());
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    for (int b = 0; b < WHEEL_SIZE; b++)
+      head[b] = tail[b] = null;
+    for (int w = 0; w < occupied.length; w++)
+      occupied[w] = 0;
+    overflow.clear();
+    inWheel = 0;
+    size = 0;
+  }
+
+  // peek() returns the smallest node, or null if the queue is empty.
+  public T peek() {
+    if (size == 0)
+      return null;
+    if (inWheel == 0) {
+      // Skip directly ahead to the earliest overflow event.
+      now = timeOf(overflow.peek());
+      migrate();
+    }
+    int b = now & WHEEL_MASK;
+    if (head[b] == null) {
+      // Advance to the next non-empty bucket, moving any overflow events
+      // that come into range as the wheel turns.
+      int next = nextOccupied(b);
+      now += (next - b) & WHEEL_MASK;
+      b = next;
+      migrate();
+    }
+    @SuppressWarnings("unchecked")
+    T first = (T) head[b]; // only ever T's are added to the wheel
+    return first;
+  }
+
+  // nextOccupied(b) returns the first non-empty bucket after b, wrapping
+  // around the end of the wheel. There must be at least one such bucket.
+  private int nextOccupied(int b) {
+    int w = b >>> 6;
+    long bits = occupied[w] & (-1L << b); // mask off buckets before b
+    while (bits == 0) {
+      w = (w + 1) & (occupied.length - 1);
+      bits = occupied[w];
+    }
+    return (w << 6) | Long.numberOfTrailingZeros(bits);
+  }
+
+  // remove() removes the smallest node, or null if the queue is empty.
+  public T remove() {
+    T t = peek();
+    if (t == null)
+      return null;
+    int b = now & WHEEL_MASK;
+    head[b] = t.right;
+    if (head[b] == null) {
+      tail[b] = null;
+      occupied[b >>> 6] &= ~(1L << b);
+    }
+    t.right = null;
+    inWheel--;
+    size--;
+    return t;
+  }
+
+}
@@ -0,0 +1,256 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.circuit;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.cburch.logisim.data.Location;
+import com.cburch.logisim.data.Value;
+
+// Storage for the values resulting from propagation within one CircuitState,
+// i.e. the values you would see if you stuck a probe at some location on the
+// circuit sheet. Only the simulator thread ever writes to a ValueStore, but the
+// GUI thread reads from it constantly while painting. Rather than take a lock
+// on every access, which contends with painting millions of times per second,
+// writes are published with release semantics and reads use acquire
+// semantics, so neither side ever blocks the other.
+//
+// Values are only ever stored at locations where a component port touches a
+// bus. CircuitWires numbers those locations densely, once per connectivity map
+// (see Index), and each ValueStore holds an array of exactly that size. Memory
+// thus scales with the number of connected points in the circuit, rather than
+// with the area of the canvas. When connectivity is updated incrementally, the
+// new index keeps the slot numbers of all surviving locations, so the values
+// can be carried over (see carry) rather than re-propagated. The index and the
+// array are published together, so a reader never pairs an index with an
+// array of the wrong size.
+//
+// Individual reads always see some value that was written. Readers that need a
+// consistent view of the whole store (see copyFrom) use the sequence counter
+// seq, in the style of a seqlock: the writer makes seq odd while it is in the
+// middle of a batch of writes, and even again once it is done. A copy does not
+// actually copy anything: the two stores share one array, marked as shared,
+// and whichever store next begins a batch of writes first takes a private copy
+// (see beginWrite). Cloning a state whose values are mostly left alone, as
+// when spawning test or batch workers, thus costs next to nothing.
+class ValueStore {
+
+  // A dense numbering of the interesting locations in one version of a
+  // circuit's connectivity. Immutable once built, and shared by every
+  // CircuitState simulating that circuit. An index built by extending another
+  // one can have a few unused slots, left behind by locations that have since
+  // disappeared, so its size can exceed the number of locations.
+  static class Index {
+    static final Index EMPTY = new Index(new HashMap<>());
+
+    private final HashMap<Location, Integer> slots;
+    private final int size;
+
+    Index(HashMap<Location, Integer> slots) {
+      this(slots, slots.size());
+    }
+
+    Index(HashMap<Location, Integer> slots, int size) {
+      this.slots = slots;
+      this.size = size;
+    }
+
+    int size() {
+      return size;
+    }
+
+    // Number of slots actually in use.
+    int count() {
+      return slots.size();
+    }
+
+    // Returns an index for the locations of this one, less those in removed,
+    // plus those in added. Locations in both keep their slots, as do all
+    // others that were not removed. Added locations get new slots past the
+    // end, so slots given up by removed locations are never reused.
+    Index update(Collection<Location> removed, Collection<Location> added) {
+      HashMap<Location, Integer> s = new HashMap<>(slots);
+      for (Location p : removed)
+        s.remove(p);
+      int n = size;
+      for (Location p : added) {
+        Integer i = slots.get(p);
+        s.put(p, i != null ? i : Integer.valueOf(n++));
+      }
+      return new Index(s, n);
+    }
+
+    // Returns the slot for p, or -1 if no value can ever be stored at p.
+    int slotFor(Location p) {
+      Integer i = slots.get(p);
+      return i == null ? -1 : i.intValue();
+    }
+  }
+
+  private static class Slots {
+    final Index index;
+    final AtomicReferenceArray<Value> vals;
+    // Set once these slots are shared between two stores, after which they
+    // must never be written again.
+    volatile boolean shared;
+
+    Slots(Index index) {
+      this.index = index;
+      this.vals = new AtomicReferenceArray<>(index.size());
+    }
+
+    Slots(Slots src) {
+      this.index = src.index;
+      int n = index.size();
+      this.vals = new AtomicReferenceArray<>(n);
+      for (int i = 0; i < n; i++)
+        vals.setPlain(i, src.vals.getAcquire(i));
+    }
+  }
+
+  // Give up on sharing a perfectly consistent snapshot after this many tries,
+  // and fall back to a plain copy. The copy is only used to seed a cloned
+  // CircuitState, which re-propagates all of its buses anyway, so a slightly
+  // torn copy does no harm.
+  private static final int SNAPSHOT_ATTEMPTS = 8;
+
+  private volatile Slots slots = new Slots(Index.EMPTY);
+  private volatile int seq;
+
+  // Any thread. Returns null if no value has been stored at p.
+  Value get(Location p) {
+    Slots s = slots;
+    int i = s.index.slotFor(p);
+    return i < 0 ? null : s.vals.getAcquire(i);
+  }
+
+  // Simulator thread only. Brackets a batch of writes, for the sake of readers
+  // wanting a consistent snapshot. Batches do not nest. All writes happen
+  // within a batch, so this is the one place shared slots need to be copied.
+  void beginWrite() {
+    seq++;
+    Slots s = slots;
+    if (s.shared)
+      slots = new Slots(s);
+  }
+
+  void endWrite() {
+    seq++;
+  }
+
+  // Simulator thread only. Stores v in slot i (as numbered by the current
+  // index), or erases it if v is NIL, and returns true if the stored value
+  // changed. Negative slots are ignored.
+  boolean set(int i, Value v) {
+    if (i < 0)
+      return false;
+    AtomicReferenceArray<Value> vals = slots.vals;
+    Value old = vals.getPlain(i);
+    if (v == Value.NIL) {
+      if (old == null)
+        return false;
+      vals.setRelease(i, null);
+      return true;
+    } else {
+      if (v.equals(old))
+        return false;
+      vals.setRelease(i, v);
+      return true;
+    }
+  }
+
+  // Simulator thread (or a thread that owns a not-yet-published state) only.
+  // Erases all values, and switches to the given index.
+  void clear(Index index) {
+    slots = new Slots(index);
+  }
+
+  void clear() {
+    clear(slots.index);
+  }
+
+  // Simulator thread only. Switches from index prev to index next, which must
+  // number every location common to both the same way, keeping the values at
+  // those locations, except for the ones in erased. If the store is not using
+  // prev, this erases all values.
+  void carry(Index prev, Index next, Collection<Location> erased) {
+    Slots s = slots;
+    if (s.index != prev) {
+      clear(next);
+      return;
+    }
+    Slots mine = new Slots(next);
+    int n = Math.min(prev.size(), next.size());
+    for (int i = 0; i < n; i++)
+      mine.vals.setPlain(i, s.vals.getPlain(i));
+    for (Location p : erased) {
+      int i = next.slotFor(p);
+      if (i >= 0)
+        mine.vals.setPlain(i, null);
+    }
+    slots = mine;
+  }
+
+  // Erases all values, but only if the store is not already using the given
+  // index.
+  void useIndex(Index index) {
+    if (slots.index != index)
+      clear(index);
+  }
+
+  // Called only on a freshly created store, which no other thread can see yet,
+  // so only src needs any care. The simulator thread may be writing to src
+  // concurrently. We mark its slots shared and then check that seq is even and
+  // unchanged: the writer bumps seq before it checks the flag in beginWrite,
+  // so if seq did not move, any later batch is sure to see the flag and leave
+  // the shared slots alone. Otherwise retry (or, after too many tries, fall
+  // back to a plain copy). A flag left set by a failed try merely costs the
+  // writer one needless copy.
+  void copyFrom(ValueStore src) {
+    for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+      int seen = src.seq;
+      if ((seen & 1) != 0) {
+        Thread.yield();
+        continue;
+      }
+      Slots s = src.slots;
+      s.shared = true;
+      if (src.seq == seen && src.slots == s) {
+        slots = s;
+        return;
+      }
+    }
+    slots = new Slots(src.slots);
+  }
+
+}
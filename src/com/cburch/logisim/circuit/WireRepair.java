@@ -216,20 +216,56 @@ class WireRepair extends CircuitTransaction {
     mutator.replace(circuit, replacements);
   }
 
+  // Sorts a set of locations into rows and columns, so the locations lying on
+  // any one wire can be found without examining every location in the circuit.
+  private static class Grid {
+    private final HashMap<Integer, TreeSet<Location>> rows = new HashMap<>();
+    private final HashMap<Integer, TreeSet<Location>> cols = new HashMap<>();
+
+    Grid(Set<Location> locs) {
+      for (Location loc : locs) {
+        rows.computeIfAbsent(loc.getY(), k -> new TreeSet<>()).add(loc);
+        cols.computeIfAbsent(loc.getX(), k -> new TreeSet<>()).add(loc);
+      }
+    }
+
+    // Adds to splits every location (other than the ends) for which
+    // w.contains() would be true. Wire.contains() allows the point to be off by
+    // up to 2 pixels from the wire's axis, so nearby rows (or columns) are
+    // included too.
+    ArrayList<Location> interiorPoints(Wire w, ArrayList<Location> splits) {
+      Location w0 = w.getEnd0();
+      Location w1 = w.getEnd1();
+      boolean vertical = w0.getX() == w1.getX();
+      HashMap<Integer, TreeSet<Location>> lines = vertical ? cols : rows;
+      int axis = vertical ? w0.getX() : w0.getY();
+      for (int d = -2; d <= 2; d++) {
+        TreeSet<Location> line = lines.get(axis + d);
+        if (line == null)
+          continue;
+        Location lo = vertical ? Location.create(axis + d, w0.getY())
+            : Location.create(w0.getX(), axis + d);
+        Location hi = vertical ? Location.create(axis + d, w1.getY())
+            : Location.create(w1.getX(), axis + d);
+        for (Location loc : line.subSet(lo, true, hi, true)) {
+          if (!loc.equals(w0) && !loc.equals(w1)) {
+            if (splits == null)
+              splits = new ArrayList<>();
+            splits.add(loc);
+          }
+        }
+      }
+      return splits;
+    }
+  }
+
   private void doSplits(CircuitMutator mutator) {
-    Set<Location> allLocs = circuit.wires.points.getAllLocations();
+    Grid grid = new Grid(circuit.wires.points.getAllLocations());
     ReplacementMap repl = new ReplacementMap();
     for (Wire w : circuit.getWires()) {
       Location w0 = w.getEnd0();
       Location w1 = w.getEnd1();
-      ArrayList<Location> splits = null;
-      for (Location loc : allLocs) {
-        if (w.contains(loc) && !loc.equals(w0) && !loc.equals(w1)) {
-          if (splits == null)
-            splits = new ArrayList<>();
-          splits.add(loc);
-        }
-      }
+      ArrayList<Location> splits = grid.interiorPoints(w, null);
       if (splits != null) {
         splits.add(w1);
         Collections.sort(splits);
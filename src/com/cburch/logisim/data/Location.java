@@ -44,9 +44,13 @@ import com.cburch.logisim.util.Cache;
 public class Location implements Comparable<Location> {
   public static Location create(int x, int y) {
     int hashCode = 31 * x + y;
-    Location loc = cache.get(hashCode);
-    if (loc != null && loc.x == x && loc.y == y)
-      return loc;
+    for (int i = 0; i < CACHE_WAYS; i++) {
+      Location loc = cache.get(hashCode, i);
+      if (loc != null && loc.x == x && loc.y == y) {
+        cache.hit(hashCode, i);
+        return loc;
+      }
+    }
     Location ret = new Location(hashCode, x, y);
     cache.put(hashCode, ret);
     return ret;
@@ -76,7 +80,8 @@ public class Location implements Comparable<Location> {
     return Location.create(x, y);
   }
 
-  private static final Cache<Location> cache = new Cache<>();
+  private static final int CACHE_WAYS = 2;
+  private static final Cache<Location> cache = new Cache<>(12, CACHE_WAYS);
   private final int hashCode;
 
   public final int x, y;
@@ -138,7 +138,7 @@ public class TestVector {
           columnName[i] = t.substring(0, s);
           int w = new Integer(t.substring(s + 1, e)).intValue();
 
-          if (w < 1 || w > 32)
+          if (w < 1 || w > Value.MAX_WIDTH)
             throw new IOException(
                 "Test Vector header format error: bad width: " + t);
           columnWidth[i] = BitWidth.create(w);
@@ -32,6 +32,10 @@ package com.cburch.logisim.data;
 import static com.cburch.logisim.data.Strings.S;
 
 import java.awt.Color;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
 import java.util.Arrays;
 
 import com.cburch.logisim.util.Cache;
@@ -39,7 +43,12 @@ import com.cburch.logisim.circuit.CircuitWires.BusConnection;
 
 public final class Value {
 
-  private static Value create(int width, int error, int unknown, int value) {
+  // Values are stored as three bit-parallel masks (error, unknown, and value)
+  // packed into longs, so widths up to 64 bits need no extra storage or
+  // per-bit work. Masks are always trimmed to the value's width, so the upper
+  // bits of a narrow value are zero and its hash code is the same as it was
+  // back when the masks were ints.
+  private static Value create(int width, long error, long unknown, long value) {
     if (width == 0) {
       return Value.NIL;
     } else if (width == 1) {
@@ -52,33 +61,84 @@ public final class Value {
       else
         return Value.FALSE;
     } else {
-      int mask = (width == 32 ? -1 : ~(-1 << width));
+      long mask = widthMask(width);
       error = error & mask;
       unknown = unknown & mask & ~error;
       value = value & mask & ~unknown & ~error;
-
-      int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-      Value val = cache.get(hashCode);
-      if (val != null && val.value == value && val.width == width
-            && val.error == error && val.unknown == unknown)
-          return val;
-      Value ret = new Value(width, error, unknown, value);
-      cache.put(hashCode, ret);
-      return ret;
+      return intern(width, error, unknown, value);
     }
   }
 
-  public static Value create_unsafe(int width, int error, int unknown, int value) {
-    int hashCode = 31 * (31 * (31 * width + error) + unknown) + value;
-    Value val = cache.get(hashCode);
-    if (val != null && val.value == value && val.width == width
-        && val.error == error && val.unknown == unknown)
-      return val;
+  public static Value create_unsafe(int width, long error, long unknown, long value) {
+    return intern(width, error, unknown, value);
+  }
+
+  // Looks for an existing Value in the cache before allocating a new one. This
+  // is on the hot path for every multi-bit component output and bus, so it
+  // avoids anything that allocates when the value is found.
+  private static Value intern(int width, long error, long unknown, long value) {
+    int hashCode = hashCode(width, error, unknown, value);
+    for (int i = 0; i < CACHE_WAYS; i++) {
+      Value val = cache.get(hashCode, i);
+      if (val != null && val.value == value && val.width == width
+          && val.error == error && val.unknown == unknown) {
+        cache.hit(hashCode, i);
+        return val;
+      }
+    }
     Value ret = new Value(width, error, unknown, value);
     cache.put(hashCode, ret);
     return ret;
   }
 
+  // Compact binary form, used for simulation checkpoints. One-bit values take
+  // two bytes, and wider ones take a width byte plus only those masks that are
+  // non-zero.
+  public void write(DataOutput out) throws IOException {
+    out.writeByte(width);
+    if (width == 0)
+      return;
+    int flags = (error != 0 ? 1 : 0) | (unknown != 0 ? 2 : 0) | (value != 0 ? 4 : 0);
+    out.writeByte(flags);
+    if (width == 1)
+      return;
+    if (error != 0)
+      out.writeLong(error);
+    if (unknown != 0)
+      out.writeLong(unknown);
+    if (value != 0)
+      out.writeLong(value);
+  }
+
+  public static Value read(DataInput in) throws IOException {
+    int width = in.readUnsignedByte();
+    if (width == 0)
+      return NIL;
+    if (width > MAX_WIDTH)
+      throw new IOException("bad value width: " + width);
+    int flags = in.readUnsignedByte();
+    if (width == 1)
+      return create(1, flags & 1, (flags >> 1) & 1, (flags >> 2) & 1);
+    long error = (flags & 1) != 0 ? in.readLong() : 0;
+    long unknown = (flags & 2) != 0 ? in.readLong() : 0;
+    long value = (flags & 4) != 0 ? in.readLong() : 0;
+    return create(width, error, unknown, value);
+  }
+
+  // Cache statistics are off by default, since counting on every lookup
+  // would write to memory shared by all simulation threads.
+  public static void setCacheCounting(boolean value) {
+    cache.setCounting(value);
+  }
+
+  public static long getCacheHitCount() {
+    return cache.getHitCount();
+  }
+
+  public static long getCacheMissCount() {
+    return cache.getMissCount();
+  }
+
   public static Value create(Value[] values) {
     if (values.length == 0)
       return NIL;
@@ -89,11 +149,11 @@ public final class Value {
           + " bits in a value");
 
     int width = values.length;
-    int value = 0;
-    int unknown = 0;
-    int error = 0;
+    long value = 0;
+    long unknown = 0;
+    long error = 0;
     for (int i = 0; i < values.length; i++) {
-      int mask = 1 << i;
+      long mask = 1L << i;
       if (values[i] == TRUE)
         value |= mask;
       else if (values[i] == FALSE) /* do nothing */
@@ -113,10 +173,14 @@ public final class Value {
     return Value.create(bits.getWidth(), -1, 0, 0);
   }
 
-  public static Value createKnown(BitWidth bits, int value) {
+  public static Value createKnown(BitWidth bits, long value) {
     return Value.create(bits.getWidth(), 0, 0, value);
   }
 
+  public static Value createKnown(int bits, long value) {
+    return Value.create(bits, 0, 0, value);
+  }
+
   public static Value createUnknown(BitWidth bits) {
     return Value.create(bits.getWidth(), 0, -1, 0);
   }
@@ -147,6 +211,8 @@ public final class Value {
       throw new Exception("expected digits");
 
     int w = width.getWidth();
+    if (w > 32)
+      return fromWideLogString(w, t, radix, offset);
     long value = 0, unknown = 0;
 
     for (int i = offset; i < n; i++) {
@@ -204,6 +270,47 @@ public final class Value {
     return create(w, 0, u, v);
   }
 
+  // Same syntax as above, but for values wider than 32 bits, where the digits
+  // can no longer be accumulated in a long without checking for overflow.
+  private static Value fromWideLogString(int w, String t, int radix, int offset)
+      throws Exception {
+    if (radix == 10) {
+      BigInteger b;
+      try {
+        b = new BigInteger(t);
+      } catch (NumberFormatException e) {
+        throw new Exception("unexpected character in \"" + t + "\"");
+      }
+      if (b.bitLength() > w)
+        throw new Exception("too many bits in \"" + t + "\"");
+      return create(w, 0, 0, b.longValue());
+    }
+    int shift = (radix == 16 ? 4 : radix == 8 ? 3 : 1);
+    long value = 0, unknown = 0;
+    for (int i = offset; i < t.length(); i++) {
+      char c = t.charAt(i);
+      int d;
+      if (c == 'x')
+        d = -1;
+      else
+        d = Character.digit(c, radix);
+      if (d == -1 && c != 'x')
+        throw new Exception("unexpected character '"
+            + t.substring(i, i + 1) + "' in \"" + t + "\"");
+      if ((value >>> (64 - shift)) != 0)
+        throw new Exception("too many bits in \"" + t + "\"");
+      value <<= shift;
+      unknown <<= shift;
+      if (d == -1)
+        unknown |= (radix - 1);
+      else
+        value |= d;
+      if (w < 64 && (value >>> w) != 0)
+        throw new Exception("too many bits in \"" + t + "\"");
+    }
+    return create(w, 0, unknown, value);
+  }
+
   /**
    * Code taken from Cornell's version of Logisim:
    * http://www.cs.cornell.edu/courses/cs3410/2015sp/
@@ -237,7 +344,10 @@ public final class Value {
     }
   }
 
-  private static final Cache<Value> cache = new Cache<>();
+  // 8192 entries in sets of 4, large enough to hold the working set of a wide
+  // datapath without the constant evictions of a small direct-mapped table.
+  private static final int CACHE_WAYS = 4;
+  private static final Cache<Value> cache = new Cache<>(13, CACHE_WAYS);
 
   // these are not cached, instead they are checked explicitly in create()
   public static final Value FALSE = new Value(1, 0, 0, 0);
@@ -246,7 +356,7 @@ public final class Value {
   public static final Value ERROR = new Value(1, 1, 0, 0);
   public static final Value NIL = new Value(0, 0, 0, 0);
 
-  public static final int MAX_WIDTH = 32;
+  public static final int MAX_WIDTH = 64;
   public static final Color NIL_COLOR = Color.GRAY;
   public static final Color FALSE_COLOR = new Color(0, 100, 0);
   public static final Color TRUE_COLOR = new Color(0, 210, 0);
@@ -262,11 +372,11 @@ public final class Value {
 
 
   private final int width;
-  private final int error;
-  private final int unknown;
-  private final int value;
+  private final long error;
+  private final long unknown;
+  private final long value;
 
-  private Value(int width, int error, int unknown, int value) {
+  private Value(int width, long error, long unknown, long value) {
     // To ensure that the one-bit values are unique, this should be called
     // only for the one-bit values and by the private create method
     this.width = width;
@@ -275,6 +385,15 @@ public final class Value {
     this.value = value;
   }
 
+  private static long widthMask(int width) {
+    return (width == 64 ? -1L : ~(-1L << width));
+  }
+
+  private static int hashCode(int width, long error, long unknown, long value) {
+    return 31 * (31 * (31 * width + Long.hashCode(error))
+        + Long.hashCode(unknown)) + Long.hashCode(value);
+  }
+
   public Value and(Value other) {
     if (other == null)
       return this;
@@ -285,9 +404,9 @@ public final class Value {
         return TRUE;
       return ERROR;
     } else {
-      int false0 = ~this.value & ~this.error & ~this.unknown;
-      int false1 = ~other.value & ~other.error & ~other.unknown;
-      int falses = false0 | false1;
+      long false0 = ~this.value & ~this.error & ~this.unknown;
+      long false1 = ~other.value & ~other.error & ~other.unknown;
+      long falses = false0 | false1;
       return Value.create(Math.max(this.width, other.width), (this.error
             | other.error | this.unknown | other.unknown)
           & ~falses, 0, this.value & other.value);
@@ -306,8 +425,8 @@ public final class Value {
     } else if (this.width != other.width) {
       return Value.create(other.width, -1, 0, 0);
     } else {
-      int enabled = (this.value | this.unknown) & ~this.error;
-      int disabled = ~this.value & ~this.unknown & ~this.error;
+      long enabled = (this.value | this.unknown) & ~this.error;
+      long disabled = ~this.value & ~this.unknown & ~this.error;
       return Value.create(other.width,
           (this.error | (other.error & ~disabled)),
           (disabled | other.unknown),
@@ -331,16 +450,16 @@ public final class Value {
         return this;
       return ERROR;
     } else if (this.width == other.width) {
-      int disagree = (this.value ^ other.value) & ~(this.unknown | other.unknown);
+      long disagree = (this.value ^ other.value) & ~(this.unknown | other.unknown);
       return Value.create(
           width,
           this.error | other.error | disagree,
           this.unknown & other.unknown,
           this.value | other.value);
     } else {
-      int thisknown = ~this.unknown & (this.width == 32 ? -1 : ~(-1 << this.width));
-      int otherknown = ~other.unknown & (other.width == 32 ? -1 : ~(-1 << other.width));
-      int disagree = (this.value ^ other.value) & thisknown & otherknown;
+      long thisknown = ~this.unknown & widthMask(this.width);
+      long otherknown = ~other.unknown & widthMask(other.width);
+      long disagree = (this.value ^ other.value) & thisknown & otherknown;
       return Value.create(
           Math.max(this.width, other.width),
           this.error | other.error | disagree,
@@ -355,16 +474,16 @@ public final class Value {
     for (int i = 0; i < n; i++) {
       Value v = vals[i].drivenValue;
       if (v != null && v != NIL) {
-        int error = v.error;
-        int unknown = v.unknown;
-        int value = v.value;
+        long error = v.error;
+        long unknown = v.unknown;
+        long value = v.value;
         for (int j = i+1; j < n; j++) {
           v = vals[j].drivenValue;
           if (v == null || v == NIL)
             continue;
           if (v.width != width)
             throw new IllegalArgumentException("INTERNAL ERROR: mismatched widths in Value.combine");
-          int disagree = (value ^ v.value) & ~(unknown | v.unknown);
+          long disagree = (value ^ v.value) & ~(unknown | v.unknown);
           error |= v.error | disagree;
           unknown &= v.unknown;
           value |= v.value;
@@ -400,7 +519,7 @@ public final class Value {
   public Value extendWidth(int newWidth, Value others) {
     if (width == newWidth)
       return this;
-    int maskInverse = (width == 32 ? 0 : (-1 << width));
+    long maskInverse = ~widthMask(width);
     if (others == Value.ERROR) {
       return Value.create(newWidth, error | maskInverse, unknown, value);
     } else if (others == Value.FALSE) {
@@ -415,7 +534,7 @@ public final class Value {
   public Value get(int which) {
     if (which < 0 || which >= width)
       return ERROR;
-    int mask = 1 << which;
+    long mask = 1L << which;
     if ((error & mask) != 0)
       return ERROR;
     else if ((unknown & mask) != 0)
@@ -461,11 +580,7 @@ public final class Value {
 
   @Override
   public int hashCode() {
-    int ret = width;
-    ret = 31 * ret + error;
-    ret = 31 * ret + unknown;
-    ret = 31 * ret + value;
-    return ret;
+    return hashCode(width, error, unknown, value);
   }
 
   public boolean isErrorValue() {
@@ -477,11 +592,7 @@ public final class Value {
   }
 
   public boolean isUnknown() {
-    if (width == 32) {
-      return error == 0 && unknown == -1;
-    } else {
-      return error == 0 && unknown == ((1 << width) - 1);
-    }
+    return error == 0 && unknown == widthMask(width);
   }
 
   public Value not() {
@@ -507,9 +618,9 @@ public final class Value {
         return FALSE;
       return ERROR;
     } else {
-      int true0 = this.value & ~this.error & ~this.unknown;
-      int true1 = other.value & ~other.error & ~other.unknown;
-      int trues = true0 | true1;
+      long true0 = this.value & ~this.error & ~this.unknown;
+      long true1 = other.value & ~other.error & ~other.unknown;
+      long trues = true0 | true1;
       return Value.create(Math.max(this.width, other.width), (this.error
             | other.error | this.unknown | other.unknown)
           & ~trues, 0, this.value | other.value);
@@ -524,7 +635,7 @@ public final class Value {
     } else if (width == 1) {
       return val;
     } else {
-      int mask = ~(1 << which);
+      long mask = ~(1L << which);
       return Value.create(this.width, (this.error & mask)
           | (val.error << which), (this.unknown & mask)
           | (val.unknown << which), (this.value & mask)
@@ -562,14 +673,14 @@ public final class Value {
     if (!isFullyDefined())
       return S.get("valueUnknown");
 
-    int value = toIntValue();
+    long value = toLongValue();
     if (signed) {
-      if (width < 32 && (value >> (width - 1)) != 0) {
-        value |= (-1) << width;
+      if (width < 64 && (value >> (width - 1)) != 0) {
+        value |= (-1L) << width;
       }
       return "" + value;
     } else {
-      return "" + ((long) value & 0xFFFFFFFFL);
+      return Long.toUnsignedString(value);
     }
   }
 
@@ -612,7 +723,9 @@ public final class Value {
         return S.get("valueError");
       if (!isFullyDefined())
         return S.get("valueUnknown");
-      return Integer.toString(toIntValue(), radix);
+      if (width <= 32)
+        return Integer.toString(toIntValue(), radix);
+      return Long.toString(toLongValue(), radix);
     }
   }
 
@@ -649,6 +762,14 @@ public final class Value {
   }
 
   public int toIntValue() {
+    if (error != 0)
+      return -1;
+    if (unknown != 0)
+      return -1;
+    return (int) value;
+  }
+
+  public long toLongValue() {
     if (error != 0)
       return -1;
     if (unknown != 0)
@@ -746,9 +867,9 @@ public final class Value {
     // wherever this is unknown, use other's value for that bit instead
     if (width <= 0 || unknown == 0 || other.width <= 0)
       return this;
-    int e = error | (unknown & other.error);
-    int v = value | (unknown & other.value);
-    int u = unknown & (other.unknown | (other.width == 32 ? 0 : (-1 << other.width)));
+    long e = error | (unknown & other.error);
+    long v = value | (unknown & other.value);
+    long u = unknown & (other.unknown | ~widthMask(other.width));
     return Value.create(width, e, u, v);
   }
 
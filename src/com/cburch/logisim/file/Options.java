@@ -43,10 +43,33 @@ public class Options {
   public static final AttributeOption GATE_UNDEFINED_ERROR = new AttributeOption(
       "error", S.getter("gateUndefinedError"));
 
+  public static final AttributeOption SIM_QUEUE_LINKED = new AttributeOption(
+      "linked", S.getter("simQueueLinked"));
+  public static final AttributeOption SIM_QUEUE_SPLAY = new AttributeOption(
+      "splay", S.getter("simQueueSplay"));
+  public static final AttributeOption SIM_QUEUE_HEAP = new AttributeOption(
+      "heap", S.getter("simQueueHeap"));
+  public static final AttributeOption SIM_QUEUE_WHEEL = new AttributeOption(
+      "wheel", S.getter("simQueueWheel"));
+
+  public static final AttributeOption SIM_MODE_EVENT = new AttributeOption(
+      "event", S.getter("simModeEvent"));
+  public static final AttributeOption SIM_MODE_COMPILED = new AttributeOption(
+      "compiled", S.getter("simModeCompiled"));
+
   public static final Attribute<Integer> ATTR_SIM_LIMIT = Attributes
       .forInteger("simlimit", S.getter("simLimitOption"));
+  public static final Attribute<AttributeOption> ATTR_SIM_QUEUE = Attributes
+      .forOption("simqueue", S.getter("simQueueOption"),
+          new AttributeOption[] { SIM_QUEUE_LINKED, SIM_QUEUE_SPLAY,
+            SIM_QUEUE_HEAP, SIM_QUEUE_WHEEL });
   public static final Attribute<Integer> ATTR_SIM_RAND = Attributes
       .forInteger("simrand", S.getter("simRandomOption"));
+  public static final Attribute<Integer> ATTR_SIM_THREADS = Attributes
+      .forInteger("simthreads", S.getter("simThreadsOption"));
+  public static final Attribute<AttributeOption> ATTR_SIM_MODE = Attributes
+      .forOption("simmode", S.getter("simModeOption"),
+          new AttributeOption[] { SIM_MODE_EVENT, SIM_MODE_COMPILED });
   public static final Attribute<AttributeOption> ATTR_GATE_UNDEFINED = Attributes
       .forOption("gateUndefined", S.getter("gateUndefinedOption"),
           new AttributeOption[] { GATE_UNDEFINED_IGNORE,
@@ -55,9 +78,11 @@ public class Options {
   public static final Integer sim_rand_dflt = Integer.valueOf(32);
 
   private static final Attribute<?>[] ATTRIBUTES = { ATTR_GATE_UNDEFINED,
-    ATTR_SIM_LIMIT, ATTR_SIM_RAND, };
+    ATTR_SIM_LIMIT, ATTR_SIM_QUEUE, ATTR_SIM_RAND, ATTR_SIM_THREADS,
+    ATTR_SIM_MODE, };
   private static final Object[] DEFAULTS = { GATE_UNDEFINED_IGNORE,
-    Integer.valueOf(1000), Integer.valueOf(0), };
+    Integer.valueOf(1000), SIM_QUEUE_LINKED, Integer.valueOf(0),
+    Integer.valueOf(1), SIM_MODE_EVENT, };
 
   private AttributeSet attrs;
   private MouseMappings mmappings;
@@ -165,9 +165,20 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
@@ -1371,6 +1382,392 @@ public class HexFile {
 
   }
 
+  // A faster decoder for large files in the most common formats: raw binary,
+  // plain hex bytes or words, and the old run-length encoded format. Rather
+  // than going through a String for each line and word as HexReader does, it
+  // maps the file and tokenizes its bytes directly, and big text files are
+  // split at line boundaries into chunks parsed in parallel, then stitched
+  // together in order. It only handles clean input: at the first thing
+  // HexReader would warn about, or any format it doesn't handle (addressed
+  // styles and escaped ascii), it gives up and returns null, and the file is
+  // decoded again by HexReader, which can then explain the problem.
+  private static class FastReader extends FormatOptions {
+    static final int MIN_CHUNK = 1 << 20; // don't bother splitting below this
+
+    static final int WORDS = 0, BYTES = 1, RLE = 2;
+
+    final int mWidth;
+    final long mEnd;
+    final MemContents dst;
+    int mode;
+
+    FastReader(int addrBits, int width) {
+      dst = MemContents.create(addrBits, width);
+      mWidth = width;
+      mEnd = dst.getLastOffset();
+    }
+
+    static MemContents load(File src, String desc, int addrBits, int width)
+        throws IOException {
+      ByteBuffer buf;
+      try (FileChannel ch = FileChannel.open(src.toPath(), StandardOpenOption.READ)) {
+        long len = ch.size();
+        if (len == 0 || len > Integer.MAX_VALUE)
+          return null;
+        buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, len);
+      }
+      FastReader r = new FastReader(addrBits, width);
+      if (desc != null)
+        r.parseFormat(desc);
+      else if (!r.detectFormat(buf))
+        return null;
+      return r.decode(buf) ? r.dst : null;
+    }
+
+    // Mirrors HexReader.detectFormatAndDecode: the header is the first line
+    // that isn't blank.
+    boolean detectFormat(ByteBuffer buf) {
+      int n = buf.limit();
+      for (int i = 0, e; i < n; i = e + 1) {
+        e = lineEnd(buf, i);
+        byte[] line = new byte[e - i];
+        buf.duplicate().position(i).get(line);
+        String hdr = new String(line, StandardCharsets.UTF_8).trim();
+        if (hdr.length() == 0)
+          continue;
+        if (parseHeader(hdr) != null || !tags.containsKey("radix"))
+          return false;
+        return !tagged("radix", "hex") || tags.containsKey("size");
+      }
+      return false;
+    }
+
+    static int lineEnd(ByteBuffer buf, int i) {
+      int n = buf.limit();
+      while (i < n && buf.get(i) != '\n' && buf.get(i) != '\r')
+        i++;
+      return i;
+    }
+
+    // Returns the start of the first line in buf[i, n) with anything left
+    // once comments and surrounding whitespace are stripped, or n if none.
+    static int firstNonemptyLine(ByteBuffer buf, int i) {
+      int n = buf.limit();
+      for (; i < n; i = lineEnd(buf, i) + 1) {
+        for (int j = i; j < n; j++) {
+          int c = buf.get(j) & 0xff;
+          if (c == '#' || c == '\n' || c == '\r')
+            break;
+          if (c > ' ')
+            return i;
+        }
+      }
+      return n;
+    }
+
+    static int firstNonblank(ByteBuffer buf, int i) {
+      while ((buf.get(i) & 0xff) <= ' ')
+        i++;
+      return i;
+    }
+
+    boolean decode(ByteBuffer buf) throws IOException {
+      if (taggedOrUnset("radix", "binary"))
+        return decodeBinary(buf);
+      else if (tagged("radix", "ascii"))
+        return false;
+      mode = tagged("radix", "raw") ? RLE
+          : tagged("size", "words") ? WORDS : BYTES;
+
+      // Like HexReader.findNonemptyLine(true), skip a header line, if any.
+      int n = buf.limit();
+      int start = firstNonemptyLine(buf, 0);
+      if (start < n && buf.get(firstNonblank(buf, start)) == 'v')
+        start = firstNonemptyLine(buf, lineEnd(buf, start) + 1);
+      if (start >= n)
+        return true; // no data at all, only maybe a header and comments
+      if (mode != RLE && !tags.containsKey("style")) {
+        // auto-detect style, as HexReader.decodeHexAuto does
+        for (int i = start, e = lineEnd(buf, start); i < e; i++) {
+          if (buf.get(i) == '#')
+            break;
+          if (buf.get(i) == ':')
+            return false;
+        }
+      } else if (tagged("style", "addressed")) {
+        return false;
+      }
+
+      ArrayList<Chunk> chunks = new ArrayList<>();
+      int threads = Runtime.getRuntime().availableProcessors();
+      int size = Math.max(MIN_CHUNK, (n - start + threads - 1) / threads);
+      for (int i = start; i < n; ) {
+        int e = i + size >= n ? n : Math.min(lineEnd(buf, i + size) + 1, n);
+        chunks.add(new Chunk(buf, i, e));
+        i = e;
+      }
+      if (!parseAll(chunks))
+        return false;
+
+      if (mode == WORDS)
+        return stitchWords(chunks);
+      else if (mode == RLE)
+        return stitchRuns(chunks);
+      else
+        return stitchNibbles(chunks);
+    }
+
+    static boolean parseAll(ArrayList<Chunk> chunks) throws IOException {
+      if (chunks.size() == 1)
+        return chunks.get(0).call();
+      AtomicInteger count = new AtomicInteger();
+      ExecutorService pool = Executors.newFixedThreadPool(chunks.size(), r -> {
+        Thread t = new Thread(r, "HexFile-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      });
+      try {
+        for (Future<Boolean> f : pool.invokeAll(chunks))
+          if (!f.get())
+            return false;
+        return true;
+      } catch (InterruptedException | ExecutionException e) {
+        throw new IOException(e.getMessage(), e);
+      } finally {
+        pool.shutdown();
+      }
+    }
+
+    boolean stitchWords(ArrayList<Chunk> chunks) {
+      long addr = 0;
+      for (Chunk c : chunks) {
+        if (addr + c.n - 1 > mEnd)
+          return false; // HexReader would warn of extra words
+        if (c.n > 0)
+          dst.set(addr, Arrays.copyOf(c.words, c.n));
+        addr += c.n;
+      }
+      return true;
+    }
+
+    boolean stitchRuns(ArrayList<Chunk> chunks) {
+      int[] lit = new int[4096];
+      int nlit = 0;
+      long addr = 0;
+      for (Chunk c : chunks) {
+        for (int i = 0; i < c.n; i++) {
+          long count = c.counts[i];
+          if (addr + nlit + count - 1 > mEnd)
+            return false; // HexReader would warn of extra words
+          if (count == 1) {
+            lit[nlit++] = c.words[i];
+            if (nlit < lit.length)
+              continue;
+          }
+          if (nlit > 0) {
+            dst.set(addr, Arrays.copyOf(lit, nlit));
+            addr += nlit;
+            nlit = 0;
+          }
+          if (count > 1) {
+            dst.fill(addr, count, c.words[i]);
+            addr += count;
+          }
+        }
+      }
+      if (nlit > 0)
+        dst.set(addr, Arrays.copyOf(lit, nlit));
+      return true;
+    }
+
+    boolean stitchNibbles(ArrayList<Chunk> chunks) {
+      Packer p = new Packer();
+      int hi = -1;
+      for (Chunk c : chunks) {
+        for (int i = 0; i < c.n; i++) {
+          if (hi < 0) {
+            hi = c.nibbles[i];
+          } else {
+            p.add((hi << 4) | c.nibbles[i]);
+            hi = -1;
+          }
+        }
+      }
+      return hi < 0 && p.finish(); // else, odd number of hex digits
+    }
+
+    boolean decodeBinary(ByteBuffer buf) {
+      Packer p = new Packer();
+      int n = buf.limit();
+      for (int i = 0; i < n; i++)
+        p.add(buf.get(i) & 0xff);
+      return p.finish();
+    }
+
+    // Packs a stream of bytes into words, in the same way as HexReader.deliver,
+    // a page at a time.
+    private class Packer {
+      final boolean bigEndian = bigEndian();
+      final int[] words = new int[4096];
+      int n; // words waiting to be stored at addr
+      long addr, count, acc;
+      int nbits;
+
+      void add(int b) {
+        if (bigEndian) {
+          acc = (acc << 8) | b;
+          nbits += 8;
+          while (nbits >= mWidth) {
+            put((int) (acc >>> (nbits - mWidth)));
+            nbits -= mWidth;
+          }
+        } else {
+          acc |= (long) b << nbits;
+          nbits += 8;
+          while (nbits >= mWidth) {
+            put((int) acc);
+            acc >>>= mWidth;
+            nbits -= mWidth;
+          }
+        }
+      }
+
+      void put(int word) {
+        if (count++ > mEnd)
+          return; // past the end, so only counted
+        words[n++] = word; // dst.set() will mask off all but the lower bits
+        if (n == words.length) {
+          dst.set(addr, words);
+          addr += n;
+          n = 0;
+        }
+      }
+
+      boolean finish() {
+        if (nbits > 0) // there may be a few bits of a partial word leftover
+          put((int) (bigEndian ? acc << (mWidth - nbits) : acc));
+        if (n > 0)
+          dst.set(addr, Arrays.copyOf(words, n));
+        long maxAddr = count - 1;
+        // HexReader would warn of whole extra bytes
+        return maxAddr <= mEnd || (maxAddr - mEnd) * mWidth < 8;
+      }
+    }
+
+    // One section of the file, starting at a line boundary, parsed into words
+    // (WORDS), run lengths and values (RLE), or hex digits (BYTES).
+    private class Chunk implements Callable<Boolean> {
+      final ByteBuffer src;
+      final int from, to;
+      byte[] buf; // our section of src, as parsing arrays is much faster
+      int[] words = new int[1024];
+      long[] counts;
+      byte[] nibbles;
+      int n;
+
+      Chunk(ByteBuffer src, int from, int to) {
+        this.src = src;
+        this.from = from;
+        this.to = to;
+        if (mode == RLE)
+          counts = new long[words.length];
+        else if (mode == BYTES)
+          nibbles = new byte[to - from];
+      }
+
+      public Boolean call() {
+        buf = new byte[to - from];
+        src.duplicate().position(from).get(buf);
+        int i = 0, end = buf.length;
+        while (i < end) {
+          int c = buf[i];
+          if (c == '#') {
+            while (i < end && (c = buf[i]) != '\n' && c != '\r')
+              i++;
+          } else if (isSpace(c)) {
+            i++;
+          } else {
+            int j = i + 1;
+            while (j < end && !isSpace(c = buf[j]) && c != '#')
+              j++;
+            if (!token(i, j))
+              return false;
+            i = j;
+          }
+        }
+        buf = null;
+        return true;
+      }
+
+      boolean token(int i, int j) {
+        if (mode == RLE) {
+          int star = i;
+          while (star < j && buf[star] != '*')
+            star++;
+          if (star == j)
+            return run(1, i, j);
+          if (star == i || star == j - 1 || star - i > 18)
+            return false; // HexReader would warn of a missing or bad count
+          long count = 0;
+          for (int k = i; k < star; k++) {
+            int d = buf[k] - '0';
+            if (d < 0 || d > 9)
+              return false;
+            count = count * 10 + d;
+          }
+          return run(count, star + 1, j);
+        }
+        if (j - i >= 2 && buf[i] == '0' && (buf[i+1] == 'x' || buf[i+1] == 'X'))
+          i += 2;
+        if (mode == BYTES) {
+          for (; i < j; i++) {
+            int d = HexReader.hex2int(buf[i]);
+            if (d < 0)
+              return false;
+            nibbles[n++] = (byte) d;
+          }
+          return true;
+        }
+        int v = 0;
+        for (; i < j; i++) {
+          int d = HexReader.hex2int(buf[i]);
+          if (d < 0)
+            return false;
+          v = (v << 4) | d;
+        }
+        add(v);
+        return true;
+      }
+
+      boolean run(long count, int i, int j) {
+        if (j - i > 15)
+          return false; // might not fit in a long, as HexReader requires
+        long v = 0;
+        for (; i < j; i++) {
+          int d = HexReader.hex2int(buf[i]);
+          if (d < 0)
+            return false;
+          v = (v << 4) | d;
+        }
+        if (n == counts.length)
+          counts = Arrays.copyOf(counts, 2 * n);
+        counts[n] = count;
+        add((int) v);
+        return true;
+      }
+
+      void add(int v) {
+        if (n == words.length)
+          words = Arrays.copyOf(words, 2 * n);
+        words[n++] = v;
+      }
+    }
+
+    static boolean isSpace(int c) { // as in the regex "\\s"
+      return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+  }
+
   public static void open(MemContents dst,
       Frame parent, // for window positioning
       Project proj, Instance instance) { // for recent file access
@@ -1400,6 +1797,11 @@ public class HexFile {
   }
 
   private static boolean open(MemContents dst, File src, String desc) throws IOException {
+    MemContents fast = FastReader.load(src, desc, dst.getLogLength(), dst.getValueWidth());
+    if (fast != null) {
+      dst.copyFrom(0, fast, 0, (int)(fast.getLastOffset()+1));
+      return true;
+    }
     BufferedLineReader in = BufferedLineReader.forFile(src);
     try {
       HexReader r = new HexReader(in, dst.getLogLength(), dst.getValueWidth());
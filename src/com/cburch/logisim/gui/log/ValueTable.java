@@ -396,8 +396,8 @@ public class ValueTable extends JPanel {
             Value val = Value.createKnown(
                 w,
                 (radix == 2 ? 0
-                 : (radix == 10 ? (1 << (w .getWidth() - 1))
-                   : w.getMask())));
+                 : (radix == 10 ? (1L << (w.getWidth() - 1))
+                   : w.getLongMask())));
             String label = val.toDisplayString(radix);
             cellWidth = Math.max(cellWidth,
                 bodyMetric.stringWidth(label));
@@ -0,0 +1,209 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.main;
+import static com.cburch.logisim.gui.main.Strings.S;
+
+import java.awt.BorderLayout;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
+import javax.swing.table.AbstractTableModel;
+
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.PropagationProfile;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.circuit.Simulator;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.util.TableSorter;
+
+// ProfileDialog shows the PropagationProfile for the project's current
+// simulation, and lets the user turn profiling on and off.
+public class ProfileDialog extends JDialog {
+
+  private static class ProfileTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+    private int kind;
+    private List<PropagationProfile.Row> rows = new ArrayList<>();
+
+    ProfileTableModel(int kind) {
+      this.kind = kind;
+    }
+
+    void setProfile(PropagationProfile profile) {
+      rows = profile == null ? new ArrayList<>() : profile.getRows(kind);
+      fireTableDataChanged();
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+      return column == 0 ? String.class : Long.class;
+    }
+
+    public int getColumnCount() {
+      return kind == PropagationProfile.BY_NET ? 2 : 4;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      switch (column) {
+      case 0:
+        return S.get("profileNameColumn");
+      case 1:
+        return S.get(kind == PropagationProfile.BY_NET
+            ? "profileRecalculationsColumn" : "profileEvaluationsColumn");
+      case 2:
+        return S.get("profileEventsColumn");
+      case 3:
+        return S.get("profileMicrosColumn");
+      default:
+        return "??"; // should never happen
+      }
+    }
+
+    public int getRowCount() {
+      return rows.size();
+    }
+
+    public Object getValueAt(int row, int column) {
+      if (row < 0 || row >= rows.size())
+        return "";
+      PropagationProfile.Row r = rows.get(row);
+      switch (column) {
+      case 0:
+        return r.getName();
+      case 1:
+        return Long.valueOf(r.getEvaluations());
+      case 2:
+        return Long.valueOf(r.getEvents());
+      case 3:
+        return Long.valueOf(r.getNanos() / 1000);
+      default:
+        return ""; // should never happen
+      }
+    }
+  }
+
+  private static final long serialVersionUID = 1L;
+
+  private static final String[] TAB_KEYS = { "profileFactoryTab",
+    "profileCircuitTab", "profileInstanceTab", "profileNetTab" };
+
+  public static void show(JFrame parent, Project proj) {
+    ProfileDialog dlog = new ProfileDialog(parent, proj);
+    dlog.setVisible(true);
+  }
+
+  private Project proj;
+  private ProfileTableModel[] models = new ProfileTableModel[TAB_KEYS.length];
+  private JCheckBox enable = new JCheckBox();
+
+  private ProfileDialog(JFrame parent, Project proj) {
+    super(parent, false);
+    this.proj = proj;
+    setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+    setTitle(S.get("profileDialogTitle"));
+
+    JTabbedPane tabs = new JTabbedPane();
+    for (int kind = 0; kind < models.length; kind++) {
+      models[kind] = new ProfileTableModel(kind);
+      JTable table = new JTable();
+      TableSorter mySorter = new TableSorter(models[kind], table.getTableHeader());
+      table.setModel(mySorter);
+      tabs.addTab(S.get(TAB_KEYS[kind]), new JScrollPane(table));
+    }
+
+    enable.setText(S.get("profileEnableCheckbox"));
+    enable.addActionListener(e -> {
+      Propagator prop = getPropagator();
+      if (prop != null)
+        prop.setProfiling(enable.isSelected());
+      refresh();
+    });
+    JButton refresh = new JButton(S.get("profileRefreshButton"));
+    refresh.addActionListener(e -> refresh());
+    JButton clear = new JButton(S.get("profileClearButton"));
+    clear.addActionListener(e -> {
+      Propagator prop = getPropagator();
+      PropagationProfile profile = prop == null ? null : prop.getProfile();
+      if (profile != null)
+        profile.clear();
+      refresh();
+    });
+    JButton close = new JButton(S.get("statsCloseButton"));
+    close.addActionListener(e -> dispose());
+    JPanel buttonPanel = new JPanel();
+    buttonPanel.add(enable);
+    buttonPanel.add(refresh);
+    buttonPanel.add(clear);
+    buttonPanel.add(close);
+
+    Container contents = this.getContentPane();
+    contents.setLayout(new BorderLayout());
+    contents.add(tabs, BorderLayout.CENTER);
+    contents.add(buttonPanel, BorderLayout.PAGE_END);
+    refresh();
+    this.pack();
+
+    Dimension pref = contents.getPreferredSize();
+    if (pref.width > 750 || pref.height > 550) {
+      if (pref.width > 750)
+        pref.width = 750;
+      if (pref.height > 550)
+        pref.height = 550;
+      this.setSize(pref);
+    }
+  }
+
+  private Propagator getPropagator() {
+    Simulator sim = proj.getSimulator();
+    CircuitState state = sim == null ? null : sim.getCircuitState();
+    return state == null ? null : state.getPropagator();
+  }
+
+  private void refresh() {
+    Propagator prop = getPropagator();
+    PropagationProfile profile = prop == null ? null : prop.getProfile();
+    enable.setEnabled(prop != null);
+    enable.setSelected(profile != null);
+    for (ProfileTableModel model : models)
+      model.setProfile(profile);
+  }
+}
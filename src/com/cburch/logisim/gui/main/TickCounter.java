@@ -37,6 +37,9 @@ class TickCounter implements Simulator.Listener {
   private static final int N = 10;
   private static final long T = 500; // msec
 
+  // Each bucket records the time of its first event, and the total number of
+  // ticks counted as of that event. In max-speed mode an event can report many
+  // ticks at once, all of which happened before the event's time.
   private final long[] bucketTime = new long[N];
   private final long[] bucketTick = new long[N];
   private int bucketIndex;
@@ -58,6 +61,8 @@ class TickCounter implements Simulator.Listener {
     double r = rate / 2; // report full-cycle rate instead of half-cycle rate
     if (r <= 0)
       return "";
+    else if (r >= 1000000.0)
+      return S.fmt("tickRateMHz", roundString(r / 1000000.0));
     else if (r >= 1000.0)
       return S.fmt("tickRateKHz", roundString(r / 1000.0));
     else
@@ -131,29 +136,30 @@ class TickCounter implements Simulator.Listener {
     int s = bucketIndex;
     int e = (s + n - 1) % N;
     long t = System.currentTimeMillis();
+    tick += evt.getTickCount();
 
-    if (n > 0 && t < bucketTime[e] + T) {
-      bucketTick[e] = ++tick;
+    if (n > 0 && t < bucketTime[e] + T)
       return;
-    }
 
     if (n < N) {
       e = (e + 1) % N;
       bucketTime[e] = t;
-      bucketTick[e] = ++tick;
+      bucketTick[e] = tick;
       bucketCount++;
       n++;
     } else {
       e = (e + 1) % N;
       bucketTime[e] = t;
-      bucketTick[e] = ++tick;
+      bucketTick[e] = tick;
       s = bucketIndex = (bucketIndex + 1) % N;
     }
 
     if (n >= 3) {
-      long ts = bucketTime[(s+1)%N];
+      // count only ticks that happened after the first event in the window
+      int w = (s+1)%N;
+      long ts = bucketTime[w];
       long te = t;
-      double ticks = tick - (bucketTick[s] + 1);
+      double ticks = tick - bucketTick[w];
       rate = 1000.0 * ticks / (te - ts);
     }
   }
@@ -48,6 +48,7 @@ import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.Simulator;
+import com.cburch.logisim.gui.main.ProfileDialog;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.hdl.VhdlSimulator;
 
@@ -106,6 +107,8 @@ public class MenuSimulate extends Menu {
         proj.getLogFrame().setVisible(true);
       } else if (src == test) {
         proj.getTestFrame().setVisible(true);
+      } else if (src == profile) {
+        ProfileDialog.show(proj.getFrame(), proj);
       }
 
       Simulator sim = proj.getSimulator();
@@ -203,7 +206,9 @@ public class MenuSimulate extends Menu {
 
     public void localeChanged() {
       double f = freq;
-      if (f < 1000) {
+      if (f == Simulator.MAX_SPEED) {
+        setText(S.get("simulateTickMaxSpeedItem"));
+      } else if (f < 1000) {
         String hzStr;
         if (Math.abs(f - Math.round(f)) < 0.0001) {
           hzStr = "" + (int) Math.round(f);
@@ -226,6 +231,7 @@ public class MenuSimulate extends Menu {
 
   public static ArrayList<String> getTickFrequencyStrings() {
     ArrayList<String> result = new ArrayList<String>();
+    result.add(S.get("simulateTickMaxSpeedItem"));
     for (int i = 0; i < SupportedTickFrequencies.length; i++) {
       if (SupportedTickFrequencies[i] < 1000) {
         String hzStr;
@@ -271,13 +277,14 @@ public class MenuSimulate extends Menu {
   private MenuItemImpl tickFull;
   private MenuItemImpl addSim, delSim;
   private JMenu tickFreq = new JMenu();
-  private TickFrequencyChoice[] tickFreqs = new TickFrequencyChoice[SupportedTickFrequencies.length];
+  private TickFrequencyChoice[] tickFreqs = new TickFrequencyChoice[SupportedTickFrequencies.length + 1];
   private JMenu downStateMenu = new JMenu();
   private ArrayList<CircuitStateMenuItem> downStateItems = new ArrayList<CircuitStateMenuItem>();
   private JMenu upStateMenu = new JMenu();
   private ArrayList<CircuitStateMenuItem> upStateItems = new ArrayList<CircuitStateMenuItem>();
   private JMenuItem log = new JMenuItem();
   private JMenuItem test = new JMenuItem();
+  private JMenuItem profile = new JMenuItem();
 
   public MenuSimulate(LogisimMenuBar menubar) {
     this.menubar = menubar;
@@ -315,8 +322,10 @@ public class MenuSimulate extends Menu {
     ticksEnabled.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_K, menuMask));
 
     ButtonGroup bgroup = new ButtonGroup();
-    for (int i = 0; i < SupportedTickFrequencies.length; i++) {
-      tickFreqs[i] = new TickFrequencyChoice(SupportedTickFrequencies[i]);
+    tickFreqs[0] = new TickFrequencyChoice(Simulator.MAX_SPEED);
+    for (int i = 0; i < SupportedTickFrequencies.length; i++)
+      tickFreqs[i + 1] = new TickFrequencyChoice(SupportedTickFrequencies[i]);
+    for (int i = 0; i < tickFreqs.length; i++) {
       bgroup.add(tickFreqs[i]);
       tickFreq.add(tickFreqs[i]);
     }
@@ -337,6 +346,7 @@ public class MenuSimulate extends Menu {
     addSeparator();
     add(log);
     add(test);
+    add(profile);
 
     setEnabled(false);
     runToggle.setEnabled(false);
@@ -369,6 +379,7 @@ public class MenuSimulate extends Menu {
     // ticksEnabled.addActionListener(myListener);
     log.addActionListener(myListener);
     test.addActionListener(myListener);
+    profile.addActionListener(myListener);
 
     computeEnabled();
   }
@@ -422,6 +433,7 @@ public class MenuSimulate extends Menu {
     upStateMenu.setText(S.get("simulateUpStateMenu"));
     log.setText(S.get("simulateLogItem"));
     test.setText(S.get("simulateTestItem"));
+    profile.setText(S.get("simulateProfileItem"));
   }
 
   private void recreateStateMenu(JMenu menu,
@@ -480,7 +492,8 @@ public class MenuSimulate extends Menu {
           .getTickFrequency();
       for (int i = 0; i < tickFreqs.length; i++) {
         tickFreqs[i]
-            .setSelected(Math.abs(tickFreqs[i].freq - freq) < 0.001);
+            .setSelected(tickFreqs[i].freq == freq
+                || Math.abs(tickFreqs[i].freq - freq) < 0.001);
       }
 
       if (oldSim != null) {
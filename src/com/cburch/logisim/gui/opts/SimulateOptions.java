@@ -59,6 +59,30 @@ class SimulateOptions extends OptionsPanel {
               OptionsActions.setAttribute(attrs,
                 Options.ATTR_SIM_LIMIT, opt));
         }
+      } else if (source == simQueue) {
+        ComboOption opt = (ComboOption) simQueue.getSelectedItem();
+        if (opt != null) {
+          AttributeSet attrs = getOptions().getAttributeSet();
+          getProject().doAction(
+              OptionsActions.setAttribute(attrs,
+                Options.ATTR_SIM_QUEUE, opt.getValue()));
+        }
+      } else if (source == simThreads) {
+        Integer opt = (Integer) simThreads.getSelectedItem();
+        if (opt != null) {
+          AttributeSet attrs = getOptions().getAttributeSet();
+          getProject().doAction(
+              OptionsActions.setAttribute(attrs,
+                Options.ATTR_SIM_THREADS, opt));
+        }
+      } else if (source == simMode) {
+        ComboOption opt = (ComboOption) simMode.getSelectedItem();
+        if (opt != null) {
+          AttributeSet attrs = getOptions().getAttributeSet();
+          getProject().doAction(
+              OptionsActions.setAttribute(attrs,
+                Options.ATTR_SIM_MODE, opt.getValue()));
+        }
       } else if (source == simRandomness) {
         AttributeSet attrs = getOptions().getAttributeSet();
         Object val = simRandomness.isSelected() ? Options.sim_rand_dflt
@@ -85,6 +109,12 @@ class SimulateOptions extends OptionsPanel {
       Object val = e.getValue();
       if (attr == Options.ATTR_SIM_LIMIT) {
         loadSimLimit((Integer) val);
+      } else if (attr == Options.ATTR_SIM_QUEUE) {
+        loadSimQueue(val);
+      } else if (attr == Options.ATTR_SIM_THREADS) {
+        loadSimThreads((Integer) val);
+      } else if (attr == Options.ATTR_SIM_MODE) {
+        loadSimMode(val);
       } else if (attr == Options.ATTR_SIM_RAND) {
         loadSimRandomness((Integer) val);
       } else if (attr == Options.ATTR_GATE_UNDEFINED) {
@@ -92,6 +122,14 @@ class SimulateOptions extends OptionsPanel {
       }
     }
 
+    private void loadSimQueue(Object val) {
+      ComboOption.setSelected(simQueue, val);
+    }
+
+    private void loadSimMode(Object val) {
+      ComboOption.setSelected(simMode, val);
+    }
+
     private void loadGateUndefined(Object val) {
       ComboOption.setSelected(gateUndefined, val);
     }
@@ -108,6 +146,18 @@ class SimulateOptions extends OptionsPanel {
       }
     }
 
+    @SuppressWarnings("rawtypes")
+    private void loadSimThreads(Integer val) {
+      int value = val.intValue();
+      ComboBoxModel model = simThreads.getModel();
+      for (int i = 0; i < model.getSize(); i++) {
+        Integer opt = (Integer) model.getElementAt(i);
+        if (opt.intValue() == value) {
+          simThreads.setSelectedItem(opt);
+        }
+      }
+    }
+
     private void loadSimRandomness(Integer val) {
       simRandomness.setSelected(val.intValue() > 0);
     }
@@ -124,6 +174,23 @@ class SimulateOptions extends OptionsPanel {
         Integer.valueOf(2000), Integer.valueOf(5000),
         Integer.valueOf(10000), Integer.valueOf(20000),
         Integer.valueOf(50000), });
+  private JLabel simQueueLabel = new JLabel();
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private JComboBox simQueue = new JComboBox(new Object[] {
+      new ComboOption(Options.SIM_QUEUE_LINKED),
+      new ComboOption(Options.SIM_QUEUE_SPLAY),
+      new ComboOption(Options.SIM_QUEUE_HEAP),
+      new ComboOption(Options.SIM_QUEUE_WHEEL) });
+  private JLabel simThreadsLabel = new JLabel();
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  private JComboBox simThreads = new JComboBox(new Integer[] {
+        Integer.valueOf(1), Integer.valueOf(2), Integer.valueOf(4),
+        Integer.valueOf(8), Integer.valueOf(16), Integer.valueOf(32), });
+  private JLabel simModeLabel = new JLabel();
+  @SuppressWarnings({ "rawtypes", "unchecked" })
+  private JComboBox simMode = new JComboBox(new Object[] {
+      new ComboOption(Options.SIM_MODE_EVENT),
+      new ComboOption(Options.SIM_MODE_COMPILED) });
   private JCheckBox simRandomness = new JCheckBox();
   private JLabel gateUndefinedLabel = new JLabel();
   @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -139,6 +206,21 @@ class SimulateOptions extends OptionsPanel {
     simLimitPanel.add(simLimit);
     simLimit.addActionListener(myListener);
 
+    JPanel simQueuePanel = new JPanel();
+    simQueuePanel.add(simQueueLabel);
+    simQueuePanel.add(simQueue);
+    simQueue.addActionListener(myListener);
+
+    JPanel simThreadsPanel = new JPanel();
+    simThreadsPanel.add(simThreadsLabel);
+    simThreadsPanel.add(simThreads);
+    simThreads.addActionListener(myListener);
+
+    JPanel simModePanel = new JPanel();
+    simModePanel.add(simModeLabel);
+    simModePanel.add(simMode);
+    simMode.addActionListener(myListener);
+
     JPanel gateUndefinedPanel = new JPanel();
     gateUndefinedPanel.add(gateUndefinedLabel);
     gateUndefinedPanel.add(gateUndefined);
@@ -148,12 +230,18 @@ class SimulateOptions extends OptionsPanel {
 
     setLayout(new TableLayout(1));
     add(simLimitPanel);
+    add(simQueuePanel);
+    add(simThreadsPanel);
+    add(simModePanel);
     add(gateUndefinedPanel);
     add(simRandomness);
 
     window.getOptions().getAttributeSet().addAttributeWeakListener(null, myListener);
     AttributeSet attrs = getOptions().getAttributeSet();
     myListener.loadSimLimit(attrs.getValue(Options.ATTR_SIM_LIMIT));
+    myListener.loadSimQueue(attrs.getValue(Options.ATTR_SIM_QUEUE));
+    myListener.loadSimThreads(attrs.getValue(Options.ATTR_SIM_THREADS));
+    myListener.loadSimMode(attrs.getValue(Options.ATTR_SIM_MODE));
     myListener.loadGateUndefined(attrs.getValue(Options.ATTR_GATE_UNDEFINED));
     myListener.loadSimRandomness(attrs.getValue(Options.ATTR_SIM_RAND));
   }
@@ -171,6 +259,9 @@ class SimulateOptions extends OptionsPanel {
   @Override
   public void localeChanged() {
     simLimitLabel.setText(S.get("simulateLimit"));
+    simQueueLabel.setText(S.get("simulateQueue"));
+    simThreadsLabel.setText(S.get("simulateThreads"));
+    simModeLabel.setText(S.get("simulateMode"));
     gateUndefinedLabel.setText(S.get("gateUndefined"));
     simRandomness.setText(S.get("simulateRandomness"));
   }
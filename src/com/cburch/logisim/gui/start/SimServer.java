@@ -0,0 +1,590 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.start;
+import static com.cburch.logisim.gui.start.Strings.S;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Checkpoint;
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.Propagator;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.data.BitWidth;
+import com.cburch.logisim.data.Value;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.instance.Instance;
+import com.cburch.logisim.instance.InstanceState;
+import com.cburch.logisim.instance.StdAttr;
+import com.cburch.logisim.proj.Project;
+import com.cburch.logisim.std.memory.Mem;
+import com.cburch.logisim.std.memory.MemContents;
+import com.cburch.logisim.std.memory.MemTrace;
+import com.cburch.logisim.std.memory.Ram;
+import com.cburch.logisim.std.wiring.Pin;
+import com.cburch.logisim.std.wiring.Probe;
+import com.cburch.logisim.util.UniquelyNamedThread;
+
+// A long-lived headless simulator, for test benches that would otherwise spawn
+// a "-tty" process per run and scrape its output. The circuit file is loaded
+// once, then clients connect over TCP on the loopback interface. Each
+// connection gets its own independent simulation of the circuit, so several
+// clients can run concurrently.
+//
+// The protocol is line based: each request is one line, a command followed by
+// space-separated arguments, and gets exactly one response line, either "ok"
+// followed by any results, or "err" followed by a message. Responses are only
+// flushed once no further requests are waiting, so a client can pipeline
+// thousands of requests in a single write and read back all of the responses
+// in one go. Setting inputs does not propagate by itself; that happens lazily
+// before anything is read or the clock ticks, so a batch of sets costs a
+// single propagation.
+//
+//   pins                     list pins as name:in:width or name:out:width
+//   set pin value            drive an input pin, e.g. 1, 0x3f, 42, 0101
+//   get name...              read pins or labeled probes
+//   tick [n]                 toggle clocks n times (default 1), like -tty,
+//                            stopping early if a watchpoint is hit
+//   peek mem addr [count]    read RAM/ROM words, in hex
+//   poke mem addr value...   write RAM words
+//   trace mem [n|off]        record RAM/ROM accesses in a ring of n records
+//   watch mem lo [hi] [r|w|rw]   stop ticking on access to addresses lo..hi
+//   watch mem off            remove the watchpoints
+//   export mem file          stream the access trace to a new binary file
+//                            until tracing stops (see MemTrace for the
+//                            format); an existing file is never overwritten
+//   reset                    start over from a freshly initialized circuit
+//   snapshot name            save the simulation state in memory
+//   restore name             go back to a saved state
+//   quit                     close this connection
+//   shutdown                 close this connection and stop the server
+//
+// Memories are named by their label or, if unlabeled, by factory@(x,y) as in
+// checkpoints, and may be anywhere in the circuit hierarchy. Signal values are
+// written as in test vectors: single bits plainly, wider ones as 0x hex.
+// A tick that hits a watchpoint replies "ok tick hit mem r|w addr value",
+// in hex. Tracing stops on reset and restore.
+class SimServer {
+
+  private final Project proj;
+  private final Circuit circuit;
+  private final ServerSocket server;
+
+  private SimServer(Project proj, Circuit circuit, ServerSocket server) {
+    this.proj = proj;
+    this.circuit = circuit;
+    this.server = server;
+  }
+
+  static int run(LogisimFile.FileWithSimulations file, String circuitName,
+      int port) {
+    Circuit circuit;
+    if (circuitName == null || circuitName.length() == 0)
+      circuit = file.file.getMainCircuit();
+    else
+      circuit = file.file.getCircuit(circuitName);
+    if (circuit == null) {
+      System.out.println(S.fmt("serverNoCircuit", circuitName));
+      return -1;
+    }
+    ServerSocket server;
+    try {
+      server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    } catch (IOException e) {
+      System.out.println(S.fmt("serverError", e.getMessage()));
+      return -1;
+    }
+    // Scripts starting the server with port 0 read the actual port from here.
+    System.out.println(S.fmt("serverListening",
+          server.getInetAddress().getHostAddress() + ":" + server.getLocalPort()));
+    System.out.flush();
+    new SimServer(new Project(file), circuit, server).serve();
+    return 0;
+  }
+
+  private void serve() {
+    while (!server.isClosed()) {
+      Socket sock;
+      try {
+        sock = server.accept();
+      } catch (IOException e) {
+        if (!server.isClosed())
+          System.out.println(S.fmt("serverError", e.getMessage()));
+        break;
+      }
+      Thread t = new UniquelyNamedThread(() -> handle(sock), "SimServer-Session");
+      t.setDaemon(true);
+      t.start();
+    }
+  }
+
+  private void handle(Socket sock) {
+    try (Socket s = sock) {
+      s.setTcpNoDelay(true);
+      BufferedReader in = new BufferedReader(new InputStreamReader(
+            s.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+      BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+            s.getOutputStream(), StandardCharsets.UTF_8), 1 << 16);
+      Session session = new Session();
+      String line;
+      while ((line = in.readLine()) != null) {
+        String[] args = line.trim().split("\\s+");
+        if (args[0].length() == 0)
+          continue;
+        String reply;
+        try {
+          reply = session.execute(args);
+        } catch (IllegalArgumentException e) {
+          reply = "err " + e.getMessage();
+        } catch (RuntimeException e) {
+          // a bug in a command or component, which mustn't cost the client
+          // its connection, nor leave a pipelined client waiting for a reply
+          e.printStackTrace();
+          reply = "err " + e.toString().replace('\n', ' ');
+        }
+        out.write(reply);
+        out.write('\n');
+        if (args[0].equals("quit") || args[0].equals("shutdown")) {
+          out.flush();
+          if (args[0].equals("shutdown"))
+            server.close();
+          return;
+        }
+        if (!in.ready())
+          out.flush();
+      }
+      out.flush();
+    } catch (SocketException e) {
+      // client went away
+    } catch (IOException e) {
+      System.out.println(S.fmt("serverError", e.getMessage()));
+    }
+  }
+
+  // The simulation driven by one connection.
+  private class Session {
+    CircuitState state;
+    Propagator prop;
+    boolean stale; // inputs changed since the last propagation
+    HashMap<String, Instance> signals = new HashMap<>();
+    HashMap<String, Instance> inputs = new HashMap<>();
+    HashMap<String, MemRef> memories; // built lazily, null if out of date
+    HashMap<String, byte[]> snapshots = new HashMap<>();
+    HashMap<String, MemTrace> traces = new HashMap<>();
+    StringBuilder pinList = new StringBuilder("ok");
+
+    Session() {
+      for (Map.Entry<Instance, String> e : Analyze.getPinLabels(circuit).entrySet()) {
+        Instance pin = e.getKey();
+        String name = e.getValue();
+        boolean input = Pin.FACTORY.isInputPin(pin);
+        signals.put(name, pin);
+        if (input)
+          inputs.put(name, pin);
+        pinList.append(' ').append(name).append(input ? ":in:" : ":out:")
+            .append(pin.getAttributeValue(StdAttr.WIDTH).getWidth());
+      }
+      for (Component comp : circuit.getNonWires()) {
+        if (!(comp.getFactory() instanceof Probe))
+          continue;
+        String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
+        if (label != null && label.length() > 0 && !signals.containsKey(label))
+          signals.put(label, Instance.getInstanceFor(comp));
+      }
+      reset();
+    }
+
+    void reset() {
+      stopTraces();
+      state = CircuitState.createRootState(proj, circuit);
+      prop = state.getPropagator();
+      prop.propagate();
+      stale = false;
+      memories = null;
+    }
+
+    void settle() {
+      if (stale) {
+        prop.propagate();
+        stale = false;
+      }
+    }
+
+    String execute(String[] args) {
+      switch (args[0]) {
+      case "pins":
+        return pinList.toString();
+      case "set":
+        return set(args);
+      case "get":
+        return get(args);
+      case "tick":
+        return tick(args);
+      case "peek":
+        return peek(args);
+      case "poke":
+        return poke(args);
+      case "trace":
+        return trace(args);
+      case "watch":
+        return watch(args);
+      case "export":
+        return export(args);
+      case "reset":
+        reset();
+        return "ok";
+      case "snapshot":
+        return snapshot(args);
+      case "restore":
+        return restore(args);
+      case "quit":
+      case "shutdown":
+        return "ok";
+      default:
+        throw new IllegalArgumentException(S.fmt("serverUnknownCommand", args[0]));
+      }
+    }
+
+    String set(String[] args) {
+      checkArgs(args, 3, 3);
+      Instance pin = inputs.get(args[1]);
+      if (pin == null)
+        throw new IllegalArgumentException(S.fmt("serverNoInput", args[1]));
+      BitWidth width = pin.getAttributeValue(StdAttr.WIDTH);
+      Value v;
+      try {
+        v = Value.fromLogString(width, args[2]);
+      } catch (Exception e) {
+        throw new IllegalArgumentException(e.getMessage());
+      }
+      Pin.FACTORY.driveInputPin(state.getInstanceState(pin), v);
+      state.markComponentAsDirty(pin.getComponent());
+      stale = true;
+      return "ok";
+    }
+
+    String get(String[] args) {
+      checkArgs(args, 2, Integer.MAX_VALUE);
+      settle();
+      StringBuilder ret = new StringBuilder("ok");
+      for (int i = 1; i < args.length; i++) {
+        Instance comp = signals.get(args[i]);
+        if (comp == null)
+          throw new IllegalArgumentException(S.fmt("serverNoSignal", args[i]));
+        Value v;
+        if (comp.getFactory() instanceof Pin)
+          v = Pin.FACTORY.getValue(state.getInstanceState(comp));
+        else
+          v = state.getValue(comp.getLocation());
+        ret.append(' ').append(format(v));
+      }
+      return ret.toString();
+    }
+
+    String tick(String[] args) {
+      checkArgs(args, 1, 2);
+      long n = args.length > 1 ? parseNumber(args[1]) : 1;
+      settle();
+      for (long i = 0; i < n; i++) {
+        prop.toggleClocks();
+        prop.propagate();
+        if (prop.isOscillating())
+          throw new IllegalArgumentException(S.get("serverOscillation"));
+        if (!traces.isEmpty()) {
+          String hit = takeHit();
+          if (hit != null)
+            return "ok " + prop.getTickCount() + hit;
+        }
+      }
+      return "ok " + prop.getTickCount();
+    }
+
+    String takeHit() {
+      String ret = null;
+      for (Map.Entry<String, MemTrace> e : traces.entrySet()) {
+        MemTrace.Access a = e.getValue().takeHit();
+        if (a != null && ret == null)
+          ret = " hit " + e.getKey()
+              + (a.kind == MemTrace.WRITE ? " w " : " r ")
+              + Long.toHexString(a.address) + " "
+              + Integer.toHexString(a.value);
+      }
+      return ret;
+    }
+
+    String trace(String[] args) {
+      checkArgs(args, 2, 3);
+      if (args.length > 2 && args[2].equals("off")) {
+        MemTrace t = traces.remove(args[1]);
+        if (t == null)
+          throw new IllegalArgumentException(S.fmt("serverNoTrace", args[1]));
+        long n = closeTrace(findMemory(args[1]), t);
+        return "ok " + t.getRecordCount() + " " + n;
+      }
+      long n = args.length > 2 ? parseNumber(args[2]) : MemTrace.DEFAULT_RECORDS;
+      MemRef ref = findMemory(args[1]);
+      MemTrace old = traces.remove(args[1]);
+      if (old != null)
+        closeTrace(ref, old);
+      startTrace(args[1], ref, n);
+      return "ok";
+    }
+
+    String watch(String[] args) {
+      checkArgs(args, 3, 5);
+      MemRef ref = findMemory(args[1]);
+      MemTrace t = traces.get(args[1]);
+      if (args[2].equals("off")) {
+        checkArgs(args, 3, 3);
+        if (t != null)
+          t.clearWatchpoints();
+        return "ok";
+      }
+      int kinds = MemTrace.READ | MemTrace.WRITE;
+      int n = args.length;
+      if (args[n-1].equals("r") || args[n-1].equals("w") || args[n-1].equals("rw")) {
+        kinds = args[n-1].equals("r") ? MemTrace.READ
+            : args[n-1].equals("w") ? MemTrace.WRITE : kinds;
+        n--;
+      }
+      if (n > 4)
+        throw new IllegalArgumentException(S.fmt("serverArgCount", args[0]));
+      long lo = parseNumber(args[2]);
+      long hi = n > 3 ? parseNumber(args[3]) : lo;
+      checkRange(ref.contents(), lo, hi < lo ? -1 : hi - lo + 1);
+      if (t == null)
+        t = startTrace(args[1], ref, MemTrace.DEFAULT_RECORDS);
+      t.addWatchpoint(lo, hi, kinds);
+      return "ok";
+    }
+
+    String export(String[] args) {
+      checkArgs(args, 3, 3);
+      findMemory(args[1]);
+      MemTrace t = traces.get(args[1]);
+      if (t == null)
+        throw new IllegalArgumentException(S.fmt("serverNoTrace", args[1]));
+      try {
+        t.streamTo(new File(args[2]), false);
+      } catch (FileAlreadyExistsException e) {
+        throw new IllegalArgumentException(S.fmt("serverFileExists", args[2]));
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e.getMessage());
+      }
+      return "ok";
+    }
+
+    MemTrace startTrace(String name, MemRef ref, long n) {
+      MemContents m = ref.contents();
+      MemTrace t;
+      try {
+        t = new MemTrace(m.getLogLength(), m.getWidth(), (int) Math.min(n, Integer.MAX_VALUE));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(S.fmt("serverBadNumber", n));
+      }
+      ref.factory().setTrace(ref.instanceState(), t);
+      traces.put(name, t);
+      return t;
+    }
+
+    // Returns the number of records written to the trace's stream, if any.
+    long closeTrace(MemRef ref, MemTrace t) {
+      if (ref != null)
+        ref.factory().setTrace(ref.instanceState(), null);
+      try {
+        return t.close();
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e.getMessage());
+      }
+    }
+
+    // Used when the simulation is replaced, so the old memories are moot.
+    void stopTraces() {
+      for (MemTrace t : traces.values()) {
+        try {
+          t.close();
+        } catch (IOException e) {
+          System.out.println(S.fmt("serverError", e.getMessage()));
+        }
+      }
+      traces.clear();
+    }
+
+    String peek(String[] args) {
+      checkArgs(args, 3, 4);
+      MemContents m = findMemory(args[1]).contents();
+      long addr = parseNumber(args[2]);
+      long count = args.length > 3 ? parseNumber(args[3]) : 1;
+      checkRange(m, addr, count);
+      settle();
+      StringBuilder ret = new StringBuilder("ok");
+      for (long i = 0; i < count; i++)
+        ret.append(' ').append(Integer.toHexString(m.get(addr + i)));
+      return ret.toString();
+    }
+
+    String poke(String[] args) {
+      checkArgs(args, 4, Integer.MAX_VALUE);
+      MemRef ref = findMemory(args[1]);
+      if (!(ref.comp.getFactory() instanceof Ram))
+        throw new IllegalArgumentException(S.fmt("serverReadOnly", args[1]));
+      MemContents m = ref.contents();
+      long addr = parseNumber(args[2]);
+      int[] vals = new int[args.length - 3];
+      checkRange(m, addr, vals.length);
+      for (int i = 0; i < vals.length; i++)
+        vals[i] = (int) parseNumber(args[i + 3]);
+      m.set(addr, vals);
+      // the RAM's outputs may depend on the words just written
+      ref.state.markComponentAsDirty(ref.comp);
+      stale = true;
+      return "ok";
+    }
+
+    String snapshot(String[] args) {
+      checkArgs(args, 2, 2);
+      settle();
+      ByteArrayOutputStream buf = new ByteArrayOutputStream();
+      try {
+        Checkpoint.save(state, buf);
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e.getMessage());
+      }
+      snapshots.put(args[1], buf.toByteArray());
+      return "ok " + buf.size();
+    }
+
+    String restore(String[] args) {
+      checkArgs(args, 2, 2);
+      byte[] data = snapshots.get(args[1]);
+      if (data == null)
+        throw new IllegalArgumentException(S.fmt("serverNoSnapshot", args[1]));
+      stopTraces();
+      try {
+        Checkpoint.restore(state, new ByteArrayInputStream(data));
+      } catch (IOException e) {
+        throw new IllegalArgumentException(e.getMessage());
+      }
+      stale = false;
+      memories = null;
+      return "ok " + prop.getTickCount();
+    }
+
+    MemRef findMemory(String name) {
+      if (memories == null) {
+        memories = new HashMap<>();
+        findMemories(state);
+      }
+      MemRef ref = memories.get(name);
+      if (ref == null)
+        throw new IllegalArgumentException(S.fmt("serverNoMemory", name));
+      return ref;
+    }
+
+    // Names used by several memories map to null, and so are never found.
+    private void findMemories(CircuitState s) {
+      for (Component comp : s.getCircuit().getNonWires()) {
+        if (!(comp.getFactory() instanceof Mem))
+          continue;
+        String label = comp.getAttributeSet().getValue(StdAttr.LABEL);
+        String name = label != null && label.length() > 0 ? label
+            : comp.getFactory().getName() + "@" + comp.getLocation();
+        memories.put(name, memories.containsKey(name) ? null : new MemRef(s, comp));
+      }
+      for (CircuitState sub : s.getSubstates())
+        findMemories(sub);
+    }
+  }
+
+  private static class MemRef {
+    final CircuitState state;
+    final Component comp;
+
+    MemRef(CircuitState state, Component comp) {
+      this.state = state;
+      this.comp = comp;
+    }
+
+    Mem factory() {
+      return (Mem) comp.getFactory();
+    }
+
+    InstanceState instanceState() {
+      return state.getInstanceState(comp);
+    }
+
+    MemContents contents() {
+      return factory().getContents(instanceState());
+    }
+  }
+
+  private static void checkArgs(String[] args, int min, int max) {
+    if (args.length < min || args.length > max)
+      throw new IllegalArgumentException(S.fmt("serverArgCount", args[0]));
+  }
+
+  private static void checkRange(MemContents m, long addr, long count) {
+    if (addr < 0 || count < 0 || addr + count - 1 > m.getLastOffset())
+      throw new IllegalArgumentException(S.fmt("serverAddressRange",
+            Long.toHexString(addr), Long.toString(count)));
+  }
+
+  private static long parseNumber(String s) {
+    try {
+      if (s.startsWith("0x"))
+        return Long.parseLong(s.substring(2), 16);
+      return Long.parseLong(s);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(S.fmt("serverBadNumber", s));
+    }
+  }
+
+  private static String format(Value v) {
+    return v.getWidth() <= 1 ? v.toString() : "0x" + v.toHexString();
+  }
+
+}
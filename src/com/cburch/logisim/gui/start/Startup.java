@@ -56,6 +56,7 @@ import com.cburch.logisim.gui.main.Print;
 import com.cburch.logisim.gui.menu.LogisimMenuBar;
 import com.cburch.logisim.gui.menu.WindowManagers;
 import com.cburch.logisim.gui.prefs.PreferencesFrame;
+import com.cburch.logisim.gui.test.TestBatch;
 import com.cburch.logisim.prefs.AppPreferences;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.proj.ProjectActions;
@@ -94,6 +95,11 @@ public class Startup {
     options.put("-tty", HEADLESS | ONEPARAM | NEEDFILE);
     options.put("-circuit", HEADLESS | ONEPARAM);
     options.put("-load", HEADLESS | ONEPARAM);
+    options.put("-restore", HEADLESS | ONEPARAM);
+    options.put("-checkpoint", HEADLESS | TWOPARAM);
+    options.put("-testbatch", HEADLESS | ONEPARAM | NEEDFILE);
+    options.put("-testthreads", HEADLESS | ONEPARAM);
+    options.put("-server", HEADLESS | ONEPARAM | NEEDFILE);
 
     options.put("-?", HEADLESS); // undocumented synonym for -help
     options.put("-clearprops", 0); // obsolete synonym for -clearprefs
@@ -192,6 +198,8 @@ public class Startup {
             ret.ttyFormat |= TtyInterface.FORMAT_HALT;
           else if (fmt.equals("stats"))
             ret.ttyFormat |= TtyInterface.FORMAT_STATISTICS;
+          else if (fmt.equals("profile"))
+            ret.ttyFormat |= TtyInterface.FORMAT_PROFILE;
           else if (fmt.equals("binary"))
             ret.ttyFormat |= TtyInterface.FORMAT_TABLE_BIN;
           else if (fmt.equals("hex"))
@@ -200,6 +208,10 @@ public class Startup {
             ret.ttyFormat |= TtyInterface.FORMAT_TABLE_CSV;
           else if (fmt.equals("tabs"))
             ret.ttyFormat |= TtyInterface.FORMAT_TABLE_TABBED;
+          else if (fmt.equals("delta"))
+            ret.ttyFormat |= TtyInterface.FORMAT_TABLE_DELTA;
+          else if (fmt.equals("records"))
+            ret.ttyFormat |= TtyInterface.FORMAT_TABLE_RECORDS;
           else if (fmt.startsWith("choose:")) {
             ret.ttyFormat |= TtyInterface.FORMAT_RANDOMIZE;
             String[] p = fmt.split(":");
@@ -240,6 +252,17 @@ public class Startup {
         if (ret.loadFile != null)
           fail(S.get("loadMultipleError"));
         ret.loadFile = new File(param0);
+      } else if (arg.equals("-restore")) {
+        ret.restoreFile = new File(param0);
+      } else if (arg.equals("-checkpoint")) {
+        try {
+          ret.checkpointTicks = Long.parseLong(param0);
+        } catch (NumberFormatException e) {
+          fail(S.get("checkpointTicksError"));
+        }
+        if (ret.checkpointTicks < 0)
+          fail(S.get("checkpointTicksError"));
+        ret.checkpointFile = new File(param1);
       } else if (arg.equals("-empty")) {
         if (ret.templFile != null || ret.templEmpty || ret.templPlain)
           fail(S.get("argOneTemplateError"));
@@ -319,6 +342,27 @@ public class Startup {
         ret.exitAfterStartup = true;
       } else if (arg.equals("-circuit")) {
         ret.circuitToTest = param0;
+      } else if (arg.equals("-testbatch")) {
+        if (!param0.equals(TestBatch.FORMAT_JSON)
+            && !param0.equals(TestBatch.FORMAT_JUNIT))
+          fail(S.get("testBatchFormatError"));
+        ret.testBatchFormat = param0;
+      } else if (arg.equals("-testthreads")) {
+        try {
+          ret.testThreads = Integer.parseInt(param0);
+        } catch (NumberFormatException e) {
+          fail(S.get("testThreadsError"));
+        }
+        if (ret.testThreads <= 0)
+          fail(S.get("testThreadsError"));
+      } else if (arg.equals("-server")) {
+        try {
+          ret.serverPort = Integer.parseInt(param0);
+        } catch (NumberFormatException e) {
+          fail(S.get("serverPortError"));
+        }
+        if (ret.serverPort < 0 || ret.serverPort > 65535)
+          fail(S.get("serverPortError"));
       } else if (arg.equals("-clearprefs") || arg.equals("-clearprops")) {
         // already handled above
       } else if (arg.equals("-analyze")) {
@@ -366,6 +410,11 @@ public class Startup {
     System.err.println("   " + S.get("argTtyOption")); // OK
     System.err.println("   " + S.get("argCircuitOption")); // OK
     System.err.println("   " + S.get("argLoadOption")); // OK
+    System.err.println("   " + S.get("argRestoreOption")); // OK
+    System.err.println("   " + S.get("argCheckpointOption")); // OK
+    System.err.println("   " + S.get("argTestBatchOption")); // OK
+    System.err.println("   " + S.get("argTestThreadsOption")); // OK
+    System.err.println("   " + S.get("argServerOption")); // OK
     System.exit(0);
   }
 
@@ -469,9 +518,14 @@ public class Startup {
   private boolean exitAfterStartup = false;
   private boolean showSplash;
   private File loadFile;
+  private File restoreFile, checkpointFile;
+  private long checkpointTicks;
   private HashMap<String, String> substitutions = new HashMap<>();
   private int ttyFormat = 0;
   private int ttyRandomHead, ttyRandomBody, ttyRandomTail;
+  private String testBatchFormat = null;
+  private int testThreads = 0;
+  private int serverPort = -1;
   // from other sources
   private boolean initialized = false;
   private SplashScreen monitor = null;
@@ -508,6 +562,18 @@ public class Startup {
     return loadFile;
   }
 
+  File getRestoreFile() {
+    return restoreFile;
+  }
+
+  File getCheckpointFile() {
+    return checkpointFile;
+  }
+
+  long getCheckpointTicks() {
+    return checkpointTicks;
+  }
+
   String getCircuitToTest() {
     return circuitToTest;
   }
@@ -520,6 +586,9 @@ public class Startup {
   int getTtyRandomHead() { return ttyRandomHead; }
   int getTtyRandomBody() { return ttyRandomBody; }
   int getTtyRandomTail() { return ttyRandomTail; }
+  String getTestBatchFormat() { return testBatchFormat; }
+  int getTestThreads() { return testThreads; }
+  int getServerPort() { return serverPort; }
 
   private void loadTemplate() {
     if (templFile != null) {
@@ -0,0 +1,302 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.start;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.cburch.logisim.data.Value;
+
+// Writes the output table of a long "-tty table" run, one row per tick on
+// which some output changed. Unlike TtyInterface.displayTableRow, which is
+// fine for a few hundred rows, this formats every row into one reused byte
+// buffer and hands it to a buffered stream in a single write, so in the usual
+// case of fully-defined values nothing at all is allocated per tick.
+//
+// Besides the text formats of displayTableRow (pretty, tabs, or csv, each with
+// optional binary or hex values), which it reproduces exactly, it supports:
+//
+//  - delta: each row holds only the tick number and name=value for each
+//    output that changed on that tick, which is far shorter for wide circuits
+//    where only a few outputs change at a time.
+//
+//  - records: a raw big-endian binary stream for downstream tools. A header
+//    holds the magic number "LGKR", the number of columns, then for each
+//    column its name (as in DataOutput.writeUTF) and a width byte. Each row
+//    is then a fixed-size record: the tick number as a long, each column's
+//    value in (width+7)/8 bytes, and finally a bitmap of (columns+7)/8 bytes,
+//    least significant bit first, flagging columns with any unknown or error
+//    bits (whose value bytes are then zero).
+class TableStream {
+
+  static final int RECORD_MAGIC = 0x4c474b52; // "LGKR"
+
+  // what println ends each line with, as displayTableRow did
+  private static final byte[] NEWLINE =
+      System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+  private final OutputStream out;
+  private final int format;
+  private final String[] headers;
+  private final byte[][] names; // "name=", for delta rows
+  private final int[] bitWidths;
+  private final int[] colWidths; // for pretty rows, set by the first row
+  private final byte sep;
+  private final boolean delta, records;
+
+  private byte[] buf = new byte[256];
+  private int len;
+  private byte[] val = new byte[80];
+  private int valLen;
+
+  private long rows, bytes;
+
+  TableStream(OutputStream out, int format, String[] headers, int[] bitWidths)
+      throws IOException {
+    this.out = out;
+    this.format = format;
+    this.headers = headers;
+    this.bitWidths = bitWidths;
+    this.delta = (format & TtyInterface.FORMAT_TABLE_DELTA) != 0;
+    this.records = (format & TtyInterface.FORMAT_TABLE_RECORDS) != 0;
+    if ((format & TtyInterface.FORMAT_TABLE_TABBED) != 0)
+      sep = '\t';
+    else if ((format & TtyInterface.FORMAT_TABLE_CSV) != 0)
+      sep = ',';
+    else
+      sep = ' ';
+    names = new byte[headers.length][];
+    for (int i = 0; i < headers.length; i++)
+      names[i] = (headers[i] + "=").getBytes(StandardCharsets.UTF_8);
+    colWidths = new int[headers.length];
+    if (records) {
+      DataOutputStream header = new DataOutputStream(out);
+      header.writeInt(RECORD_MAGIC);
+      header.writeInt(headers.length);
+      for (int i = 0; i < headers.length; i++) {
+        header.writeUTF(headers[i]);
+        header.writeByte(bitWidths[i]);
+      }
+      header.flush();
+      bytes += header.size();
+    }
+  }
+
+  long getRowCount() {
+    return rows;
+  }
+
+  long getByteCount() {
+    return bytes;
+  }
+
+  // Writes a row for tick, unless no value changed from prev (which is null
+  // for the first row). Returns true if a row was written.
+  boolean row(long tick, Value[] prev, Value[] cur) throws IOException {
+    if (prev != null) {
+      int i = 0;
+      while (i < cur.length && cur[i].equals(prev[i]))
+        i++;
+      if (i == cur.length)
+        return false;
+    }
+    len = 0;
+    if (records)
+      record(tick, cur);
+    else if (delta)
+      deltaRow(tick, prev, cur);
+    else
+      textRow(prev == null, cur);
+    out.write(buf, 0, len);
+    rows++;
+    bytes += len;
+    return true;
+  }
+
+  private void record(long tick, Value[] cur) {
+    putLong(tick);
+    for (int i = 0; i < cur.length; i++) {
+      Value v = cur[i];
+      long x = v.isFullyDefined() ? v.toLongValue() : 0;
+      for (int b = (bitWidths[i] + 7) / 8 - 1; b >= 0; b--)
+        put((byte) (x >>> (8 * b)));
+    }
+    int flags = 0;
+    for (int i = 0; i < cur.length; i++) {
+      if (!cur[i].isFullyDefined() && cur[i].getWidth() > 0)
+        flags |= 1 << (i % 8);
+      if (i % 8 == 7 || i == cur.length - 1) {
+        put((byte) flags);
+        flags = 0;
+      }
+    }
+  }
+
+  private void deltaRow(long tick, Value[] prev, Value[] cur) {
+    putDecimal(tick);
+    for (int i = 0; i < cur.length; i++) {
+      if (prev != null && cur[i].equals(prev[i]))
+        continue;
+      put((byte) ' ');
+      put(names[i]);
+      formatValue(cur[i]);
+      put(val, valLen);
+    }
+    put(NEWLINE);
+  }
+
+  private void textRow(boolean first, Value[] cur) {
+    boolean pretty = sep == ' ';
+    if (first) {
+      for (int i = 0; i < cur.length; i++) {
+        formatValue(cur[i]);
+        colWidths[i] = Math.max(headers[i].length(), valLen);
+      }
+      for (int i = 0; i < cur.length; i++) {
+        if (i != 0)
+          put(sep);
+        if (pretty)
+          pad(colWidths[i] - headers[i].length());
+        put(names[i], names[i].length - 1);
+      }
+      put(NEWLINE);
+    }
+    for (int i = 0; i < cur.length; i++) {
+      if (i != 0)
+        put(sep);
+      formatValue(cur[i]);
+      if (pretty)
+        pad(colWidths[i] - valLen);
+      put(val, valLen);
+    }
+    put(NEWLINE);
+  }
+
+  // Formats v into val, exactly as TtyInterface.valueFormat would.
+  private void formatValue(Value v) {
+    valLen = 0;
+    if ((format & TtyInterface.FORMAT_TABLE_BIN) != 0) {
+      bits(v, true); // as in toString
+    } else if ((format & TtyInterface.FORMAT_TABLE_HEX) != 0) {
+      hex(v);
+    } else if (v.getWidth() <= 6) {
+      bits(v, false); // as in toBinaryString
+    } else {
+      putVal('0');
+      putVal('x');
+      hex(v);
+    }
+  }
+
+  private void bits(Value v, boolean spaced) {
+    int w = v.getWidth();
+    if (w == 0) {
+      putVal('-');
+      return;
+    }
+    for (int i = w - 1; i >= 0; i--) {
+      Value b = v.get(i);
+      putVal(b == Value.TRUE ? '1' : b == Value.FALSE ? '0'
+          : b == Value.UNKNOWN ? 'x' : 'E');
+      if (spaced && i % 4 == 0 && i != 0)
+        putVal(' ');
+    }
+  }
+
+  private void hex(Value v) {
+    int w = v.getWidth();
+    if (w <= 1) {
+      bits(v, true);
+    } else if (v.isFullyDefined()) {
+      long x = v.toLongValue();
+      for (int d = (w + 3) / 4 - 1; d >= 0; d--)
+        putVal(Character.forDigit((int) ((x >>> (4 * d)) & 0xf), 16));
+    } else {
+      String s = v.toHexString(); // rare, so not worth duplicating
+      for (int i = 0; i < s.length(); i++)
+        putVal(s.charAt(i));
+    }
+  }
+
+  private void putVal(char c) {
+    if (valLen == val.length) {
+      byte[] b = new byte[2 * val.length];
+      System.arraycopy(val, 0, b, 0, valLen);
+      val = b;
+    }
+    val[valLen++] = (byte) c;
+  }
+
+  private void ensure(int n) {
+    if (len + n > buf.length) {
+      byte[] b = new byte[Math.max(2 * buf.length, len + n)];
+      System.arraycopy(buf, 0, b, 0, len);
+      buf = b;
+    }
+  }
+
+  private void put(byte b) {
+    ensure(1);
+    buf[len++] = b;
+  }
+
+  private void put(byte[] b) {
+    put(b, b.length);
+  }
+
+  private void put(byte[] b, int n) {
+    ensure(n);
+    System.arraycopy(b, 0, buf, len, n);
+    len += n;
+  }
+
+  private void pad(int n) {
+    for (int i = 0; i < n; i++)
+      put((byte) ' ');
+  }
+
+  private void putLong(long x) {
+    ensure(8);
+    for (int b = 7; b >= 0; b--)
+      buf[len++] = (byte) (x >>> (8 * b));
+  }
+
+  private void putDecimal(long x) {
+    long d = 1;
+    while (x / d >= 10)
+      d *= 10;
+    for (; d > 0; d /= 10)
+      put((byte) ('0' + (x / d) % 10));
+  }
+
+}
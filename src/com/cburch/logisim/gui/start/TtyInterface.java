@@ -31,12 +31,18 @@
 package com.cburch.logisim.gui.start;
 import static com.cburch.logisim.gui.start.Strings.S;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Random;
@@ -44,6 +50,7 @@ import java.util.Random;
 import com.cburch.logisim.analyze.model.TruthTable;
 import com.cburch.logisim.analyze.model.Var;
 import com.cburch.logisim.circuit.Analyze;
+import com.cburch.logisim.circuit.Checkpoint;
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.Propagator;
@@ -58,12 +65,14 @@ import com.cburch.logisim.file.LogisimFile;
 import com.cburch.logisim.gui.hex.HexFile;
 import com.cburch.logisim.gui.main.Canvas;
 import com.cburch.logisim.gui.main.ExportImage;
+import com.cburch.logisim.gui.test.TestBatch;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.instance.InstanceState;
 import com.cburch.logisim.instance.StdAttr;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.std.io.Keyboard;
 import com.cburch.logisim.std.io.Tty;
+import com.cburch.logisim.std.memory.Mem;
 import com.cburch.logisim.std.memory.MemContents;
 import com.cburch.logisim.std.memory.Ram;
 import com.cburch.logisim.std.wiring.Pin;
@@ -142,6 +151,58 @@ public class TtyInterface {
     System.out.println(S.fmt("ttySpeedMsg", hertzStr, tickCount, elapse));
   }
 
+  private static void displayThroughput(long rows, long bytes, long elapse) {
+    double secs = Math.max(elapse, 1) / 1000.0;
+    System.out.println(S.fmt("ttyThroughputMsg", rows, bytes,
+          String.format("%.0f", rows / secs),
+          String.format("%.2f", bytes / secs / (1 << 20))));
+  }
+
+  private static void displayLoadThroughput(long bytes, long elapse) {
+    double secs = Math.max(elapse, 1) / 1000.0;
+    System.out.println(S.fmt("ttyLoadThroughputMsg", bytes, elapse,
+          String.format("%.2f", bytes / secs / (1 << 20))));
+  }
+
+  private static void displayPropagationStats(Propagator prop) {
+    System.out.println(S.fmt("ttyPropagationStatsMsg",
+          prop.getStepCount(), prop.getStateVisitCount(),
+          prop.getEventAllocationCount()));
+    long hits = Value.getCacheHitCount();
+    long misses = Value.getCacheMissCount();
+    long total = hits + misses;
+    System.out.println(S.fmt("ttyValueCacheStatsMsg", hits, misses,
+          total == 0 ? "0" : String.format("%.1f", 100.0 * hits / total)));
+  }
+
+  private static void displayMemoryStats(CircuitState circState) {
+    // identity, since e.g. all states of a ROM share the same contents
+    IdentityHashMap<MemContents, Boolean> mems = new IdentityHashMap<>();
+    findMemories(circState, mems);
+    if (mems.isEmpty())
+      return;
+    long logical = 0, materialized = 0, shared = 0;
+    for (MemContents m : mems.keySet()) {
+      logical += m.getLogicalBytes();
+      materialized += m.getMaterializedBytes();
+      shared += m.getSharedBytes();
+    }
+    System.out.println(S.fmt("ttyMemoryStatsMsg", mems.size(), logical,
+          materialized, shared));
+  }
+
+  private static void findMemories(CircuitState circState,
+      Map<MemContents, Boolean> mems) {
+    for (Component comp : circState.getCircuit().getNonWires()) {
+      if (comp.getFactory() instanceof Mem) {
+        Mem factory = (Mem) comp.getFactory();
+        mems.put(factory.getContents(circState.getInstanceState(comp)), true);
+      }
+    }
+    for (CircuitState sub : circState.getSubstates())
+      findMemories(sub, mems);
+  }
+
   private static void displayStatistics(LogisimFile file) {
     FileStatistics stats = FileStatistics.compute(file,
         file.getMainCircuit());
@@ -252,24 +313,25 @@ public class TtyInterface {
     }
   }
 
-  private static boolean loadRam(CircuitState circState, File loadFile)
+  // Returns the number of memories loaded.
+  private static int loadRam(CircuitState circState, File loadFile)
       throws IOException {
     if (loadFile == null)
-      return false;
+      return 0;
 
-    boolean found = false;
+    int found = 0;
     for (Component comp : circState.getCircuit().getNonWires()) {
       if (comp.getFactory() instanceof Ram) {
         Ram ramFactory = (Ram) comp.getFactory();
         InstanceState ramState = circState.getInstanceState(comp);
         MemContents m = ramFactory.getContents(ramState);
         HexFile.open(m, loadFile);
-        found = true;
+        found++;
       }
     }
 
     for (CircuitState sub : circState.getSubstates()) {
-      found |= loadRam(sub, loadFile);
+      found += loadRam(sub, loadFile);
     }
     return found;
   }
@@ -297,6 +359,12 @@ public class TtyInterface {
   }
 
   public static void run(Startup args) {
+    if (args.getTestBatchFormat() != null) {
+      System.exit(TestBatch.doTestBatch(args.getFilesToOpen(),
+            args.getCircuitToTest(), args.getSubstitutions(),
+            args.getTestBatchFormat(), args.getTestThreads()));
+      return;
+    }
     File fileToOpen = args.getFilesToOpen().get(0);
     Loader loader = new Loader(null);
     LogisimFile.FileWithSimulations file;
@@ -312,6 +380,11 @@ public class TtyInterface {
       return;
     }
 
+    if (args.getServerPort() >= 0) {
+      System.exit(SimServer.run(file, args.getCircuitToTest(), args.getServerPort()));
+      return;
+    }
+
     int ret = 0;
     if (args.headlessList) {
       ret = doList(file);
@@ -321,7 +394,8 @@ public class TtyInterface {
     }
     if (ret == 0 && args.headlessTty) {
       ret = doTty(args.getTtyFormat(), args.getLoadFile(), file, args.getCircuitToTest(),
-          args.getTtyRandomHead(), args.getTtyRandomBody(), args.getTtyRandomTail());
+          args.getTtyRandomHead(), args.getTtyRandomBody(), args.getTtyRandomTail(),
+          args.getRestoreFile(), args.getCheckpointFile(), args.getCheckpointTicks());
     }
     System.exit(ret);
   }
@@ -363,7 +437,8 @@ public class TtyInterface {
   }
 
   static int doTty(int format, File loadfile, LogisimFile.FileWithSimulations file, String circuitToTest,
-      int head, int body, int tail) {
+      int head, int body, int tail,
+      File restoreFile, File checkpointFile, long checkpointTicks) {
     if ((format & FORMAT_STATISTICS) != 0) {
       format &= ~FORMAT_STATISTICS;
       displayStatistics(file.file);
@@ -371,6 +446,9 @@ public class TtyInterface {
     if (format == 0) { // no simulation remaining to perform, so just exit
       System.exit(0);
     }
+    // the value cache only counts its hits and misses when asked to
+    if ((format & FORMAT_SPEED) != 0)
+      Value.setCacheCounting(true);
 
     Project proj = new Project(file);
     Circuit circuit;
@@ -401,28 +479,80 @@ public class TtyInterface {
     }
 
     CircuitState circState = CircuitState.createRootState(proj, circuit);
+    if ((format & FORMAT_PROFILE) != 0)
+      circState.getPropagator().setProfiling(true);
     // we have to do our initial propagation before the simulation starts -
     // it's necessary to populate the circuit with substates.
     circState.getPropagator().propagate();
+    if (restoreFile != null) {
+      try {
+        Checkpoint.restore(circState, restoreFile);
+      } catch (IOException e) {
+        System.out.println(S.fmt("ttyRestoreError", e.getMessage()));
+        System.exit(-1);
+      }
+    }
     if (loadfile != null) {
       try {
-        boolean loaded = loadRam(circState, loadfile);
-        if (!loaded) {
+        long start = System.currentTimeMillis();
+        int loaded = loadRam(circState, loadfile);
+        if (loaded == 0) {
           System.out.println(S.get("loadNoRamError"));
           System.exit(-1);
         }
+        if ((format & FORMAT_SPEED) != 0)
+          displayLoadThroughput(loaded * loadfile.length(),
+              System.currentTimeMillis() - start);
       } catch (IOException e) {
         System.out.println(S.get("loadIoError") + ": " + e.toString());
         System.exit(-1);
       }
     }
-    int simCode = runSimulation(circState, outputPins, pinNames, haltPin, format);
+    int simCode = runSimulation(circState, outputPins, pinNames, haltPin, format,
+        checkpointFile, checkpointTicks);
     return simCode;
   }
 
   private static int runSimulation(CircuitState circState,
       ArrayList<Instance> outputPins, Map<Instance, String> pinNames,
-      Instance haltPin, int format) {
+      Instance haltPin, int format, File checkpointFile, long checkpointTicks) {
+    boolean showTable = (format & FORMAT_TABLE) != 0;
+    boolean showTty = (format & FORMAT_TTY) != 0;
+
+    // Unless the circuit is talking to the terminal through a TTY component,
+    // where the user expects to see each character right away, send all output
+    // through one large buffer. In records mode, stdout carries nothing but
+    // the binary table, so any other messages go to stderr instead.
+    PrintStream stdout = System.out;
+    BufferedOutputStream buffered = null;
+    if (!showTty) {
+      buffered = new BufferedOutputStream(
+          new FileOutputStream(FileDescriptor.out), 1 << 16);
+      if (showTable && (format & FORMAT_TABLE_RECORDS) != 0)
+        System.setOut(System.err);
+      else
+        System.setOut(new PrintStream(buffered, false));
+    }
+    try {
+      return simulate(circState, outputPins, pinNames, haltPin, format,
+          checkpointFile, checkpointTicks,
+          buffered != null ? buffered : System.out);
+    } finally {
+      System.out.flush();
+      if (buffered != null) {
+        try {
+          buffered.flush();
+        } catch (IOException e) {
+        }
+        System.setOut(stdout);
+      }
+    }
+  }
+
+  private static int simulate(CircuitState circState,
+      ArrayList<Instance> outputPins, Map<Instance, String> pinNames,
+      Instance haltPin, int format, File checkpointFile, long checkpointTicks,
+      OutputStream tableOut) {
     boolean showTable = (format & FORMAT_TABLE) != 0;
     boolean showSpeed = (format & FORMAT_SPEED) != 0;
     boolean showTty = (format & FORMAT_TTY) != 0;
@@ -449,36 +579,60 @@ public class TtyInterface {
     long tickCount = 0;
     long start = System.currentTimeMillis();
     boolean halted = false;
-    ArrayList<Value> prevOutputs = null;
-    ArrayList<String> headers = new ArrayList<String>();
-    ArrayList<String> formats = new ArrayList<String>();
     Propagator prop = circState.getPropagator();
-    boolean needTableHeader = true;
+    int n = outputPins.size() - (haltPin == null ? 0 : 1);
+    String[] headers = new String[n];
+    int[] widths = new int[n];
+    Instance[] pins = new Instance[n];
+    int k = 0;
     for (Instance pin : outputPins) {
       if (pin == haltPin)
         continue;
-      headers.add(pinNames.get(pin));
+      headers[k] = pinNames.get(pin);
+      widths[k] = pin.getAttributeValue(StdAttr.WIDTH).getWidth();
+      pins[k++] = pin;
+    }
+    // two buffers of output values, for this tick and the last, swapped after
+    // each tick rather than reallocated
+    Value[] curOutputs = new Value[n];
+    Value[] prevOutputs = new Value[n];
+    boolean first = true;
+    TableStream table = null;
+    if (showTable) {
+      try {
+        table = new TableStream(tableOut, format, headers, widths);
+      } catch (IOException e) {
+        System.out.println(S.fmt("ttyOutputError", e.getMessage()));
+        return -1;
+      }
     }
     while (true) {
-      ArrayList<Value> curOutputs = new ArrayList<Value>();
-      for (Instance pin : outputPins) {
-        InstanceState pinState = circState.getInstanceState(pin);
-        Value val = Pin.FACTORY.getValue(pinState);
-        if (pin == haltPin) {
-          halted |= val.equals(Value.TRUE);
-        } else if (showTable) {
-          curOutputs.add(val);
-        }
+      if (haltPin != null) {
+        InstanceState pinState = circState.getInstanceState(haltPin);
+        halted |= Pin.FACTORY.getValue(pinState).equals(Value.TRUE);
       }
       if (showTable) {
-        if (displayTableRow(needTableHeader, prevOutputs, curOutputs, headers, formats, format))
-          needTableHeader = false;
+        for (int i = 0; i < n; i++) {
+          InstanceState pinState = circState.getInstanceState(pins[i]);
+          curOutputs[i] = Pin.FACTORY.getValue(pinState);
+        }
+        try {
+          table.row(tickCount, first ? null : prevOutputs, curOutputs);
+        } catch (IOException e) {
+          System.out.println(S.fmt("ttyOutputError", e.getMessage()));
+          return -1;
+        }
+        first = false;
       }
 
       if (halted) {
         retCode = 0; // normal exit
         break;
       }
+      if (checkpointFile != null && checkpointTicks > 0 && tickCount >= checkpointTicks) {
+        retCode = 2; // stopped to save a checkpoint
+        break;
+      }
       if (prop.isOscillating()) {
         retCode = 1; // abnormal exit
         break;
@@ -491,7 +645,9 @@ public class TtyInterface {
           }
         }
       }
+      Value[] swap = prevOutputs;
       prevOutputs = curOutputs;
+      curOutputs = swap;
       tickCount++;
       prop.toggleClocks();
       prop.propagate();
@@ -499,16 +655,34 @@ public class TtyInterface {
     long elapse = System.currentTimeMillis() - start;
     if (showTty)
       ensureLineTerminated();
-    if (showHalt || retCode != 0) {
+    if (showHalt || retCode == 1) {
       if (retCode == 0) {
         System.out.println(S.get("ttyHaltReasonPin"));
       } else if (retCode == 1) {
         System.out.println(S.get("ttyHaltReasonOscillation"));
+      } else if (retCode == 2) {
+        System.out.println(S.get("ttyHaltReasonCheckpoint"));
+      }
+    }
+    if (checkpointFile != null && retCode != 1) {
+      try {
+        Checkpoint.save(circState, checkpointFile);
+      } catch (IOException e) {
+        System.out.println(S.fmt("ttyCheckpointError", e.getMessage()));
+        retCode = -1;
       }
+      if (retCode == 2)
+        retCode = 0;
     }
     if (showSpeed) {
       displaySpeed(tickCount, elapse);
+      if (table != null)
+        displayThroughput(table.getRowCount(), table.getByteCount(), elapse);
+      displayPropagationStats(prop);
+      displayMemoryStats(circState);
     }
+    if ((format & FORMAT_PROFILE) != 0)
+      prop.getProfile().writeCsv(System.out);
     return retCode;
   }
 
@@ -704,6 +878,9 @@ public class TtyInterface {
   public static final int FORMAT_TABLE_BIN = 128;
   public static final int FORMAT_TABLE_HEX = 256;
   public static final int FORMAT_RANDOMIZE = 256;
+  public static final int FORMAT_PROFILE = 512;
+  public static final int FORMAT_TABLE_DELTA = 1024;
+  public static final int FORMAT_TABLE_RECORDS = 2048;
 
   private static boolean lastIsNewline = true;
 }
@@ -0,0 +1,391 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.gui.test;
+import static com.cburch.logisim.gui.test.Strings.S;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.cburch.logisim.circuit.Circuit;
+import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.data.FailException;
+import com.cburch.logisim.data.TestException;
+import com.cburch.logisim.data.TestVector;
+import com.cburch.logisim.file.LoadCanceledByUser;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.proj.Project;
+
+// Runs many circuit/test-vector pairs concurrently within a single JVM, for
+// command-line grading and regression. Each job gets its own Loader, Project,
+// and root CircuitState, so jobs share nothing but the (immutable) component
+// libraries. Loading is serialized, since the library manager and file
+// readers are not thread safe, but simulation runs fully in parallel. A
+// summary of all jobs is written to stdout as either JSON or JUnit XML.
+//
+// Jobs are given on the command line either as pairs, "foo.circ foo.txt", or
+// in a manifest file with one job per line: "circfile vectorfile [circuit]".
+// Relative paths in a manifest are resolved against the manifest's directory,
+// and anything following a '#' is a comment.
+public class TestBatch {
+
+  public static final String FORMAT_JSON = "json";
+  public static final String FORMAT_JUNIT = "junit";
+
+  private static final Object loadLock = new Object();
+
+  private static class Failure {
+    int row;
+    String message;
+
+    Failure(int row, String message) {
+      this.row = row;
+      this.message = message;
+    }
+  }
+
+  private static class Job {
+    File circFile, vectorFile;
+    String circuitName;
+    int numPass, numFail;
+    String error;
+    long nanos;
+    ArrayList<Failure> failures = new ArrayList<>();
+
+    Job(File circFile, File vectorFile, String circuitName) {
+      this.circFile = circFile;
+      this.vectorFile = vectorFile;
+      this.circuitName = circuitName;
+    }
+
+    String getName() {
+      return circFile.getPath() + ":" + vectorFile.getPath();
+    }
+
+    boolean passed() {
+      return error == null && numFail == 0;
+    }
+
+    void run(Map<String, String> substitutions) {
+      long start = System.nanoTime();
+      try {
+        test(substitutions);
+      } catch (Throwable e) {
+        // including errors, e.g. a StackOverflowError from deep propagation,
+        // which must fail this job rather than the whole batch
+        error = e.getMessage() != null ? e.getMessage() : e.toString();
+      } finally {
+        nanos = System.nanoTime() - start;
+      }
+    }
+
+    private void test(Map<String, String> substitutions) throws Exception {
+      Project proj;
+      Circuit circuit;
+      synchronized (loadLock) {
+        LogisimFile.FileWithSimulations file;
+        try {
+          file = new Loader(null).openLogisimFile(circFile, substitutions);
+        } catch (LoadCanceledByUser e) {
+          throw new TestException(S.fmt("testBatchLoadFailed", circFile.getPath()));
+        }
+        if (circuitName == null)
+          circuit = file.file.getMainCircuit();
+        else
+          circuit = file.file.getCircuit(circuitName);
+        if (circuit == null)
+          throw new TestException(S.fmt("testBatchNoCircuit", circuitName));
+        circuitName = circuit.getName();
+        proj = new Project(file);
+      }
+
+      TestVector vec;
+      try {
+        vec = new TestVector(vectorFile);
+      } catch (IOException e) {
+        throw new TestException(S.fmt("testLoadingFailed", e.getMessage()));
+      }
+
+      TestThread tester = new TestThread(proj, circuit, vec);
+      CircuitState state = CircuitState.createRootState(proj, circuit);
+      for (int i = 0; i < vec.data.size(); i++) {
+        try {
+          tester.test(state, i);
+          numPass++;
+        } catch (FailException e) {
+          StringBuilder msg = new StringBuilder();
+          for (; e != null; e = e.getMore()) {
+            if (msg.length() > 0)
+              msg.append("; ");
+            msg.append(e.getMessage());
+          }
+          failures.add(new Failure(i + 1, msg.toString()));
+          numFail++;
+        } catch (TestException e) {
+          failures.add(new Failure(i + 1, e.getMessage()));
+          numFail++;
+        }
+      }
+    }
+  }
+
+  // used only for automated testing via command line arguments
+  public static int doTestBatch(List<File> files, String circuitName,
+      Map<String, String> substitutions, String format, int threads) {
+    ArrayList<Job> jobs = new ArrayList<>();
+    try {
+      for (int i = 0; i < files.size(); i++) {
+        File f = files.get(i);
+        if (f.getName().toLowerCase().endsWith(".circ")) {
+          if (i + 1 >= files.size())
+            throw new IOException(S.fmt("testBatchMissingVector", f.getPath()));
+          jobs.add(new Job(f, files.get(++i), circuitName));
+        } else {
+          readManifest(f, jobs);
+        }
+      }
+    } catch (IOException e) {
+      System.err.println(e.getMessage());
+      return 1;
+    }
+
+    if (threads <= 0)
+      threads = Runtime.getRuntime().availableProcessors();
+    threads = Math.max(1, Math.min(threads, jobs.size()));
+    AtomicInteger count = new AtomicInteger();
+    ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+      Thread t = new Thread(r, "TestBatch-" + count.incrementAndGet());
+      t.setDaemon(true);
+      return t;
+    });
+
+    long start = System.nanoTime();
+    ArrayList<Future<?>> pending = new ArrayList<>();
+    for (Job job : jobs)
+      pending.add(pool.submit(() -> job.run(substitutions)));
+    for (int i = 0; i < pending.size(); i++) {
+      try {
+        pending.get(i).get();
+      } catch (InterruptedException | ExecutionException e) {
+        // Job.run() catches everything, so this should not happen, but if
+        // it does, the job must still count as failed
+        Job job = jobs.get(i);
+        if (job.error == null)
+          job.error = e.getCause() != null ? e.getCause().toString() : e.toString();
+      }
+    }
+    pool.shutdown();
+    long nanos = System.nanoTime() - start;
+
+    if (format.equals(FORMAT_JUNIT))
+      writeJUnit(System.out, jobs, nanos);
+    else
+      writeJson(System.out, jobs, nanos);
+    System.out.flush();
+
+    for (Job job : jobs)
+      if (!job.passed())
+        return 1;
+    return 0;
+  }
+
+  private static void readManifest(File manifest, ArrayList<Job> jobs)
+      throws IOException {
+    File dir = manifest.getAbsoluteFile().getParentFile();
+    try (BufferedReader in = new BufferedReader(new FileReader(manifest))) {
+      int lineno = 0;
+      for (String line = in.readLine(); line != null; line = in.readLine()) {
+        lineno++;
+        int i = line.indexOf('#');
+        if (i >= 0)
+          line = line.substring(0, i);
+        line = line.trim();
+        if (line.isEmpty())
+          continue;
+        String[] tok = line.split("\\s+");
+        if (tok.length < 2 || tok.length > 3)
+          throw new IOException(S.fmt("testBatchManifestError",
+                manifest.getPath(), Integer.toString(lineno)));
+        jobs.add(new Job(resolve(dir, tok[0]), resolve(dir, tok[1]),
+              tok.length > 2 ? tok[2] : null));
+      }
+    }
+  }
+
+  private static File resolve(File dir, String path) {
+    File f = new File(path);
+    return f.isAbsolute() ? f : new File(dir, path);
+  }
+
+  private static String seconds(long nanos) {
+    return String.format(Locale.ROOT, "%.3f", nanos / 1e9);
+  }
+
+  private static void writeJson(PrintStream out, ArrayList<Job> jobs, long nanos) {
+    int passed = 0, failed = 0, errors = 0;
+    for (Job job : jobs) {
+      if (job.error != null)
+        errors++;
+      else if (job.numFail > 0)
+        failed++;
+      else
+        passed++;
+    }
+    out.println("{");
+    out.println("  \"jobs\": " + jobs.size() + ",");
+    out.println("  \"passed\": " + passed + ",");
+    out.println("  \"failed\": " + failed + ",");
+    out.println("  \"errors\": " + errors + ",");
+    out.println("  \"seconds\": " + seconds(nanos) + ",");
+    out.println("  \"results\": [");
+    for (int i = 0; i < jobs.size(); i++) {
+      Job job = jobs.get(i);
+      out.println("    {");
+      out.println("      \"circuitFile\": " + jsonString(job.circFile.getPath()) + ",");
+      out.println("      \"vectorFile\": " + jsonString(job.vectorFile.getPath()) + ",");
+      out.println("      \"circuit\": " + jsonString(job.circuitName) + ",");
+      out.println("      \"passed\": " + job.numPass + ",");
+      out.println("      \"failed\": " + job.numFail + ",");
+      out.println("      \"error\": " + jsonString(job.error) + ",");
+      out.println("      \"seconds\": " + seconds(job.nanos) + ",");
+      out.print("      \"failures\": [");
+      for (int j = 0; j < job.failures.size(); j++) {
+        Failure f = job.failures.get(j);
+        out.print(j == 0 ? "\n" : ",\n");
+        out.print("        { \"vector\": " + f.row
+            + ", \"message\": " + jsonString(f.message) + " }");
+      }
+      out.println(job.failures.isEmpty() ? "]" : "\n      ]");
+      out.println(i == jobs.size() - 1 ? "    }" : "    },");
+    }
+    out.println("  ]");
+    out.println("}");
+  }
+
+  private static String jsonString(String s) {
+    if (s == null)
+      return "null";
+    StringBuilder b = new StringBuilder("\"");
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"' || c == '\\')
+        b.append('\\').append(c);
+      else if (c == '\n')
+        b.append("\\n");
+      else if (c == '\t')
+        b.append("\\t");
+      else if (c < 0x20)
+        b.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+      else
+        b.append(c);
+    }
+    return b.append('"').toString();
+  }
+
+  // One testsuite per job and one testcase per test vector row, which is the
+  // granularity CI dashboards expect. A job that could not be run at all
+  // (missing circuit, unreadable vector, etc.) is reported as a single error.
+  private static void writeJUnit(PrintStream out, ArrayList<Job> jobs, long nanos) {
+    int tests = 0, failures = 0, errors = 0;
+    for (Job job : jobs) {
+      tests += job.error != null ? 1 : job.numPass + job.numFail;
+      failures += job.numFail;
+      errors += job.error != null ? 1 : 0;
+    }
+    out.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+    out.println("<testsuites tests=\"" + tests + "\" failures=\"" + failures
+        + "\" errors=\"" + errors + "\" time=\"" + seconds(nanos) + "\">");
+    for (Job job : jobs) {
+      String name = xmlString(job.getName());
+      String classname = xmlString(job.circuitName != null ? job.circuitName
+          : job.circFile.getName());
+      if (job.error != null) {
+        out.println("  <testsuite name=\"" + name + "\" tests=\"1\" failures=\"0\""
+            + " errors=\"1\" time=\"" + seconds(job.nanos) + "\">");
+        out.println("    <testcase name=\"load\" classname=\"" + classname + "\">");
+        out.println("      <error message=\"" + xmlString(job.error) + "\"/>");
+        out.println("    </testcase>");
+        out.println("  </testsuite>");
+        continue;
+      }
+      int n = job.numPass + job.numFail;
+      out.println("  <testsuite name=\"" + name + "\" tests=\"" + n
+          + "\" failures=\"" + job.numFail + "\" errors=\"0\" time=\""
+          + seconds(job.nanos) + "\">");
+      int next = 0;
+      for (int row = 1; row <= n; row++) {
+        out.print("    <testcase name=\"vector " + row + "\" classname=\"" + classname + "\"");
+        if (next < job.failures.size() && job.failures.get(next).row == row) {
+          out.println(">");
+          out.println("      <failure message=\""
+              + xmlString(job.failures.get(next).message) + "\"/>");
+          out.println("    </testcase>");
+          next++;
+        } else {
+          out.println("/>");
+        }
+      }
+      out.println("  </testsuite>");
+    }
+    out.println("</testsuites>");
+  }
+
+  private static String xmlString(String s) {
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+      case '<': b.append("&lt;"); break;
+      case '>': b.append("&gt;"); break;
+      case '&': b.append("&amp;"); break;
+      case '"': b.append("&quot;"); break;
+      case '\n': b.append("&#10;"); break;
+      default:
+        if (c >= 0x20 || c == '\t')
+          b.append(c);
+      }
+    }
+    return b.toString();
+  }
+
+}
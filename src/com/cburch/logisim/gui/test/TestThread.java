@@ -36,11 +36,16 @@
 package com.cburch.logisim.gui.test;
 import static com.cburch.logisim.gui.test.Strings.S;
 
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.cburch.logisim.circuit.Circuit;
 import com.cburch.logisim.circuit.CircuitEvent;
 import com.cburch.logisim.circuit.CircuitListener;
 import com.cburch.logisim.circuit.CircuitState;
+import com.cburch.logisim.circuit.SubcircuitFactory;
 import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.ComponentFactory;
 import com.cburch.logisim.data.FailException;
 import com.cburch.logisim.data.TestException;
 import com.cburch.logisim.data.TestVector;
@@ -106,7 +111,7 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   private TestVector vector;
   private Model model;
 
-  private boolean canceled = false, paused = false;
+  private volatile boolean canceled = false, paused = false;
 
   public TestThread(Model model) throws TestException {
     super("TestThread-Model");
@@ -122,7 +127,7 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   }
 
   // used only for automated testing via command line arguments
-  private TestThread(Project proj, Circuit circuit, TestVector vec)
+  TestThread(Project proj, Circuit circuit, TestVector vec)
       throws TestException {
     super("TestThread-Project");
     this.project = proj;
@@ -175,26 +180,125 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
   }
 
   public void run() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    try {
+      if (threads > 1 && vector.data.size() >= 2 * CHUNK
+          && !keepsStateAcrossReset(circuit, new HashSet<>()))
+        runParallel(threads);
+      else
+        runSequential();
+    } finally {
+      model.stop();
+    }
+  }
+
+  // Returns false if the test was canceled while paused.
+  private boolean waitWhilePaused() {
+    while (paused) {
+      if (canceled)
+        return false;
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException e) {
+      }
+    }
+    return true;
+  }
+
+  private void runSequential() {
+    for (int i = 0; i < vector.data.size() && !canceled; i++) {
+      if (!waitWhilePaused())
+        return;
+      try {
+        test(i);
+        canceled = canceled || !model.setResult(vector, i, null);
+      } catch (TestException e) {
+        canceled = canceled || !model.setResult(vector, i, e);
+      }
+      Thread.yield();
+    }
+  }
+
+  // Rows are independent of one another, since Circuit.doTestVector() resets
+  // the state before applying each one, unless something in the hierarchy
+  // keeps its state across a reset (a non-volatile RAM, say), in which case
+  // each row sees what the ones before it left behind, and the rows are run
+  // one after another. Otherwise, the rows are handed out in chunks to worker
+  // threads, each testing against a fresh root state of its own, and this
+  // thread passes the results on to the model in row order as each chunk
+  // completes. The project's own state is not touched, nor even read, since
+  // the simulator may be changing it meanwhile.
+  private static final int CHUNK = 64;
+
+  private static boolean keepsStateAcrossReset(Circuit circ,
+      HashSet<Circuit> seen) {
+    if (!seen.add(circ))
+      return false;
+    for (Component comp : circ.getNonWires()) {
+      ComponentFactory factory = comp.getFactory();
+      if (factory.getNonVolatileSimulationState(comp, null) != null)
+        return true;
+      if (factory instanceof SubcircuitFactory
+          && keepsStateAcrossReset(((SubcircuitFactory) factory).getSubcircuit(), seen))
+        return true;
+    }
+    return false;
+  }
+
+  private void runParallel(int threads) {
+    int n = vector.data.size();
+    int numChunks = (n + CHUNK - 1) / CHUNK;
+    TestException[] results = new TestException[n];
+    boolean[] chunkDone = new boolean[numChunks];
+    AtomicInteger nextChunk = new AtomicInteger();
+
+    Thread[] workers = new Thread[Math.min(threads, numChunks)];
+    for (int w = 0; w < workers.length; w++) {
+      CircuitState state = CircuitState.createRootState(project, circuit);
+      workers[w] = new UniquelyNamedThread(() -> {
+        for (int c = nextChunk.getAndIncrement(); c < numChunks && !canceled;
+            c = nextChunk.getAndIncrement()) {
+          if (!waitWhilePaused())
+            break;
+          for (int i = c * CHUNK; i < Math.min(n, (c + 1) * CHUNK); i++) {
+            try {
+              test(state, i);
+            } catch (TestException e) {
+              results[i] = e;
+            } catch (RuntimeException e) {
+              results[i] = new TestException(e.toString());
+            }
+          }
+          synchronized (chunkDone) {
+            chunkDone[c] = true;
+            chunkDone.notifyAll();
+          }
+        }
+      }, "TestThread-Worker");
+      workers[w].start();
+    }
+
     try {
-      for (int i = 0; i < vector.data.size() && !canceled; i++) {
-        while (paused) {
-          if (canceled)
-            return;
-          try {
-            Thread.sleep(1000);
-          } catch (InterruptedException e) {
+      for (int c = 0; c < numChunks && !canceled; c++) {
+        synchronized (chunkDone) {
+          while (!chunkDone[c] && !canceled) {
+            try {
+              chunkDone.wait(100);
+            } catch (InterruptedException e) {
+            }
           }
         }
+        for (int i = c * CHUNK; i < Math.min(n, (c + 1) * CHUNK) && !canceled; i++)
+          canceled = !model.setResult(vector, i, results[i]);
+      }
+    } finally {
+      canceled = true;
+      for (Thread worker : workers) {
         try {
-          test(i);
-          canceled = canceled || !model.setResult(vector, i, null);
-        } catch (TestException e) {
-          canceled = canceled || !model.setResult(vector, i, e);
+          worker.join();
+        } catch (InterruptedException e) {
         }
-        Thread.yield();
       }
-    } finally {
-      model.stop();
     }
   }
 
@@ -206,4 +310,9 @@ public class TestThread extends UniquelyNamedThread implements CircuitListener {
     circuit.doTestVector(project, pin, vector.data.get(idx));
   }
 
+  // used by TestBatch, where each job tests against its own root state
+  void test(CircuitState state, int idx) throws TestException {
+    circuit.doTestVector(state, pin, vector.data.get(idx));
+  }
+
 }
@@ -30,7 +30,14 @@
 
 package com.cburch.logisim.instance;
 
-public class InstanceDataSingleton implements InstanceData, Cloneable {
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.cburch.logisim.comp.Checkpointable;
+import com.cburch.logisim.data.Value;
+
+public class InstanceDataSingleton implements InstanceData, Cloneable, Checkpointable {
   private Object value;
 
   public InstanceDataSingleton(Object value) {
@@ -46,6 +53,18 @@ public class InstanceDataSingleton implements InstanceData, Cloneable {
     }
   }
 
+  // Only a Value is saved in a checkpoint; anything else is left as is.
+  public void writeCheckpoint(DataOutput out) throws IOException {
+    out.writeBoolean(value instanceof Value);
+    if (value instanceof Value)
+      ((Value) value).write(out);
+  }
+
+  public void readCheckpoint(DataInput in) throws IOException {
+    if (in.readBoolean())
+      value = Value.read(in);
+  }
+
   public Object getValue() {
     return value;
   }
@@ -297,6 +297,16 @@ public abstract class InstanceFactory extends AbstractComponentFactory {
 
   public abstract void propagate(InstanceState state);
 
+  /**
+   * Returns the index of the port that clocks this component's internal
+   * state, as for registers and flip-flops, or -1 if there is no such port.
+   * The compiled simulation mode uses this to break feedback paths at
+   * clocked components.
+   */
+  public int getClockPort(Instance instance) {
+    return -1;
+  }
+
   public void setAttributes(Attribute<?>[] attrs, Object[] defaults) {
     this.attrs = attrs;
     this.defaults = defaults;
@@ -55,13 +55,17 @@ public class Adder extends InstanceFactory {
     if (c_in == Value.UNKNOWN || c_in == Value.NIL)
       c_in = Value.FALSE;
     if (a.isFullyDefined() && b.isFullyDefined() && c_in.isFullyDefined()) {
-      if (w >= 32) {
-        long mask = (1L << w) - 1;
-        long ax = (long) a.toIntValue() & mask;
-        long bx = (long) b.toIntValue() & mask;
-        long cx = (long) c_in.toIntValue() & mask;
-        long sum = ax + bx + cx;
-        return new Value[] { Value.createKnown(width, (int) sum),
+      if (w == 64) {
+        long ax = a.toLongValue();
+        long bx = b.toLongValue();
+        long sum = ax + bx + c_in.toLongValue();
+        // carry out of the top bit, since there is no room for it in a long
+        long carry = ((ax & bx) | ((ax ^ bx) & ~sum)) >>> 63;
+        return new Value[] { Value.createKnown(width, sum),
+          carry == 0 ? Value.FALSE : Value.TRUE };
+      } else if (w >= 32) {
+        long sum = a.toLongValue() + b.toLongValue() + c_in.toLongValue();
+        return new Value[] { Value.createKnown(width, sum),
           ((sum >> w) & 1) == 0 ? Value.FALSE : Value.TRUE };
       } else {
         int sum = a.toIntValue() + b.toIntValue() + c_in.toIntValue();
@@ -35,6 +35,9 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.event.MouseEvent;
 import java.awt.event.KeyEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.data.Attribute;
@@ -147,6 +150,18 @@ abstract class AbstractFlipFlop extends InstanceFactory {
 
   private static class StateData extends ClockState implements InstanceData {
     Value curValue = Value.FALSE;
+
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+      super.writeCheckpoint(out);
+      curValue.write(out);
+    }
+
+    @Override
+    public void readCheckpoint(DataInput in) throws IOException {
+      super.readCheckpoint(in);
+      curValue = Value.read(in);
+    }
   }
 
   private static final int STD_PORTS = 5; // or 6, with enable
@@ -375,6 +390,11 @@ abstract class AbstractFlipFlop extends InstanceFactory {
     painter.drawPort(n + 2);
   }
 
+  @Override
+  public int getClockPort(Instance instance) {
+    return numInputs;
+  }
+
   @Override
   public void propagate(InstanceState state) {
     // boolean changed = false;
@@ -30,10 +30,15 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.cburch.logisim.comp.Checkpointable;
 import com.cburch.logisim.data.Value;
 import com.cburch.logisim.instance.StdAttr;
 
-class ClockState implements Cloneable {
+class ClockState implements Cloneable, Checkpointable {
   private Value lastClock;
 
   public ClockState() {
@@ -49,6 +54,14 @@ class ClockState implements Cloneable {
     }
   }
 
+  public void writeCheckpoint(DataOutput out) throws IOException {
+    lastClock.write(out);
+  }
+
+  public void readCheckpoint(DataInput in) throws IOException {
+    lastClock = Value.read(in);
+  }
+
   public boolean updateClock(Value newClock, Object trigger) {
     Value oldClock = lastClock;
     lastClock = newClock;
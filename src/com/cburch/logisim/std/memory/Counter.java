@@ -74,7 +74,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
 
   static final AttributeOption ON_GOAL_LOAD = new AttributeOption("load",
       "load", S.getter("counterGoalLoad"));
-  static final Attribute<Integer> ATTR_MAX = Attributes.forHexInteger("max",
+  static final Attribute<Long> ATTR_MAX = Attributes.forHexLong("max",
       S.getter("counterMaxAttr"));
 
   static final Attribute<AttributeOption> ATTR_ON_GOAL = Attributes
@@ -177,14 +177,14 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     painter.drawClockSymbol(xpos + 20, ypos + 80);
     painter.drawClockSymbol(xpos + 20, ypos + 90);
     /* Draw Label */
-    int max = painter.getAttributeValue(ATTR_MAX).intValue();
+    long max = painter.getAttributeValue(ATTR_MAX).longValue();
     boolean IsCTRm = (max == painter.getAttributeValue(StdAttr.WIDTH)
-        .getMask());
+        .getLongMask());
     Object onGoal = painter.getAttributeValue(ATTR_ON_GOAL);
     IsCTRm |= onGoal == ON_GOAL_CONT;
     String Label = (IsCTRm) ? "CTR"
         + Integer.toString(painter.getAttributeValue(StdAttr.WIDTH)
-            .getWidth()) : "CTR DIV0x" + Integer.toHexString(max);
+            .getWidth()) : "CTR DIV0x" + Long.toHexString(max);
     GraphicsUtil.drawCenteredText(g, Label, xpos + (SymbolWidth(width) / 2)
         + 20, ypos + 5);
     GraphicsUtil.switchToWidth(g, 2);
@@ -246,8 +246,8 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
         + SymbolWidth(width), ypos + 60);
     g.fillOval(xpos + 32 + SymbolWidth(width), ypos + 47, 6, 6);
     String MaxVal = "3CT=0x"
-        + Integer.toHexString(
-            painter.getAttributeValue(ATTR_MAX).intValue())
+        + Long.toHexString(
+            painter.getAttributeValue(ATTR_MAX).longValue())
         .toUpperCase();
     GraphicsUtil.drawText(g, MaxVal, xpos + 17 + SymbolWidth(width),
         ypos + 50, GraphicsUtil.H_RIGHT, GraphicsUtil.V_CENTER);
@@ -260,7 +260,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
       int len = (width + 3) / 4;
       int xcenter = SymbolWidth(width) - 25;
       RegisterData state = (RegisterData) painter.getData();
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       String Value = StringUtil.toHexString(width, val).toUpperCase();
       g.setColor(Color.LIGHT_GRAY);
       g.fillRect(xpos + xcenter - len * 4, ypos + 22, len * 8, 16);
@@ -334,11 +334,11 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     if (painter.getShowState()) {
       /* Here we draw the bit value */
       RegisterData state = (RegisterData) painter.getData();
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
       int width = widthVal == null ? 8 : widthVal.getWidth();
       int xcenter = (SymbolWidth(width) / 2) + 10;
-      int value = ((1 << BitNr) & val) != 0 ? 1 : 0;
+      int value = ((1L << BitNr) & val) != 0 ? 1 : 0;
       g.setColor(Color.LIGHT_GRAY);
       g.fillRect(xpos + xcenter + 16, RealYpos + 4, 8, 16);
       g.setColor(Color.BLACK);
@@ -360,6 +360,9 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
 
   @Override
   public HDLSupport getHDLSupport(HDLSupport.ComponentContext ctx) {
+    // The MaxVal generic is an HDL integer, so wider counters can't be exported.
+    if (ctx.attrs.getValue(StdAttr.WIDTH).getWidth() > 32)
+      return null;
     return new CounterHDLGenerator(ctx);
   }
 
@@ -385,7 +388,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     String a;
     String b = null;
     if (painter.getShowState()) {
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       String str = StringUtil.toHexString(width, val);
       if (str.length() <= 4) {
         a = str;
@@ -453,6 +456,11 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
     }
   }
 
+  @Override
+  public int getClockPort(Instance instance) {
+    return CK;
+  }
+
   @Override
   public void propagate(InstanceState state) {
     RegisterData data = (RegisterData) state.getData();
@@ -463,7 +471,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
 
     BitWidth dataWidth = state.getAttributeValue(StdAttr.WIDTH);
     Object triggerType = state.getAttributeValue(StdAttr.EDGE_TRIGGER);
-    int max = state.getAttributeValue(ATTR_MAX).intValue();
+    long max = state.getAttributeValue(ATTR_MAX).longValue();
     Value clock = state.getPortValue(CK);
     boolean triggered = data.updateClock(clock, triggerType);
 
@@ -476,17 +484,17 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
       boolean ld = state.getPortValue(LD) == Value.TRUE;
       boolean en = state.getPortValue(EN) != Value.FALSE;
       boolean UpCount = state.getPortValue(UD) != Value.FALSE;
-      int oldVal = data.value;
-      int newVal;
+      long oldVal = data.value;
+      long newVal;
       if (!triggered) {
         newVal = oldVal;
       } else if (ld) {
         Value in = state.getPortValue(IN);
-        newVal = in.isFullyDefined() ? in.toIntValue() : 0;
-        if (newVal > max)
+        newVal = in.isFullyDefined() ? in.toLongValue() : 0;
+        if (Long.compareUnsigned(newVal, max) > 0)
           newVal &= max;
       } else if (en) {
-        int goal = (UpCount) ? max : 0;
+        long goal = (UpCount) ? max : 0;
         if (oldVal == goal) {
           Object onGoal = state.getAttributeValue(ATTR_ON_GOAL);
           if (onGoal == ON_GOAL_WRAP) {
@@ -495,8 +503,8 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
             newVal = oldVal;
           } else if (onGoal == ON_GOAL_LOAD) {
             Value in = state.getPortValue(IN);
-            newVal = in.isFullyDefined() ? in.toIntValue() : 0;
-            if (newVal > max)
+            newVal = in.isFullyDefined() ? in.toLongValue() : 0;
+            if (Long.compareUnsigned(newVal, max) > 0)
               newVal &= max;
           } else if (onGoal == ON_GOAL_CONT) {
             newVal = (UpCount) ? oldVal + 1 : oldVal - 1;
@@ -511,7 +519,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
         newVal = oldVal;
       }
       newValue = Value.createKnown(dataWidth, newVal);
-      newVal = newValue.toIntValue();
+      newVal = newValue.toLongValue();
       carry = newVal == (UpCount ? max : 0);
       /*
        * I would want this if I were worried about the carry signal
@@ -522,7 +530,7 @@ public class Counter extends InstanceFactory implements DynamicElementProvider {
        */
     }
 
-    data.value = newValue.toIntValue();
+    data.value = newValue.toLongValue();
     state.setPort(OUT, newValue, DELAY);
     state.setPort(CARRY, carry ? Value.TRUE : Value.FALSE, DELAY);
   }
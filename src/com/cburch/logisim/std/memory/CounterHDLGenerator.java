@@ -37,7 +37,7 @@ public class CounterHDLGenerator extends HDLGenerator {
   public CounterHDLGenerator(ComponentContext ctx) {
     super(ctx, "memory", "Counter", "i_Ctr");
     parameters.add("BitWidth", stdWidth());
-    parameters.add("MaxVal", _attrs.getValue(Counter.ATTR_MAX));
+    parameters.add("MaxVal", _attrs.getValue(Counter.ATTR_MAX).intValue());
     parameters.add("Mode", mode());
 
     inPorts.add("LoadData", "BitWidth", Counter.IN, false);
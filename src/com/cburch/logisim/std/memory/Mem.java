@@ -32,6 +32,7 @@ import static com.cburch.logisim.std.Strings.S;
 
 import java.awt.Graphics;
 import java.io.File;
+import java.io.IOException;
 import java.util.WeakHashMap;
 
 import com.cburch.hex.HexModel;
@@ -98,7 +99,18 @@ public abstract class Mem extends InstanceFactory {
       "addrWidth", S.getter("ramAddrWidthAttr"), 2, 24);
 
   public static final Attribute<BitWidth> DATA_ATTR = Attributes.forBitWidth(
-      "dataWidth", S.getter("ramDataWidthAttr"));
+      "dataWidth", S.getter("ramDataWidthAttr"), 1, 32);
+
+  // A raw binary file to map as the initial contents (see MemContents.map).
+  public static final Attribute<String> IMAGE_ATTR = Attributes.forString(
+      "image", S.getter("memImageAttr"));
+  static final AttributeOption IMAGE_COPY_ON_WRITE = new AttributeOption(
+      "copyonwrite", S.getter("memImageCopyOnWrite"));
+  static final AttributeOption IMAGE_WRITE_THROUGH = new AttributeOption(
+      "writethrough", S.getter("memImageWriteThrough"));
+  public static final Attribute<AttributeOption> IMAGE_MODE_ATTR = Attributes.forOption(
+      "imageMode", S.getter("memImageModeAttr"), new AttributeOption[] {
+        IMAGE_COPY_ON_WRITE, IMAGE_WRITE_THROUGH });
   // port-related constants
   static final int DATA = 0;
   static final int ADDR = 1;
@@ -113,7 +125,7 @@ public abstract class Mem extends InstanceFactory {
     currentInstanceFiles = new WeakHashMap<Instance, File>();
     setInstancePoker(MemPoker.class);
     setKeyConfigurator(JoinedConfigurator.create(new BitWidthConfigurator(
-            ADDR_ATTR, 2, 24, 0), new BitWidthConfigurator(DATA_ATTR)));
+            ADDR_ATTR, 2, 24, 0), new BitWidthConfigurator(DATA_ATTR, 1, 32)));
 
     setOffsetBounds(Bounds.create(-140, -40, 140, 80));
   }
@@ -204,10 +216,50 @@ public abstract class Mem extends InstanceFactory {
     return Integer.toString(size) + Labels[pass];
   }
 
+  // Returns contents mapped from the image file named by the attributes, or
+  // null if there is none, or if it can't be mapped. A relative name is
+  // resolved against the project file's directory, as the loader does for
+  // library references.
+  static MemContents mapImage(AttributeSet attrs, Project proj) {
+    String path = attrs.getValue(IMAGE_ATTR);
+    if (path == null || path.length() == 0)
+      return null;
+    int addrBits = attrs.getValue(ADDR_ATTR).getWidth();
+    int dataBits = attrs.getValue(DATA_ATTR).getWidth();
+    boolean writeThrough = attrs.getValue(IMAGE_MODE_ATTR) == IMAGE_WRITE_THROUGH;
+    try {
+      return MemContents.map(imageFile(path, proj), addrBits, dataBits, writeThrough);
+    } catch (IOException e) {
+      System.err.println(S.fmt("memImageError", path, e.getMessage()));
+      return null;
+    }
+  }
+
+  private static File imageFile(String path, Project proj) {
+    File file = new File(path);
+    if (file.isAbsolute() || proj == null)
+      return file;
+    File dir = proj.getLogisimFile().getLoader().getCurrentDirectory();
+    return dir == null ? file : new File(dir, path);
+  }
+
   abstract MemState getState(Instance instance, CircuitState state);
 
   abstract MemState getState(InstanceState state);
 
+  public MemContents getContents(InstanceState state) {
+    return getState(state).getContents();
+  }
+
+  // Returns the access trace for the memory, or null if it isn't traced.
+  public MemTrace getTrace(InstanceState state) {
+    return getState(state).getTrace();
+  }
+
+  public void setTrace(InstanceState state, MemTrace trace) {
+    getState(state).setTrace(trace);
+  }
+
   @Override
   public abstract void propagate(InstanceState state);
 
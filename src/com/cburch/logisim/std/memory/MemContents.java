@@ -30,7 +30,21 @@
 
 package com.cburch.logisim.std.memory;
 
+import static com.cburch.logisim.std.Strings.S;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.swing.SwingUtilities;
 
 import com.cburch.hex.HexModel;
 import com.cburch.hex.HexModelListener;
@@ -41,6 +55,26 @@ public class MemContents implements Cloneable, HexModel {
     return new MemContents(addrBits, width);
   }
 
+  // Creates memory backed by a raw binary image file, which is mapped into
+  // memory rather than read. Each word takes (width+7)/8 bytes, big-endian,
+  // which for byte-sized words is the same as HexFile's "Binary big-endian"
+  // format. Pages are only faulted in as they are touched, so even the
+  // largest images load instantly and cost next to no heap. Writes go either
+  // to the file itself (writeThrough), which is then extended to the full
+  // size of the memory if need be, or to private heap copies of the pages
+  // written, leaving the file untouched (it is mapped read-only, so
+  // read-only files work too). Only one mapping of a file writes through at
+  // a time, and later ones fall back to copy-on-write (see Image). Either
+  // way, once the contents are cloned (e.g. for a checkpoint), both copies
+  // stop writing to the image, and instead copy pages to the heap before
+  // writing to them.
+  public static MemContents map(File file, int addrBits, int width,
+      boolean writeThrough) throws IOException {
+    MemContents ret = new MemContents(addrBits, width);
+    ret.image = Image.open(file, writeThrough, addrBits, width, null);
+    return ret;
+  }
+
   private static final int PAGE_SIZE_BITS = 12;
   private static final int PAGE_SIZE = 1 << PAGE_SIZE_BITS;
 
@@ -51,6 +85,12 @@ public class MemContents implements Cloneable, HexModel {
   private int addrBits;
   private int mask;
   private Page[] pages;
+  private Image image; // null unless backed by an image file
+  private volatile boolean imageShared; // see clone
+  private volatile int seq; // see sharePages
+  private long[] dirty, spareDirty; // pages written by write(), one bit each
+  private boolean flushPending;
+  private Runnable flusher;
 
   private MemContents(int addrBits, int width) {
     listeners = null;
@@ -63,17 +103,23 @@ public class MemContents implements Cloneable, HexModel {
     listeners.add(owner, l);
   }
 
+  // For memory backed by an image file, this instead reverts to the contents
+  // of the file, discarding any changes not written through to it.
   public void clear() {
-    for (int i = 0; i < pages.length; i++) {
-      if (pages[i] != null) {
+    seq++;
+    if (image != null) {
+      revertToImage();
+    } else {
+      for (int i = 0; i < pages.length; i++) {
         if (pages[i] != null)
           clearPage(i);
       }
     }
+    seq++;
   }
 
   private void clearPage(int index) {
-    Page page = pages[index];
+    Page page = page(index);
     int[] oldValues = new int[page.getLength()];
     boolean changed = false;
     for (int j = 0; j < oldValues.length; j++) {
@@ -83,23 +129,33 @@ public class MemContents implements Cloneable, HexModel {
         changed = true;
     }
     if (changed) {
-      pages[index] = null;
+      if (image == null)
+        pages[index] = null;
+      else // the file may not hold zeros here, so use the shared zero page
+        pages[index] = MemContentsSub.createConstantPage(page.getLength(), width, 0);
       fireBytesChanged(index << PAGE_SIZE_BITS, oldValues.length,
           oldValues);
     }
   }
 
+  // Clones are copy-on-write: both copies share all pages, each marked as
+  // shared, and whichever copy next writes to a shared page first replaces it
+  // with a private copy (see ensurePage). So cloning a large, mostly-unchanged
+  // memory costs one pointer per page, and the copies only ever diverge by
+  // the pages actually written.
   @Override
   public MemContents clone() {
     try {
       MemContents ret = (MemContents) super.clone();
       ret.listeners = null;
-      ret.pages = new Page[this.pages.length];
-      for (int i = 0; i < ret.pages.length; i++) {
-        if (this.pages[i] != null) {
-          ret.pages[i] = this.pages[i].clone();
-        }
-      }
+      ret.dirty = ret.spareDirty = null;
+      ret.flushPending = false;
+      ret.flusher = null;
+      ret.seq = 0;
+      // From now on, neither copy may write to the image: pages faulted in
+      // later are shared too, and so copied to the heap before any write.
+      this.imageShared = ret.imageShared = true;
+      ret.pages = sharePages();
       return ret;
     } catch (CloneNotSupportedException ex) {
       ex.printStackTrace();
@@ -107,9 +163,107 @@ public class MemContents implements Cloneable, HexModel {
     }
   }
 
+  // Give up on sharing pages with a perfectly consistent snapshot after this
+  // many tries, and copy them instead.
+  private static final int CLONE_ATTEMPTS = 8;
+
+  // Returns the pages for a clone. The simulator thread may be writing to
+  // this memory concurrently (a clone can be made from the GUI), so this uses
+  // seq in the style of a seqlock, just as ValueStore.copyFrom does: write()
+  // and clear() make seq odd while they change pages, and even again once
+  // done. We mark every page shared and then check that seq is even and
+  // unchanged. A writer bumps seq before it checks the flag in ensurePage, so
+  // if seq did not move, any later write is sure to see the flag and copy the
+  // page first. Otherwise retry, or, after too many tries, give the clone
+  // private copies of the pages, which no later write can reach.
+  private Page[] sharePages() {
+    for (int attempt = 0; attempt < CLONE_ATTEMPTS; attempt++) {
+      int seen = seq;
+      if ((seen & 1) != 0) {
+        Thread.yield();
+        continue;
+      }
+      Page[] ret = pages.clone();
+      for (Page page : ret) {
+        if (page != null)
+          page.shared = true;
+      }
+      if (seq == seen)
+        return ret;
+    }
+    Page[] ret = pages.clone();
+    for (int i = 0; i < ret.length; i++) {
+      if (ret[i] != null)
+        ret[i] = ret[i].clone();
+    }
+    return ret;
+  }
+
+  // Returns page i, faulting it in from the image file if need be. Without an
+  // image, a missing page is all zeros, and this returns null.
+  private Page page(int i) {
+    Page p = pages[i];
+    if (p == null && image != null) {
+      p = image.fault(i);
+      if (p != null) {
+        p.shared = imageShared || !image.writeThrough;
+        pages[i] = p;
+      }
+    }
+    return p;
+  }
+
+  // Drops page i once it holds only zeros. A page of an image file is kept,
+  // since missing pages there read as whatever the file holds.
+  private void release(int i) {
+    if (image == null)
+      pages[i] = null;
+  }
+
+  // Drops all pages written since mapping, so that everything reads from the
+  // file again. With writeThrough, those writes went to the file, of course.
+  private void revertToImage() {
+    Arrays.fill(pages, null);
+    fireMetainfoChanged();
+  }
+
+  // Storage statistics, in bytes. The logical size is that of the whole
+  // memory. Of the pages actually present on the heap, materialized counts
+  // those held by this copy alone, and shared those shared with clones (see
+  // clone). Constant pages (see fill) and pages of an image file count as
+  // neither, since they take no heap of their own, or next to none.
+  public long getLogicalBytes() {
+    return (1L << addrBits) * MemContentsSub.bytesPerWord(width);
+  }
+
+  public long getMaterializedBytes() {
+    return getStorageBytes(false);
+  }
+
+  public long getSharedBytes() {
+    return getStorageBytes(true);
+  }
+
+  private long getStorageBytes(boolean shared) {
+    long n = 0;
+    for (Page page : pages) {
+      if (page != null && page.shared == shared)
+        n += page.getStorageBytes();
+    }
+    return n;
+  }
+
+  public File getImageFile() {
+    return image == null ? null : image.file;
+  }
+
+  // Makes pages[index] ready to be written: allocated if missing, and
+  // replaced by a private copy if still shared with a clone.
   private void ensurePage(int index) {
-    if (pages[index] == null) {
+    if (page(index) == null) {
       pages[index] = MemContentsSub.createPage(PAGE_SIZE, width);
+    } else if (pages[index].shared) {
+      pages[index] = pages[index].clone();
     }
   }
 
@@ -132,14 +286,14 @@ public class MemContents implements Cloneable, HexModel {
         int[] oldValues = page.get(startOffs, (int) len);
         page.load(startOffs, vals, mask);
         if (value == 0 && page.isClear())
-          pages[pageStart] = null;
+          release(pageStart);
         fireBytesChanged(start, len, oldValues);
       }
     } else {
       if (startOffs == 0) {
         pageStart--;
       } else {
-        if (value == 0 && pages[pageStart] == null) {
+        if (value == 0 && page(pageStart) == null) {
           // nothing to do
         } else {
           ensurePage(pageStart);
@@ -150,44 +304,47 @@ public class MemContents implements Cloneable, HexModel {
             int[] oldValues = page.get(startOffs, vals.length);
             page.load(startOffs, vals, mask);
             if (value == 0 && page.isClear())
-              pages[pageStart] = null;
+              release(pageStart);
             fireBytesChanged(start, PAGE_SIZE - pageStart,
                 oldValues);
           }
         }
       }
+      // Whole pages are filled by sharing a single constant page, interned
+      // across all memories, rather than materializing each one.
+      int fullEnd = endOffs == PAGE_MASK ? pageEnd : pageEnd - 1;
       if (value == 0) {
-        for (int i = pageStart + 1; i < pageEnd; i++) {
-          if (pages[i] != null)
+        for (int i = pageStart + 1; i <= fullEnd; i++) {
+          if (page(i) != null)
             clearPage(i);
         }
       } else {
         int[] vals = new int[PAGE_SIZE];
         Arrays.fill(vals, value);
-        for (int i = pageStart + 1; i < pageEnd; i++) {
-          ensurePage(i);
-          Page page = pages[i];
-          if (!page.matches(vals, 0, mask)) {
-            int[] oldValues = page.get(0, PAGE_SIZE);
-            page.load(0, vals, mask);
+        for (int i = pageStart + 1; i <= fullEnd; i++) {
+          Page page = page(i);
+          if (page == null || !page.matches(vals, 0, mask)) {
+            int[] oldValues = page == null ? new int[PAGE_SIZE]
+                : page.get(0, PAGE_SIZE);
+            pages[i] = MemContentsSub.createConstantPage(PAGE_SIZE, width, value);
             fireBytesChanged((long) i << PAGE_SIZE_BITS, PAGE_SIZE,
                 oldValues);
           }
         }
       }
-      if (endOffs >= 0) {
-        Page page = pages[pageEnd];
-        if (value == 0 && page == null) {
+      if (fullEnd < pageEnd) {
+        if (value == 0 && page(pageEnd) == null) {
           // nothing to do
         } else {
           ensurePage(pageEnd);
+          Page page = pages[pageEnd];
           int[] vals = new int[endOffs + 1];
           Arrays.fill(vals, value);
           if (!page.matches(vals, 0, mask)) {
             int[] oldValues = page.get(0, endOffs + 1);
             page.load(0, vals, mask);
             if (value == 0 && page.isClear())
-              pages[pageEnd] = null;
+              release(pageEnd);
             fireBytesChanged((long) pageEnd << PAGE_SIZE_BITS,
                 endOffs + 1, oldValues);
           }
@@ -223,9 +380,10 @@ public class MemContents implements Cloneable, HexModel {
   public int get(long addr) {
     int page = (int) (addr >>> PAGE_SIZE_BITS);
     int offs = (int) (addr & PAGE_MASK);
-    if (page < 0 || page >= pages.length || pages[page] == null)
+    if (page < 0 || page >= pages.length)
       return 0;
-    return pages[page].get(offs) & mask;
+    Page p = page(page);
+    return p == null ? 0 : p.get(offs) & mask;
   }
 
   public long getFirstOffset() {
@@ -249,6 +407,8 @@ public class MemContents implements Cloneable, HexModel {
   }
 
   public boolean isClear() {
+    if (image != null)
+      return false; // or at least, not worth reading the whole file to check
     for (int i = 0; i < pages.length; i++) {
       Page page = pages[i];
       if (page != null) {
@@ -261,6 +421,63 @@ public class MemContents implements Cloneable, HexModel {
     return true;
   }
 
+  // Writes the non-zero pages to a simulation checkpoint, each value taking
+  // one, two, or four bytes depending on the data width.
+  public void writeCheckpoint(DataOutput out) throws IOException {
+    out.writeInt(addrBits);
+    out.writeInt(width);
+    int bytes = width <= 8 ? 1 : width <= 16 ? 2 : 4;
+    int n = (int) Math.min(PAGE_SIZE, getLastOffset() + 1);
+    ByteBuffer buf = ByteBuffer.allocate(n * bytes);
+    for (int i = 0; i < pages.length; i++) {
+      Page page = pages[i];
+      if (page == null || (image == null && page.isClear()))
+        continue;
+      buf.clear();
+      for (int j = 0; j < n; j++) {
+        int v = page.get(j) & mask;
+        if (bytes == 1)
+          buf.put((byte) v);
+        else if (bytes == 2)
+          buf.putShort((short) v);
+        else
+          buf.putInt(v);
+      }
+      out.writeInt(i);
+      out.write(buf.array());
+    }
+    out.writeInt(-1);
+  }
+
+  public void readCheckpoint(DataInput in) throws IOException {
+    int a = in.readInt();
+    int w = in.readInt();
+    if (a != addrBits || w != width)
+      throw new IOException(String.format(
+            "memory is %d x %d bits, but checkpoint has %d x %d bits",
+            1L << addrBits, width, 1L << a, w));
+    clear();
+    int bytes = width <= 8 ? 1 : width <= 16 ? 2 : 4;
+    int n = (int) Math.min(PAGE_SIZE, getLastOffset() + 1);
+    byte[] raw = new byte[n * bytes];
+    int[] vals = new int[n];
+    for (int i = in.readInt(); i >= 0; i = in.readInt()) {
+      if (i >= pages.length)
+        throw new IOException("bad memory page in checkpoint: " + i);
+      in.readFully(raw);
+      ByteBuffer buf = ByteBuffer.wrap(raw);
+      for (int j = 0; j < n; j++) {
+        if (bytes == 1)
+          vals[j] = buf.get() & 0xff;
+        else if (bytes == 2)
+          vals[j] = buf.getShort() & 0xffff;
+        else
+          vals[j] = buf.getInt();
+      }
+      set((long) i << PAGE_SIZE_BITS, vals);
+    }
+  }
+
   public void removeHexModelWeakListener(Object owner, HexModelListener l) {
     if (listeners == null)
       return;
@@ -274,14 +491,89 @@ public class MemContents implements Cloneable, HexModel {
     int offs = (int) (addr & PAGE_MASK);
     if (page < 0 || page >= pages.length)
       return;
-    int old = pages[page] == null ? 0 : pages[page].get(offs) & mask;
+    Page p = page(page);
+    int old = p == null ? 0 : p.get(offs) & mask;
     int val = value & mask;
     if (old != val) {
-      if (pages[page] == null) {
-        pages[page] = MemContentsSub.createPage(PAGE_SIZE, width);
-      }
+      ensurePage(page);
       pages[page].set(offs, val);
-      fireBytesChanged(addr, 1, new int[] { old });
+      if (listeners != null)
+        fireBytesChanged(addr, 1, new int[] { old });
+    }
+  }
+
+  // The simulator's write path (see Ram.propagate). Unlike set, this never
+  // allocates (beyond the page itself), and doesn't tell listeners of each
+  // change as it happens, with old values for undo. Instead the page is just
+  // marked dirty, and listeners hear of all the dirty pages at once, with null
+  // old values, next time the event thread gets around to it. So a memory
+  // written every cycle notifies its listeners at most once per UI frame, and
+  // one without listeners does no more than store the value.
+  public void write(long addr, int value) {
+    int page = (int) (addr >>> PAGE_SIZE_BITS);
+    int offs = (int) (addr & PAGE_MASK);
+    if (page < 0 || page >= pages.length)
+      return;
+    seq++; // see sharePages
+    Page p = page(page);
+    int val = value & mask;
+    if ((p == null ? 0 : p.get(offs) & mask) != val) {
+      ensurePage(page);
+      pages[page].set(offs, val);
+      if (listeners != null)
+        markDirty(page);
+    }
+    seq++;
+  }
+
+  private synchronized void markDirty(int page) {
+    int n = (pages.length + 63) >> 6;
+    if (dirty == null || dirty.length != n)
+      dirty = new long[n];
+    dirty[page >> 6] |= 1L << page;
+    if (!flushPending) {
+      flushPending = true;
+      if (flusher == null)
+        flusher = () -> flushChanges();
+      SwingUtilities.invokeLater(flusher);
+    }
+  }
+
+  // Tells listeners of everything written by write() since the last flush,
+  // as one bytesChanged per run of dirty pages. Normally this happens on the
+  // event thread by itself, but it can be called directly to catch up early.
+  public void flushChanges() {
+    long[] d;
+    synchronized (this) {
+      flushPending = false;
+      d = dirty;
+      if (d == null)
+        return;
+      dirty = spareDirty; // the two arrays take turns, so neither is reallocated
+      spareDirty = null;
+    }
+    long size = 1L << addrBits;
+    int n = d.length << 6;
+    int runStart = -1;
+    for (int i = 0; i <= n; i++) {
+      if (runStart < 0 && i < n && (i & 63) == 0 && d[i >> 6] == 0) {
+        i += 63;
+        continue;
+      }
+      boolean set = i < n && (d[i >> 6] & (1L << i)) != 0;
+      if (set && runStart < 0) {
+        runStart = i;
+      } else if (!set && runStart >= 0) {
+        long start = (long) runStart << PAGE_SIZE_BITS;
+        long end = Math.min((long) i << PAGE_SIZE_BITS, size);
+        if (start < size)
+          fireBytesChanged(start, end - start, null);
+        runStart = -1;
+      }
+    }
+    Arrays.fill(d, 0L);
+    synchronized (this) {
+      spareDirty = d;
     }
   }
 
@@ -301,7 +593,7 @@ public class MemContents implements Cloneable, HexModel {
         int[] oldValues = page.get(startOffs, values.length);
         page.load(startOffs, values, mask);
         if (page.isClear())
-          pages[pageStart] = null;
+          release(pageStart);
         fireBytesChanged(start, values.length, oldValues);
       }
     } else {
@@ -318,7 +610,7 @@ public class MemContents implements Cloneable, HexModel {
           int[] oldValues = page.get(startOffs, vals.length);
           page.load(startOffs, vals, mask);
           if (page.isClear())
-            pages[pageStart] = null;
+            release(pageStart);
           fireBytesChanged(start, PAGE_SIZE - pageStart, oldValues);
         }
         nextOffs = vals.length;
@@ -326,7 +618,7 @@ public class MemContents implements Cloneable, HexModel {
       int[] vals = new int[PAGE_SIZE];
       int offs = nextOffs;
       for (int i = pageStart + 1; i < pageEnd; i++, offs += PAGE_SIZE) {
-        Page page = pages[i];
+        Page page = page(i);
         if (page == null) {
           boolean allZeroes = true;
           for (int j = 0; j < PAGE_SIZE; j++) {
@@ -344,9 +636,11 @@ public class MemContents implements Cloneable, HexModel {
           System.arraycopy(values, offs, vals, 0, PAGE_SIZE);
           if (!page.matches(vals, startOffs, mask)) {
             int[] oldValues = page.get(0, PAGE_SIZE);
+            ensurePage(i);
+            page = pages[i];
             page.load(0, vals, mask);
             if (page.isClear())
-              pages[i] = null;
+              release(i);
             fireBytesChanged((long) i << PAGE_SIZE_BITS, PAGE_SIZE,
                 oldValues);
           }
@@ -361,7 +655,7 @@ public class MemContents implements Cloneable, HexModel {
           int[] oldValues = page.get(0, endOffs + 1);
           page.load(0, vals, mask);
           if (page.isClear())
-            pages[pageEnd] = null;
+            release(pageEnd);
           fireBytesChanged((long) pageEnd << PAGE_SIZE_BITS,
               endOffs + 1, oldValues);
         }
@@ -394,17 +688,24 @@ public class MemContents implements Cloneable, HexModel {
 
     boolean changed = false;
     do {
-      Page dstPage = pages[dp];
-      Page srcPage = src.pages[sp];
+      Page dstPage = page(dp);
+      Page srcPage = src.page(sp);
       int n = Math.min(count, Math.min(PAGE_SIZE - si, PAGE_SIZE - di));
       if (dstPage == null && srcPage == null) {
         // both already all zeros, so do nothing
       } else if (srcPage == null) {
         // clearing locations di..di+n on this page
         fill(dp*PAGE_SIZE+di, n, 0);
+      } else if (n == PAGE_SIZE && image == null && src.image == null) {
+        // a whole page, so share it copy-on-write, just as clone does
+        int[] oldVals = dstPage == null ? new int[PAGE_SIZE]
+            : dstPage.get(0, PAGE_SIZE);
+        srcPage.shared = true;
+        pages[dp] = srcPage;
+        fireBytesChanged((long) dp << PAGE_SIZE_BITS, n, oldVals);
       } else {
-        if (dstPage == null)
-          dstPage = pages[dp] = MemContentsSub.createPage(PAGE_SIZE, width);
+        ensurePage(dp);
+        dstPage = pages[dp];
         // copy locations di..di+n on this page
         int[] oldVals = dstPage.get(di, n);
         int[] vals = srcPage.get(si, n);
@@ -433,6 +734,20 @@ public class MemContents implements Cloneable, HexModel {
     this.width = width;
     this.mask = width == 32 ? 0xffffffff : ((1 << width) - 1);
 
+    if (image != null) {
+      // the layout of the file changes, so start over with a fresh mapping
+      pages = new Page[addrBits < PAGE_SIZE_BITS ? 1 : 1 << (addrBits - PAGE_SIZE_BITS)];
+      try {
+        image = image.remap(addrBits, width);
+      } catch (IOException e) {
+        System.err.println(S.fmt("memImageError", image.file, e.getMessage()));
+        image = null;
+      }
+      imageShared = false;
+      fireMetainfoChanged();
+      return;
+    }
+
     Page[] oldPages = pages;
     int pageCount;
     int pageLength;
@@ -462,13 +777,106 @@ public class MemContents implements Cloneable, HexModel {
     fireMetainfoChanged();
   }
 
+  // The mapping of an image file. The file is closed once mapped, as the
+  // mapping stays valid regardless. In copy-on-write mode, the mapping is
+  // read-only and covers only the file itself, and pages beyond its end start
+  // out as zeros. Addresses are at most 24 bits (see Mem.ADDR_ATTR), so even
+  // a 32-bit-wide memory is 64 MB at most, well within a single mapping.
+  //
+  // Only one image per file writes through at a time: every root state
+  // (a server session, a test job or worker) maps its memories afresh, and
+  // they would otherwise all scribble on the same file. The first to map a
+  // file in writeThrough mode owns it until it is garbage collected (clones
+  // share it, so those count too), or remapped; any other image of the file
+  // is mapped copy-on-write instead.
+  private static class Image {
+    private static final HashMap<File, WeakReference<Image>> writers =
+        new HashMap<File, WeakReference<Image>>();
+
+    final File file;
+    final boolean writeThrough;
+    final int bytesPerWord, width, pageLength, pageBytes;
+    final long fileBytes;
+    final MappedByteBuffer buffer;
+
+    // Maps the file, in writeThrough mode if asked for and no other live
+    // image of the file already writes through, or if prev (the image being
+    // remapped) is the one that does.
+    static Image open(File file, boolean writeThrough, int addrBits,
+        int width, Image prev) throws IOException {
+      if (!writeThrough)
+        return new Image(file, false, addrBits, width);
+      File key = file.getCanonicalFile();
+      synchronized (writers) {
+        WeakReference<Image> ref = writers.get(key);
+        Image owner = ref == null ? null : ref.get();
+        if (owner != null && owner != prev)
+          return new Image(file, false, addrBits, width);
+        Image ret = new Image(file, true, addrBits, width);
+        writers.put(key, new WeakReference<Image>(ret));
+        return ret;
+      }
+    }
+
+    private Image(File file, boolean writeThrough, int addrBits, int width)
+        throws IOException {
+      this.file = file;
+      this.writeThrough = writeThrough;
+      this.width = width;
+      bytesPerWord = (width + 7) / 8;
+      pageLength = addrBits < PAGE_SIZE_BITS ? 1 << addrBits : PAGE_SIZE;
+      pageBytes = pageLength * bytesPerWord;
+      long memBytes = (1L << addrBits) * bytesPerWord;
+      try (RandomAccessFile raf = new RandomAccessFile(file, writeThrough ? "rw" : "r");
+          FileChannel ch = raf.getChannel()) {
+        if (writeThrough && raf.length() < memBytes)
+          raf.setLength(memBytes);
+        fileBytes = Math.min(raf.length(), memBytes);
+        buffer = ch.map(writeThrough ? FileChannel.MapMode.READ_WRITE
+            : FileChannel.MapMode.READ_ONLY, 0, fileBytes);
+      }
+    }
+
+    Image remap(int addrBits, int width) throws IOException {
+      return open(file, writeThrough, addrBits, width, this);
+    }
+
+    // Returns a view of page i of the file, or null if the page lies wholly
+    // beyond its end.
+    Page fault(int i) {
+      ByteBuffer buf = buffer.duplicate();
+      int offs = i * pageBytes;
+      if (offs >= buf.limit())
+        return null;
+      if (offs + pageBytes > buf.limit()) {
+        // the file ends partway through this page
+        Page p = MemContentsSub.createPage(pageLength, width);
+        buf.position(offs);
+        Page tail = MemContentsSub.createMappedPage(buf.slice(),
+            (buf.limit() - offs) / bytesPerWord, width);
+        for (int j = 0; j < tail.getLength(); j++)
+          p.set(j, tail.get(j));
+        return p;
+      }
+      buf.position(offs).limit(offs + pageBytes);
+      return MemContentsSub.createMappedPage(buf.slice(), pageLength, width);
+    }
+  }
+
   static abstract class Page implements Cloneable {
+    // Set once a page is shared between clones, after which it must never be
+    // written again (see MemContents.clone). Volatile, as the handshake in
+    // MemContents.sharePages relies on it.
+    volatile boolean shared;
+
     abstract void clear();
 
     @Override
     public Page clone() {
       try {
-        return (Page) super.clone();
+        Page ret = (Page) super.clone();
+        ret.shared = false;
+        return ret;
       } catch (CloneNotSupportedException e) {
         return this;
       }
@@ -490,6 +898,12 @@ public class MemContents implements Cloneable, HexModel {
 
     abstract int getLength();
 
+    // Heap bytes held by this page alone, which for pages backed by a file or
+    // by nothing at all is none.
+    int getStorageBytes() {
+      return 0;
+    }
+
     boolean isClear() {
       for (int i = 0, n = getLength(); i < n; i++) {
         if (get(i) != 0)
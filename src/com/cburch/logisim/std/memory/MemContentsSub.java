@@ -30,7 +30,9 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
 
 class MemContentsSub {
   private static class BytePage extends MemContents.Page {
@@ -61,6 +63,11 @@ class MemContentsSub {
     //
     // methods for accessing data within memory
     //
+    @Override
+    int getStorageBytes() {
+      return data.length;
+    }
+
     @Override
     int getLength() {
       return data.length;
@@ -113,6 +120,11 @@ class MemContentsSub {
     //
     // methods for accessing data within memory
     //
+    @Override
+    int getStorageBytes() {
+      return 4 * data.length;
+    }
+
     @Override
     int getLength() {
       return data.length;
@@ -165,6 +177,11 @@ class MemContentsSub {
     //
     // methods for accessing data within memory
     //
+    @Override
+    int getStorageBytes() {
+      return 2 * data.length;
+    }
+
     @Override
     int getLength() {
       return data.length;
@@ -189,6 +206,172 @@ class MemContentsSub {
     }
   }
 
+  // A page of a mapped image file (see MemContents.map). Each word takes
+  // (bits+7)/8 bytes, big-endian, with any unused bits at the top of the first
+  // byte.
+  private static class MappedPage extends MemContents.Page {
+    private final ByteBuffer data;
+    private final int length, bits, bytes;
+
+    MappedPage(ByteBuffer data, int length, int bits) {
+      this.data = data;
+      this.length = length;
+      this.bits = bits;
+      this.bytes = (bits + 7) / 8;
+    }
+
+    @Override
+    void clear() {
+      for (int i = 0, n = length * bytes; i < n; i++)
+        data.put(i, (byte) 0);
+    }
+
+    // A copy lives on the heap, and no longer touches the file.
+    @Override
+    public MemContents.Page clone() {
+      MemContents.Page ret = createPage(length, bits);
+      for (int i = 0; i < length; i++)
+        ret.set(i, get(i));
+      return ret;
+    }
+
+    @Override
+    int get(int addr) {
+      if (addr < 0 || addr >= length)
+        return 0;
+      int i = addr * bytes;
+      switch (bytes) {
+      case 1:
+        return data.get(i) & 0xff;
+      case 2:
+        return data.getShort(i) & 0xffff;
+      case 3:
+        return ((data.get(i) & 0xff) << 16) | (data.getShort(i + 1) & 0xffff);
+      default:
+        return data.getInt(i);
+      }
+    }
+
+    @Override
+    int getLength() {
+      return length;
+    }
+
+    @Override
+    void load(int start, int[] values, int mask) {
+      int n = Math.min(values.length, length - start);
+      for (int i = 0; i < n; i++)
+        set(start + i, values[i] & mask);
+    }
+
+    @Override
+    void set(int addr, int value) {
+      if (addr < 0 || addr >= length)
+        return;
+      int i = addr * bytes;
+      int v = value;
+      switch (bytes) {
+      case 1:
+        data.put(i, (byte) v);
+        break;
+      case 2:
+        data.putShort(i, (short) v);
+        break;
+      case 3:
+        data.put(i, (byte) (v >>> 16));
+        data.putShort(i + 1, (short) v);
+        break;
+      default:
+        data.putInt(i, v);
+      }
+    }
+  }
+
+  // A page holding the same value everywhere, e.g. after MemContents.fill.
+  // These are interned and shared between all memories, so they are always
+  // marked as shared, and a private copy is made before writing to one (see
+  // MemContents.ensurePage).
+  private static class ConstantPage extends MemContents.Page {
+    private final int length, bits, value;
+
+    ConstantPage(int length, int bits, int value) {
+      this.length = length;
+      this.bits = bits;
+      this.value = value;
+      this.shared = true;
+    }
+
+    @Override
+    void clear() {
+      throw new IllegalStateException("constant page");
+    }
+
+    // A copy is an ordinary page, which may then be written.
+    @Override
+    public MemContents.Page clone() {
+      MemContents.Page ret = createPage(length, bits);
+      if (value != 0) {
+        for (int i = 0; i < length; i++)
+          ret.set(i, value);
+      }
+      return ret;
+    }
+
+    @Override
+    int get(int addr) {
+      return addr >= 0 && addr < length ? value : 0;
+    }
+
+    @Override
+    int getLength() {
+      return length;
+    }
+
+    @Override
+    boolean isClear() {
+      return value == 0;
+    }
+
+    @Override
+    void load(int start, int[] values, int mask) {
+      throw new IllegalStateException("constant page");
+    }
+
+    @Override
+    void set(int addr, int value) {
+      throw new IllegalStateException("constant page");
+    }
+  }
+
+  // Keyed by length, bits, and value. Only so many distinct fill values are
+  // interned; past that, constant pages are still used, just not shared.
+  private static final ConcurrentHashMap<Long, MemContents.Page> constantPages =
+      new ConcurrentHashMap<>();
+  private static final int MAX_CONSTANT_PAGES = 1024;
+
+  static MemContents.Page createConstantPage(int length, int bits, int value) {
+    Long key = ((long) length << 38) | ((long) bits << 32) | (value & 0xffffffffL);
+    MemContents.Page ret = constantPages.get(key);
+    if (ret == null) {
+      ret = new ConstantPage(length, bits, value);
+      if (constantPages.size() < MAX_CONSTANT_PAGES) {
+        MemContents.Page old = constantPages.putIfAbsent(key, ret);
+        if (old != null)
+          ret = old;
+      }
+    }
+    return ret;
+  }
+
+  // Bytes taken by each word of an ordinary page (see createPage).
+  static int bytesPerWord(int bits) {
+    return bits <= 8 ? 1 : bits <= 16 ? 2 : 4;
+  }
+
+  static MemContents.Page createMappedPage(ByteBuffer data, int length, int bits) {
+    return new MappedPage(data, length, bits);
+  }
+
   static MemContents.Page createPage(int size, int bits) {
     if (bits <= 8)
       return new BytePage(size);
@@ -32,12 +32,21 @@ package com.cburch.logisim.std.memory;
 import static com.cburch.logisim.std.Strings.S;
 
 import java.awt.Frame;
+import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
 
+import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
+import javax.swing.JLabel;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JTextField;
 
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.gui.hex.HexFile;
@@ -45,6 +54,7 @@ import com.cburch.logisim.gui.hex.HexFrame;
 import com.cburch.logisim.instance.Instance;
 import com.cburch.logisim.proj.Project;
 import com.cburch.logisim.tools.MenuExtender;
+import com.cburch.logisim.util.JFileChoosers;
 import com.cburch.logisim.std.memory.MemContents;
 
 class MemMenu implements ActionListener, MenuExtender {
@@ -57,6 +67,10 @@ class MemMenu implements ActionListener, MenuExtender {
   private JMenuItem clear;
   private JMenuItem load;
   private JMenuItem save;
+  private JCheckBoxMenuItem trace;
+  private JMenuItem watch;
+  private JMenuItem unwatch;
+  private JMenuItem export;
 
   MemMenu(Mem factory, Instance instance) {
     this.factory = factory;
@@ -73,6 +87,14 @@ class MemMenu implements ActionListener, MenuExtender {
       doLoad();
     else if (src == save)
       doSave();
+    else if (src == trace)
+      doTrace();
+    else if (src == watch)
+      doWatch();
+    else if (src == unwatch)
+      doUnwatch();
+    else if (src == export)
+      doExport();
   }
 
   public void configureMenu(JPopupMenu menu, Project proj) {
@@ -91,11 +113,24 @@ class MemMenu implements ActionListener, MenuExtender {
     load = createItem(enabled, S.get("ramLoadMenuItem"));
     save = createItem(enabled, S.get("ramSaveMenuItem"));
 
+    MemTrace t = enabled ? factory.getState(instance, circState).getTrace() : null;
+    trace = new JCheckBoxMenuItem(S.get("ramTraceMenuItem"), t != null);
+    trace.setEnabled(enabled);
+    trace.addActionListener(this);
+    watch = createItem(enabled, S.get("ramWatchMenuItem"));
+    unwatch = createItem(t != null && t.hasWatchpoints(), S.get("ramUnwatchMenuItem"));
+    export = createItem(t != null, S.get("ramTraceExportMenuItem"));
+
     menu.addSeparator();
     menu.add(edit);
     menu.add(clear);
     menu.add(load);
     menu.add(save);
+    menu.addSeparator();
+    menu.add(trace);
+    menu.add(watch);
+    menu.add(unwatch);
+    menu.add(export);
   }
 
   private JMenuItem createItem(boolean enabled, String label) {
@@ -135,4 +170,94 @@ class MemMenu implements ActionListener, MenuExtender {
     MemContents m = (MemContents)factory.getState(instance, circState).getContents();
     HexFile.save(m, frame, proj, instance);
   }
+
+  // Tracing stops whenever the menu is used to turn it off, which also
+  // finishes any export in progress and forgets the watchpoints.
+  private void doTrace() {
+    MemState s = factory.getState(instance, circState);
+    MemTrace t = s.getTrace();
+    if (t == null) {
+      startTrace(s);
+      return;
+    }
+    s.setTrace(null);
+    try {
+      t.close();
+    } catch (IOException e) {
+      showTraceError(e);
+    }
+  }
+
+  private MemTrace startTrace(MemState s) {
+    MemContents m = s.getContents();
+    MemTrace t = new MemTrace(m.getLogLength(), m.getWidth(),
+        MemTrace.DEFAULT_RECORDS);
+    t.setSimulator(proj.getSimulator());
+    s.setTrace(t);
+    return t;
+  }
+
+  private void doWatch() {
+    MemState s = factory.getState(instance, circState);
+    JTextField range = new JTextField(12);
+    String[] kinds = { S.get("ramWatchRead"), S.get("ramWatchWrite"),
+      S.get("ramWatchAccess") };
+    JComboBox<String> kind = new JComboBox<>(kinds);
+    kind.setSelectedIndex(1);
+    JPanel panel = new JPanel(new GridLayout(2, 2, 5, 5));
+    panel.add(new JLabel(S.get("ramWatchRange")));
+    panel.add(range);
+    panel.add(new JLabel(S.get("ramWatchKind")));
+    panel.add(kind);
+    int choice = JOptionPane.showConfirmDialog(frame, panel,
+        S.get("ramWatchTitle"), JOptionPane.OK_CANCEL_OPTION,
+        JOptionPane.PLAIN_MESSAGE);
+    if (choice != JOptionPane.OK_OPTION)
+      return;
+    long lo, hi;
+    try {
+      String[] ends = range.getText().trim().split("\\s*-\\s*", 2);
+      lo = Long.parseLong(ends[0], 16);
+      hi = ends.length > 1 ? Long.parseLong(ends[1], 16) : lo;
+    } catch (NumberFormatException e) {
+      lo = hi = -1;
+    }
+    if (lo < 0 || hi < lo || !s.isValidAddr(lo)) {
+      JOptionPane.showMessageDialog(frame,
+          S.fmt("ramWatchBadRange", range.getText()),
+          S.get("ramWatchTitle"), JOptionPane.ERROR_MESSAGE);
+      return;
+    }
+    MemTrace t = s.getTrace();
+    if (t == null)
+      t = startTrace(s);
+    t.addWatchpoint(lo, hi, kind.getSelectedIndex() + 1);
+  }
+
+  private void doUnwatch() {
+    MemTrace t = factory.getState(instance, circState).getTrace();
+    if (t != null)
+      t.clearWatchpoints();
+  }
+
+  private void doExport() {
+    MemTrace t = factory.getState(instance, circState).getTrace();
+    if (t == null)
+      return;
+    JFileChooser chooser = JFileChoosers.create();
+    chooser.setDialogTitle(S.get("ramTraceExportTitle"));
+    if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION)
+      return;
+    File f = chooser.getSelectedFile();
+    try {
+      t.streamTo(f, true);
+    } catch (IOException e) {
+      showTraceError(e);
+    }
+  }
+
+  private void showTraceError(IOException e) {
+    JOptionPane.showMessageDialog(frame, e.getMessage(),
+        S.get("ramTraceErrorTitle"), JOptionPane.ERROR_MESSAGE);
+  }
 }
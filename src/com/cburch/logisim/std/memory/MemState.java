@@ -33,20 +33,20 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.Graphics;
 
-import com.cburch.hex.HexModel;
-import com.cburch.hex.HexModelListener;
 import com.cburch.logisim.data.Bounds;
 import com.cburch.logisim.instance.InstanceData;
 import com.cburch.logisim.util.GraphicsUtil;
 import com.cburch.logisim.util.StringUtil;
 
-class MemState implements InstanceData, Cloneable, HexModelListener {
+class MemState implements InstanceData, Cloneable {
 
   private MemContents contents;
+  private MemTrace trace; // null unless accesses are being traced
   private long curScroll = 0;
   private long cursorLoc = -1;
   private long curAddr = -1;
   private boolean RecalculateParameters = true;
+  private int shownAddrBits, shownWidth; // dimensions the layout was made for
   private int NrOfLines = 1;
   private int NrDataSymbolsEachLine = 1;
   private int AddrBlockSize = 0;
@@ -62,11 +62,6 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
   MemState(MemContents contents) {
     this.contents = contents;
     setBits(contents.getLogLength(), contents.getWidth());
-    contents.addHexModelWeakListener(null, this);
-  }
-
-  public void bytesChanged(HexModel source, long start, long numBytes,
-      int[] oldValues) {
   }
 
   private void CalculateDisplayParameters(Graphics g,
@@ -112,7 +107,7 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
     try {
       MemState ret = (MemState) super.clone();
       ret.contents = contents.clone();
-      ret.contents.addHexModelWeakListener(null, ret);
+      ret.trace = null;
       return ret;
     } catch (CloneNotSupportedException e) {
       return null;
@@ -170,6 +165,14 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
     return contents;
   }
 
+  MemTrace getTrace() {
+    return trace;
+  }
+
+  void setTrace(MemTrace value) {
+    trace = value;
+  }
+
   long getCurrent() {
     return curAddr;
   }
@@ -210,8 +213,13 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
     return addr >>> addrBits == 0;
   }
 
-  public void metainfoChanged(HexModel source) {
-    setBits(contents.getLogLength(), contents.getWidth());
+  // The state doesn't listen to its contents, so that writes to a memory
+  // nobody is watching stay cheap; instead the display methods notice here
+  // when the contents have been resized since the layout was computed.
+  private void checkBits() {
+    if (contents.getLogLength() != shownAddrBits
+        || contents.getWidth() != shownWidth)
+      setBits(contents.getLogLength(), contents.getWidth());
   }
 
   private boolean classicAppearance = true;
@@ -219,6 +227,7 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
   public void paint(Graphics g, int leftX, int topY,
       int offsetX, int offsetY,
       int DisplayWidth, int DisplayHeight, boolean classic, int dataLines) {
+    checkBits();
     if (RecalculateParameters || classicAppearance != classic || displayWidth != DisplayWidth || DisplayHeight != displayHeight) {
       classicAppearance = classic;
       displayWidth = DisplayWidth;
@@ -286,6 +295,7 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
   }
 
   void scrollToShow(long addr) {
+    checkBits();
     if (RecalculateParameters)
       return;
     int addrBits = contents.getLogLength();
@@ -313,6 +323,8 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
     } else {
       contents.setDimensions(addrBits, dataBits);
     }
+    shownAddrBits = addrBits;
+    shownWidth = dataBits;
     cursorLoc = -1;
     curAddr = -1;
     curScroll = 0;
@@ -327,6 +339,7 @@ class MemState implements InstanceData, Cloneable, HexModelListener {
   }
 
   void setScroll(long addr) {
+    checkBits();
     if (RecalculateParameters)
       return;
     long maxAddr = (1 << getAddrBits())
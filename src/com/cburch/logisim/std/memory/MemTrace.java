@@ -0,0 +1,291 @@
+/**
+ * This file is part of Logisim-evolution.
+ *
+ * Logisim-evolution is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Logisim-evolution is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with Logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Original code by Carl Burch (http://www.cburch.com), 2011.
+ * Subsequent modifications by:
+ *   + Haute École Spécialisée Bernoise
+ *     http://www.bfh.ch
+ *   + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *     http://hepia.hesge.ch/
+ *   + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *     http://www.heig-vd.ch/
+ *   + REDS Institute - HEIG-VD, Yverdon-les-Bains, Switzerland
+ *     http://reds.heig-vd.ch
+ * This version of the project is currently maintained by:
+ *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
+ */
+
+package com.cburch.logisim.std.memory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import com.cburch.logisim.circuit.Simulator;
+
+// Records the accesses made to one RAM or ROM, and watches for accesses to
+// chosen address ranges. Each access is a 16-byte record of four
+// little-endian 32-bit ints: the tick count, the kind (READ or WRITE), the
+// address, and the word read or written. Records go into a fixed-size ring
+// kept off the heap, so tracing allocates nothing and costs the simulation
+// little more than four stores per access, cheap enough to leave on while
+// the clock runs flat out. Without a stream, the ring simply holds the most
+// recent accesses. Once streamTo() is called, the ring is also drained to a
+// file each time it fills, so every access from then on ends up in the file,
+// which starts with a 16-byte header: MAGIC, VERSION, address bits, and data
+// bits, also as little-endian ints.
+//
+// Reads are recorded every time the memory drives its outputs, which can
+// happen several times per tick as the address settles. A repeat of the same
+// read (same tick, address, and value) is recorded only once.
+//
+// When an access hits a watchpoint, the hit is remembered (see takeHit) and
+// the simulator, if any, is paused once the current tick has settled.
+public class MemTrace {
+
+  public static final int READ = 1;
+  public static final int WRITE = 2;
+  public static final int MAGIC = 0x4352544c; // "LTRC" in little-endian
+  public static final int VERSION = 1;
+  public static final int RECORD_BYTES = 16;
+  public static final int DEFAULT_RECORDS = 1 << 16;
+
+  // One access, as reported for a watchpoint hit.
+  public static class Access {
+    public final int tick, kind, value;
+    public final long address;
+
+    Access(int tick, int kind, long address, int value) {
+      this.tick = tick;
+      this.kind = kind;
+      this.address = address;
+      this.value = value;
+    }
+  }
+
+  private final int addrBits, width, capacity;
+  private final ByteBuffer ring; // direct, so it lives off the heap
+  private final ByteBuffer view; // of ring, for draining
+  private long count; // accesses recorded so far
+  private long drained; // accesses already written to out
+  private long streamed; // the first access written to out
+  private FileChannel out;
+  private IOException streamError;
+
+  // last read recorded for each word of a line, for skipping repeats
+  private final int[] lastTick = new int[4];
+  private final long[] lastAddr = { -1, -1, -1, -1 };
+  private final int[] lastValue = new int[4];
+
+  // watchpoints as (lo, hi, kinds) triples, replaced rather than modified
+  private volatile long[] watches = new long[0];
+  private Access hit;
+  private volatile Simulator simulator;
+
+  public MemTrace(int addrBits, int width, int capacity) {
+    if (capacity <= 0 || capacity > Integer.MAX_VALUE / RECORD_BYTES)
+      throw new IllegalArgumentException("trace capacity " + capacity);
+    this.addrBits = addrBits;
+    this.width = width;
+    this.capacity = capacity;
+    ring = ByteBuffer.allocateDirect(capacity * RECORD_BYTES)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    view = ring.duplicate();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public synchronized long getRecordCount() {
+    return count;
+  }
+
+  // Pauses sim whenever a watchpoint is hit, if sim is not null.
+  public void setSimulator(Simulator sim) {
+    simulator = sim;
+  }
+
+  public boolean read(int tick, long addr, int value) {
+    if (!record(tick, addr, READ, value))
+      return false;
+    pause();
+    return true;
+  }
+
+  public boolean write(int tick, long addr, int value) {
+    if (!record(tick, addr, WRITE, value))
+      return false;
+    pause();
+    return true;
+  }
+
+  private void pause() {
+    Simulator sim = simulator;
+    if (sim != null)
+      sim.pause();
+  }
+
+  // Returns true if the access hit a watchpoint.
+  private synchronized boolean record(int tick, long addr, int kind, int value) {
+    int slot = (int) addr & 3;
+    if (kind == READ) {
+      if (lastAddr[slot] == addr && lastTick[slot] == tick
+          && lastValue[slot] == value)
+        return false;
+      lastTick[slot] = tick;
+      lastValue[slot] = value;
+      lastAddr[slot] = addr;
+    } else {
+      lastAddr[slot] = -1;
+    }
+    if (out != null && count - drained == capacity)
+      drain();
+    int at = (int) (count % capacity) * RECORD_BYTES;
+    ring.putInt(at, tick);
+    ring.putInt(at + 4, kind);
+    ring.putInt(at + 8, (int) addr);
+    ring.putInt(at + 12, value);
+    count++;
+    long[] w = watches;
+    for (int i = 0; i < w.length; i += 3) {
+      if ((w[i + 2] & kind) != 0 && w[i] <= addr && addr <= w[i + 1]) {
+        hit = new Access(tick, kind, addr, value);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Watches for accesses of the given kinds (READ, WRITE, or both) to any
+  // address from lo to hi, inclusive.
+  public synchronized void addWatchpoint(long lo, long hi, int kinds) {
+    long[] w = watches;
+    long[] ret = new long[w.length + 3];
+    System.arraycopy(w, 0, ret, 0, w.length);
+    ret[w.length] = lo;
+    ret[w.length + 1] = hi;
+    ret[w.length + 2] = kinds;
+    watches = ret;
+  }
+
+  public synchronized void clearWatchpoints() {
+    watches = new long[0];
+    hit = null;
+  }
+
+  public boolean hasWatchpoints() {
+    return watches.length > 0;
+  }
+
+  // Returns the most recent watchpoint hit since the last call, or null.
+  public synchronized Access takeHit() {
+    Access ret = hit;
+    hit = null;
+    return ret;
+  }
+
+  // Starts streaming to a new file, beginning with whatever is in the ring.
+  // Unless replace is set, an existing file is left alone: the call throws
+  // FileAlreadyExistsException, and any current stream carries on.
+  public synchronized void streamTo(File file, boolean replace) throws IOException {
+    if (replace)
+      close(); // the file being replaced may be the one streamed to now
+    FileChannel ch = replace
+        ? FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)
+        : FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.WRITE);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+      header.putInt(MAGIC).putInt(VERSION).putInt(addrBits).putInt(width);
+      header.flip();
+      while (header.hasRemaining())
+        ch.write(header);
+      close();
+    } catch (IOException e) {
+      ch.close();
+      throw e;
+    }
+    out = ch;
+    streamError = null;
+    drained = streamed = Math.max(0, count - capacity);
+    drain();
+  }
+
+  public synchronized boolean isStreaming() {
+    return out != null;
+  }
+
+  // Writes out everything recorded but not yet streamed, so the file is
+  // complete up to now.
+  public synchronized void flush() throws IOException {
+    drain();
+    checkStream();
+  }
+
+  // Finishes any stream, returning the number of accesses written to it.
+  public synchronized long close() throws IOException {
+    if (out == null) {
+      checkStream();
+      return 0;
+    }
+    drain();
+    long n = drained - streamed;
+    try {
+      out.close();
+    } catch (IOException e) {
+      if (streamError == null)
+        streamError = e;
+    }
+    out = null;
+    checkStream();
+    return n;
+  }
+
+  private void checkStream() throws IOException {
+    IOException e = streamError;
+    streamError = null;
+    if (e != null)
+      throw e;
+  }
+
+  // Called during propagation, where nothing can be thrown, so a failed
+  // stream is closed and the error saved for the next flush() or close().
+  private void drain() {
+    if (out == null)
+      return;
+    try {
+      while (drained < count) {
+        int start = (int) (drained % capacity);
+        int end = (int) Math.min(capacity, start + (count - drained));
+        view.limit(end * RECORD_BYTES).position(start * RECORD_BYTES);
+        while (view.hasRemaining())
+          out.write(view);
+        drained += end - start;
+      }
+    } catch (IOException e) {
+      streamError = e;
+      try {
+        out.close();
+      } catch (IOException e2) { }
+      out = null;
+    }
+  }
+}
@@ -35,6 +35,7 @@ import java.awt.Graphics;
 import java.util.WeakHashMap;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
+import com.cburch.logisim.Main;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Attribute;
@@ -598,8 +599,8 @@ public class Ram extends Mem {
       if (ret == null)
         return null;
       contents = ret.getContents();
-      if (contents.isClear())
-        return null;
+      if (contents.isClear() || contents.getImageFile() != null)
+        return null; // an image file is its own non-volatile storage
     }
     return AttributeSets.fixedSet(new Attribute<?>[] { NV_CONTENTS_ATTR },
         new Object[] { contents });
@@ -636,10 +637,6 @@ public class Ram extends Mem {
     }
   }
 
-  public MemContents getContents(InstanceState ramState) {
-    return (MemContents)getState(ramState).getContents();
-  }
-
   @Override
   MemState getState(Instance instance, CircuitState state) {
     return getState(state.getInstanceState(instance));
@@ -652,9 +649,14 @@ public class Ram extends Mem {
       AttributeOption type = state.getInstance().getAttributeValue(RamAttributes.ATTR_TYPE);
       int addrBits = state.getAttributeValue(ADDR_ATTR).getWidth();
       int dataBits = state.getAttributeValue(DATA_ATTR).getWidth();
-      MemContents contents = MemContents.create(addrBits, dataBits);
+      MemContents contents = mapImage(state.getAttributeSet(), state.getProject());
+      if (contents == null)
+        contents = MemContents.create(addrBits, dataBits);
       Instance instance = state.getInstance();
-      ret = new RamState(instance, contents, new MemListener(instance));
+      // with no canvas to repaint, leave the contents without listeners, so
+      // the simulator's writes do no more than store the value
+      MemListener listener = Main.headless ? null : new MemListener(instance);
+      ret = new RamState(instance, contents, listener);
       state.setData(ret);
     } else {
       ret.setRam(state.getInstance());
@@ -763,6 +765,8 @@ public class Ram extends Mem {
     int WE = CLK+1; // 1, always
     int LE = WE+1; // (datalines) of them, only if multiple data lines
 
+    MemTrace trace = myState.getTrace();
+
     // perform writes
     Object trigger = state.getAttributeValue(StdAttr.TRIGGER);
     boolean triggered = myState.setClock(state.getPortValue(CLK), trigger);
@@ -775,7 +779,9 @@ public class Ram extends Mem {
             continue;
         }
         int dataValue = state.getPortValue(DATAIN[i]).toIntValue();
-        myState.getContents().set(addr+i, dataValue);
+        myState.getContents().write(addr+i, dataValue);
+        if (trace != null)
+          trace.write(state.getTickCount(), addr+i, dataValue);
       }
     }
 
@@ -785,6 +791,8 @@ public class Ram extends Mem {
     if (outputEnabled && goodAddr && (addr % dataLines == 0)) {
       for (int i = 0; i < dataLines; i++) {
         int val = myState.getContents().get(addr+i);
+        if (trace != null)
+          trace.read(state.getTickCount(), addr+i, val);
         state.setPort(DATAOUT[i], Value.createKnown(width, val), DELAY);
       }
     } else if (outputEnabled && (addrValue.isErrorValue() || (goodAddr && (addr % dataLines != 0)))) {
@@ -62,6 +62,7 @@ public class RamAttributes extends AbstractAttributeSet {
   private static List<Attribute<?>> ATTRIBUTES = Arrays
       .asList(new Attribute<?>[] { Mem.ADDR_ATTR, Mem.DATA_ATTR, Mem.LINE_ATTR,
         StdAttr.TRIGGER, ATTR_TYPE, ATTR_DBUS,
+        Mem.IMAGE_ATTR, Mem.IMAGE_MODE_ATTR,
         StdAttr.LABEL, StdAttr.LABEL_FONT,
         StdAttr.APPEARANCE});
 
@@ -74,6 +75,8 @@ public class RamAttributes extends AbstractAttributeSet {
   private AttributeOption BusStyle = BUS_SEP; // BUS_BIDIR;
   private Font LabelFont = StdAttr.DEFAULT_LABEL_FONT;
   private AttributeOption Appearance = StdAttr.APPEAR_CLASSIC;
+  private String image = "";
+  private AttributeOption imageMode = Mem.IMAGE_COPY_ON_WRITE;
 
   RamAttributes() { }
 
@@ -87,6 +90,8 @@ public class RamAttributes extends AbstractAttributeSet {
     d.LabelFont = LabelFont;
     d.Appearance = Appearance;
     d.lineSize = lineSize;
+    d.image = image;
+    d.imageMode = imageMode;
   }
 
   @Override
@@ -114,6 +119,10 @@ public class RamAttributes extends AbstractAttributeSet {
       return (V) LabelFont;
     if (attr == StdAttr.APPEARANCE)
       return (V) Appearance;
+    if (attr == Mem.IMAGE_ATTR)
+      return (V) image;
+    if (attr == Mem.IMAGE_MODE_ATTR)
+      return (V) imageMode;
     return null;
   }
 
@@ -137,5 +146,9 @@ public class RamAttributes extends AbstractAttributeSet {
       LabelFont = (Font) value;
     else if (attr == StdAttr.APPEARANCE)
       Appearance = (AttributeOption) value;
+    else if (attr == Mem.IMAGE_ATTR)
+      image = (String) value;
+    else if (attr == Mem.IMAGE_MODE_ATTR)
+      imageMode = (AttributeOption) value;
   }
 }
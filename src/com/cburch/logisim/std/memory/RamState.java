@@ -29,6 +29,11 @@
  */
 package com.cburch.logisim.std.memory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.cburch.logisim.comp.Checkpointable;
 import com.cburch.logisim.data.AttributeEvent;
 import com.cburch.logisim.data.AttributeListener;
 import com.cburch.logisim.data.AttributeSet;
@@ -39,7 +44,7 @@ import com.cburch.logisim.instance.InstanceData;
 import com.cburch.logisim.std.memory.Mem.MemListener;
 
 public class RamState extends MemState
-  implements InstanceData, AttributeListener {
+  implements InstanceData, AttributeListener, Checkpointable {
 
   private Instance parent;
   private MemListener listener;
@@ -54,7 +59,8 @@ public class RamState extends MemState
     if (parent != null) {
       parent.getAttributeSet().addAttributeWeakListener(null, this);
     }
-    contents.addHexModelWeakListener(null, listener);
+    if (listener != null)
+      contents.addHexModelWeakListener(null, listener);
   }
 
   @Override
@@ -68,12 +74,23 @@ public class RamState extends MemState
     getContents().setDimensions(addrBits.getWidth(), dataBits.getWidth());
   }
 
+  public void writeCheckpoint(DataOutput out) throws IOException {
+    clockState.writeCheckpoint(out);
+    getContents().writeCheckpoint(out);
+  }
+
+  public void readCheckpoint(DataInput in) throws IOException {
+    clockState.readCheckpoint(in);
+    getContents().readCheckpoint(in);
+  }
+
   @Override
   public RamState clone() {
     RamState ret = (RamState) super.clone();
     ret.parent = null;
     ret.clockState = this.clockState.clone();
-    ret.getContents().addHexModelWeakListener(null, listener);
+    if (listener != null)
+      ret.getContents().addHexModelWeakListener(null, listener);
     return ret;
   }
 
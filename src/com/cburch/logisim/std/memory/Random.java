@@ -35,6 +35,9 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.event.MouseEvent;
 import java.awt.event.KeyEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.data.Attribute;
@@ -152,7 +155,7 @@ public class Random extends InstanceFactory {
 
     private long initSeed;
     private long curSeed;
-    private int value;
+    private long value;
     private boolean isResetting;
 
     public StateData(Object seed) {
@@ -174,7 +177,7 @@ public class Random extends InstanceFactory {
       }
       this.initSeed = start;
       this.curSeed = start;
-      this.value = (int) start;
+      this.value = start;
       this.isResetting = true;
       return true;
     }
@@ -183,11 +186,32 @@ public class Random extends InstanceFactory {
       this.isResetting = false;
     }
 
+    @Override
+    public void writeCheckpoint(DataOutput out) throws IOException {
+      super.writeCheckpoint(out);
+      out.writeLong(initSeed);
+      out.writeLong(curSeed);
+      out.writeLong(value);
+      out.writeBoolean(isResetting);
+    }
+
+    @Override
+    public void readCheckpoint(DataInput in) throws IOException {
+      super.readCheckpoint(in);
+      initSeed = in.readLong();
+      curSeed = in.readLong();
+      value = in.readLong();
+      isResetting = in.readBoolean();
+    }
+
     void step() {
       long v = curSeed;
       v = (v * multiplier + addend) & mask;
       curSeed = v;
-      value = (int) (v >> 12);
+      // The low 32 bits are what they always were, so narrow generators
+      // keep their sequences. The high bits mix in all of the seed.
+      value = ((v >> 12) & 0xffffffffL)
+          | ((v * 0x9e3779b97f4a7c15L) & 0xffffffff00000000L);
     }
   }
 
@@ -269,7 +293,7 @@ public class Random extends InstanceFactory {
   }
 
   private void DrawData(InstancePainter painter, int xpos, int ypos,
-      int NrOfBits, int Value) {
+      int NrOfBits, long Value) {
     Graphics g = painter.getGraphics();
     GraphicsUtil.switchToWidth(g, 2);
     g.drawRect(xpos, ypos, 80, 20);
@@ -283,6 +307,9 @@ public class Random extends InstanceFactory {
 
   @Override
   public HDLSupport getHDLSupport(HDLSupport.ComponentContext ctx) {
+    // The HDL generator only produces the low 32 bits of the sequence.
+    if (ctx.attrs.getValue(StdAttr.WIDTH).getWidth() > 32)
+      return null;
     return new RandomHDLGenerator(ctx);
   }
 
@@ -305,7 +332,7 @@ public class Random extends InstanceFactory {
     String a;
     String b = null;
     if (painter.getShowState()) {
-      int val = state == null ? 0 : state.value;
+      long val = state == null ? 0 : state.value;
       String str = StringUtil.toHexString(width, val);
       if (str.length() <= 4) {
         a = str;
@@ -352,7 +379,7 @@ public class Random extends InstanceFactory {
     int x = bds.getX();
     int y = bds.getY();
     StateData state = (StateData) painter.getData();
-    int val = state == null ? 0 : state.value;
+    long val = state == null ? 0 : state.value;
     BitWidth widthVal = painter.getAttributeValue(StdAttr.WIDTH);
     int width = widthVal == null ? 8 : widthVal.getWidth();
 
@@ -362,6 +389,11 @@ public class Random extends InstanceFactory {
 
   }
 
+  @Override
+  public int getClockPort(Instance instance) {
+    return CK;
+  }
+
   @Override
   public void propagate(InstanceState state) {
     StateData data = (StateData) state.getData();
@@ -30,20 +30,36 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import com.cburch.logisim.instance.InstanceData;
 
 class RegisterData extends ClockState implements InstanceData {
-  int value;
+  long value;
 
   public RegisterData() {
     value = 0;
   }
 
-  public int getValue() {
+  public long getValue() {
     return value;
   }
 
-  public void setValue(int value) {
+  public void setValue(long value) {
     this.value = value;
   }
+
+  @Override
+  public void writeCheckpoint(DataOutput out) throws IOException {
+    super.writeCheckpoint(out);
+    out.writeLong(value);
+  }
+
+  @Override
+  public void readCheckpoint(DataInput in) throws IOException {
+    super.readCheckpoint(in);
+    value = in.readLong();
+  }
 }
@@ -303,7 +303,9 @@ public class Rom extends Mem {
   MemState getState(Instance instance, CircuitState state) {
     MemState ret = (MemState) instance.getData(state);
     if (ret == null) {
-      MemContents contents = getMemContents(instance);
+      MemContents contents = mapImage(instance.getAttributeSet(), state.getProject());
+      if (contents == null)
+        contents = getMemContents(instance);
       ret = new MemState(contents);
       instance.setData(state, ret);
     }
@@ -314,7 +316,9 @@ public class Rom extends Mem {
   MemState getState(InstanceState state) {
     MemState ret = (MemState) state.getData();
     if (ret == null) {
-      MemContents contents = getMemContents(state.getInstance());
+      MemContents contents = mapImage(state.getAttributeSet(), state.getProject());
+      if (contents == null)
+        contents = getMemContents(state.getInstance());
       ret = new MemState(contents);
       state.setData(ret);
     }
@@ -421,10 +425,15 @@ public class Rom extends Mem {
         state.setPort(MEM_INPUTS+i-1, Value.createError(dataBits), DELAY);
       return;
     }
+    MemTrace trace = myState.getTrace();
     int val = myState.getContents().get(addr);
+    if (trace != null)
+      trace.read(state.getTickCount(), addr, val);
     state.setPort(DATA, Value.createKnown(dataBits, val), DELAY);
     for (int i = 1; i < dataLines; i++) {
       val = myState.getContents().get(addr+i);
+      if (trace != null)
+        trace.read(state.getTickCount(), addr+i, val);
       state.setPort(MEM_INPUTS+i-1, Value.createKnown(dataBits, val), DELAY);
     }
   }
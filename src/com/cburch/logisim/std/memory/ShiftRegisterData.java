@@ -30,6 +30,9 @@
 
 package com.cburch.logisim.std.memory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Arrays;
 
 import com.cburch.logisim.data.BitWidth;
@@ -60,6 +63,27 @@ class ShiftRegisterData extends ClockState implements InstanceData {
     return ret;
   }
 
+  @Override
+  public void writeCheckpoint(DataOutput out) throws IOException {
+    super.writeCheckpoint(out);
+    out.writeInt(vs.length);
+    out.writeInt(vsPos);
+    for (Value v : vs)
+      v.write(out);
+  }
+
+  @Override
+  public void readCheckpoint(DataInput in) throws IOException {
+    super.readCheckpoint(in);
+    int n = in.readInt();
+    if (n != vs.length)
+      throw new IOException("shift register has " + vs.length
+          + " stages, but checkpoint has " + n);
+    vsPos = in.readInt();
+    for (int i = 0; i < n; i++)
+      vs[i] = Value.read(in);
+  }
+
   public Value get(int index) {
     int i = vsPos + index;
     Value[] v = vs;
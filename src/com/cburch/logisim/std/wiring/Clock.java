@@ -35,12 +35,16 @@ import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.event.MouseEvent;
 import java.awt.event.KeyEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import javax.swing.Icon;
 
 import com.bfh.logisim.hdlgenerator.HDLSupport;
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.RadixOption;
+import com.cburch.logisim.comp.Checkpointable;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
@@ -106,7 +110,7 @@ public class Clock extends InstanceFactory {
     }
   }
 
-  private static class ClockState implements InstanceData, Cloneable {
+  private static class ClockState implements InstanceData, Cloneable, Checkpointable {
     Value sending = Value.UNKNOWN;
     int currentTick;
 
@@ -114,6 +118,16 @@ public class Clock extends InstanceFactory {
       updateTick(curTick, attrs);
     }
 
+    public void writeCheckpoint(DataOutput out) throws IOException {
+      sending.write(out);
+      out.writeInt(currentTick);
+    }
+
+    public void readCheckpoint(DataInput in) throws IOException {
+      sending = Value.read(in);
+      currentTick = in.readInt();
+    }
+
     boolean updateTick(int ticks, AttributeSet attrs) {
       int durationHigh = attrs.getValue(ATTR_HIGH).intValue();
       int durationLow = attrs.getValue(ATTR_LOW).intValue();
@@ -217,6 +231,8 @@ public class Clock extends InstanceFactory {
     } else if (attr == StdAttr.FACING) {
       instance.recomputeBounds();
       instance.computeLabelTextField(Instance.AVOID_LEFT);
+    } else if (attr == ATTR_HIGH || attr == ATTR_LOW || attr == ATTR_PHASE) {
+      CircuitState.clocksChanged();
     }
   }
 
@@ -85,7 +85,7 @@ public class Constant extends InstanceFactory {
       if (attr == StdAttr.WIDTH)
         return (V) width;
       if (attr == ATTR_VALUE)
-        return (V) Integer.valueOf(value.toIntValue());
+        return (V) Long.valueOf(value.toLongValue());
       return null;
     }
 
@@ -98,7 +98,7 @@ public class Constant extends InstanceFactory {
         this.value = this.value.extendWidth(width.getWidth(),
             this.value.get(this.value.getWidth() - 1));
       } else if (attr == ATTR_VALUE) {
-        int val = ((Integer) value).intValue();
+        long val = ((Long) value).longValue();
         this.value = Value.createKnown(width, val);
       }
     }
@@ -122,8 +122,8 @@ public class Constant extends InstanceFactory {
     }
   }
 
-  public static final Attribute<Integer> ATTR_VALUE = Attributes
-      .forHexInteger("value", S.getter("constantValueAttr"));
+  public static final Attribute<Long> ATTR_VALUE = Attributes
+      .forHexLong("value", S.getter("constantValueAttr"));
 
   public static InstanceFactory FACTORY = new Constant();
 
@@ -198,8 +198,8 @@ public class Constant extends InstanceFactory {
 
   @Override
   public void paintGhost(InstancePainter painter) {
-    int v = painter.getAttributeValue(ATTR_VALUE).intValue();
-    String vStr = Integer.toHexString(v);
+    long v = painter.getAttributeValue(ATTR_VALUE).longValue();
+    String vStr = Long.toHexString(v);
     Bounds bds = getOffsetBounds(painter.getAttributeSet());
 
     Graphics g = painter.getGraphics();
@@ -233,7 +233,7 @@ public class Constant extends InstanceFactory {
 
     Graphics g = painter.getGraphics();
     if (w == 1) {
-      int v = painter.getAttributeValue(ATTR_VALUE).intValue();
+      long v = painter.getAttributeValue(ATTR_VALUE).longValue();
       Value val = v == 1 ? Value.TRUE : Value.FALSE;
       g.setColor(val.getColor());
       GraphicsUtil.drawCenteredText(g, "" + v, 10, 9);
@@ -248,8 +248,8 @@ public class Constant extends InstanceFactory {
   public void paintInstance(InstancePainter painter) {
     Bounds bds = painter.getOffsetBounds();
     BitWidth width = painter.getAttributeValue(StdAttr.WIDTH);
-    int intValue = painter.getAttributeValue(ATTR_VALUE).intValue();
-    Value v = Value.createKnown(width, intValue);
+    long longValue = painter.getAttributeValue(ATTR_VALUE).longValue();
+    Value v = Value.createKnown(width, longValue);
     Location loc = painter.getLocation();
     int x = loc.getX();
     int y = loc.getY();
@@ -280,7 +280,7 @@ public class Constant extends InstanceFactory {
   @Override
   public void propagate(InstanceState state) {
     BitWidth width = state.getAttributeValue(StdAttr.WIDTH);
-    int value = state.getAttributeValue(ATTR_VALUE).intValue();
+    long value = state.getAttributeValue(ATTR_VALUE).longValue();
     state.setPort(0, Value.createKnown(width, value), 1);
   }
 
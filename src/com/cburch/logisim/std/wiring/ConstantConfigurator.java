@@ -33,9 +33,10 @@ package com.cburch.logisim.std.wiring;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
 import com.cburch.logisim.instance.StdAttr;
-import com.cburch.logisim.tools.key.IntegerConfigurator;
+import com.cburch.logisim.tools.key.NumericConfigurator;
 
-class ConstantConfigurator extends IntegerConfigurator {
+// Typed digits only reach 31 bits; wider values go through the attribute table.
+class ConstantConfigurator extends NumericConfigurator<Long> {
   public ConstantConfigurator() {
     super(Constant.ATTR_VALUE, 0, 0, 0, 16);
   }
@@ -53,11 +54,11 @@ class ConstantConfigurator extends IntegerConfigurator {
 
   @Override
   public int getMinimumValue(AttributeSet attrs) {
-    BitWidth width = attrs.getValue(StdAttr.WIDTH);
-    if (width.getWidth() < 32) {
-      return 0;
-    } else {
-      return Integer.MIN_VALUE;
-    }
+    return 0;
+  }
+
+  @Override
+  protected Long createValue(int val) {
+    return Long.valueOf(val);
   }
 }
@@ -42,6 +42,9 @@ import java.awt.event.WindowEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import javax.swing.BorderFactory;
 import javax.swing.Icon;
@@ -56,6 +59,7 @@ import javax.swing.event.DocumentEvent;
 
 import com.cburch.logisim.circuit.CircuitState;
 import com.cburch.logisim.circuit.RadixOption;
+import com.cburch.logisim.comp.Checkpointable;
 import com.cburch.logisim.comp.Component;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeOption;
@@ -172,9 +176,10 @@ public class Pin extends InstanceFactory {
         hi = (1L << bitWidth-1) - 1;
       } else {
         lo = 0;
-        hi = (1L << bitWidth) - 1;
+        hi = (bitWidth == 64 ? -1L : (1L << bitWidth) - 1);
       }
-      add(new JLabel(S.fmt(tristate ? "pinEditRangeTristate" : "pinEditRange", lo, hi)), gbc);
+      add(new JLabel(S.fmt(tristate ? "pinEditRangeTristate" : "pinEditRange",
+              lo, Long.toUnsignedString(hi))), gbc);
       gbc.gridy++;
       add(text, gbc);
 
@@ -189,7 +194,7 @@ public class Pin extends InstanceFactory {
           newVal = Value.createUnknown(BitWidth.create(bitWidth));
         } else {
           try {
-            int n = (int) Long.parseLong(s);
+            long n = parse(s);
             newVal = Value.createKnown(BitWidth.create(bitWidth), n);
           } catch (NumberFormatException exception) {
             return;
@@ -201,6 +206,13 @@ public class Pin extends InstanceFactory {
       }
     }
 
+    private long parse(String s) {
+      // a 64-bit unsigned value doesn't fit in a signed long
+      if (bitWidth == 64 && radix != RadixOption.RADIX_10_SIGNED)
+        return Long.parseUnsignedLong(s);
+      return Long.parseLong(s);
+    }
+
     boolean isEditValid(String s) {
       if (s == null)
         return false;
@@ -210,7 +222,9 @@ public class Pin extends InstanceFactory {
       if (tristate && (s.matches("x+") || s.matches("\\?+")))
         return true;
       try {
-        long n = Long.parseLong(s);
+        long n = parse(s);
+        if (bitWidth == 64)
+          return true;
         if (radix == RadixOption.RADIX_10_SIGNED)
           return (n >= -(1L << (bitWidth-1)) && n < (1L << bitWidth-1));
         else
@@ -476,11 +490,21 @@ public class Pin extends InstanceFactory {
     }
   }
 
-  private static class PinState implements InstanceData, Cloneable {
+  private static class PinState implements InstanceData, Cloneable, Checkpointable {
 
     Value foundValue; // for color - received value from wire connected to this pin
     Value intendedValue; // for display - output: received value; input: UI or parent value
 
+    public void writeCheckpoint(DataOutput out) throws IOException {
+      foundValue.write(out);
+      intendedValue.write(out);
+    }
+
+    public void readCheckpoint(DataInput in) throws IOException {
+      foundValue = Value.read(in);
+      intendedValue = Value.read(in);
+    }
+
     @Override
     public Object clone() {
       try {
@@ -35,8 +35,12 @@ import java.awt.Font;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.event.KeyEvent;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 import com.cburch.logisim.circuit.RadixOption;
+import com.cburch.logisim.comp.Checkpointable;
 import com.cburch.logisim.data.Attribute;
 import com.cburch.logisim.data.AttributeSet;
 import com.cburch.logisim.data.BitWidth;
@@ -77,9 +81,17 @@ public class Probe extends InstanceFactory {
     }
   }
 
-  private static class StateData implements InstanceData, Cloneable {
+  private static class StateData implements InstanceData, Cloneable, Checkpointable {
     Value curValue = Value.NIL;
 
+    public void writeCheckpoint(DataOutput out) throws IOException {
+      curValue.write(out);
+    }
+
+    public void readCheckpoint(DataInput in) throws IOException {
+      curValue = Value.read(in);
+    }
+
     @Override
     public Object clone() {
       try {
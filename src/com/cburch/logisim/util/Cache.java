@@ -27,49 +27,141 @@
  * This version of the project is currently maintained by:
  *   + Kevin Walsh (kwalsh@holycross.edu, http://mathcs.holycross.edu/~kwalsh)
  */
-
 package com.cburch.logisim.util;
 
 /**
  * Allows immutable objects to be cached in memory in order to reduce the
  * creation of duplicate objects.
+ *
+ * The cache is set-associative: each hash code selects one set of
+ * <code>ways</code> slots, and the most recently inserted or used entry sits
+ * at the front of its set. With the default of one way this is the old
+ * direct-mapped table.
+ *
+ * Lookups are shared by every simulation thread, so a hit in the front way
+ * writes nothing at all. Hit and miss counts are only kept once counting is
+ * turned on, for tuning, and are updated without synchronization, so they are
+ * only approximate when several threads share a cache.
  */
 public class Cache<E> {
-  private int mask;
-  private Object[] data;
+  public static final int MAX_LOG_SIZE = 20;
+
+  private final int mask;
+  private final int ways;
+  private final Object[] data;
+  private boolean counting;
+  private long hits, misses;
 
   public Cache() {
     this(8);
   }
 
   public Cache(int logSize) {
-    if (logSize > 12)
-      logSize = 12;
+    this(logSize, 1);
+  }
 
+  // Creates a cache holding 2^logSize entries in total, arranged as sets of
+  // ways entries each. The number of ways is rounded up to a power of two.
+  public Cache(int logSize, int ways) {
+    if (logSize > MAX_LOG_SIZE)
+      logSize = MAX_LOG_SIZE;
+    int w = 1;
+    while (w < ways && w < (1 << logSize))
+      w <<= 1;
+    this.ways = w;
     data = new Object[1 << logSize];
-    mask = data.length - 1;
+    mask = (data.length / w) - 1;
+  }
+
+  // Spreads the bits of a hash code before choosing a set, since many of our
+  // hash codes (e.g. grid-aligned locations) share their low bits.
+  private int base(int hashCode) {
+    int h = hashCode * 0x9E3779B9;
+    return ((h ^ (h >>> 16)) & mask) * ways;
+  }
+
+  public int getWays() {
+    return ways;
+  }
+
+  public int getSize() {
+    return data.length;
+  }
+
+  public void setCounting(boolean value) {
+    counting = value;
+  }
+
+  public long getHitCount() {
+    return hits;
+  }
+
+  public long getMissCount() {
+    return misses;
+  }
+
+  public void resetCounts() {
+    hits = 0;
+    misses = 0;
   }
 
+  /** Returns the front entry of the set for the given hash code. */
   public E get(int hashCode) {
-    return (E)data[hashCode & mask];
+    return (E)data[base(hashCode)];
+  }
+
+  /**
+   * Returns the entry in the given way (0 to getWays()-1) of the set for the
+   * given hash code, or null. Callers check each way for a match, then report
+   * the outcome using hit() or put().
+   */
+  public E get(int hashCode, int way) {
+    return (E)data[base(hashCode) + way];
   }
 
   public E get(E value) {
     if (value == null)
       return null;
-    int code = value.hashCode() & mask;
-    E ret = (E)data[code];
-    if (ret != null && ret.equals(value)) {
-      return ret;
-    } else {
-      data[code] = value;
-      return value;
+    int code = value.hashCode();
+    int b = base(code);
+    for (int i = 0; i < ways; i++) {
+      E ret = (E)data[b + i];
+      if (ret != null && ret.equals(value)) {
+        hit(code, i);
+        return ret;
+      }
+    }
+    put(code, value);
+    return value;
+  }
+
+  /**
+   * Counts a successful lookup of the entry in the given way, and moves that
+   * entry one step towards the front of its set.
+   */
+  public void hit(int hashCode, int way) {
+    if (counting)
+      hits++;
+    if (way > 0) {
+      int b = base(hashCode);
+      Object t = data[b + way];
+      data[b + way] = data[b + way - 1];
+      data[b + way - 1] = t;
     }
   }
 
+  /**
+   * Counts a failed lookup, and inserts the new entry at the front of its
+   * set, evicting the entry at the back.
+   */
   public void put(int hashCode, E value) {
     if (value != null) {
-      data[hashCode & mask] = value;
+      if (counting)
+        misses++;
+      int b = base(hashCode);
+      for (int i = ways - 1; i > 0; i--)
+        data[b + i] = data[b + i - 1];
+      data[b] = value;
     }
   }
 }
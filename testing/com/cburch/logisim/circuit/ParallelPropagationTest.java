@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.cburch.logisim.Main;
+import com.cburch.logisim.comp.Component;
+import com.cburch.logisim.comp.EndData;
+import com.cburch.logisim.file.Loader;
+import com.cburch.logisim.file.LogisimFile;
+import com.cburch.logisim.file.Options;
+import com.cburch.logisim.proj.Project;
+
+public class ParallelPropagationTest {
+
+	private static final int TICKS = 40;
+
+	/**
+	 * Simulates the same circuit with simThreads = 1 and with several
+	 * threads, and checks that every value, at every level of the hierarchy,
+	 * is the same after each clock tick. The circuit is a binary tree of
+	 * subcircuits, 8 levels deep, so sibling substates are dirty together and
+	 * the parallel runs fork at every level.
+	 */
+	@Test
+	public void shouldMatchSingleThreadedValues() throws Exception {
+		File f = new File("bench-src/circuits/tree8.circ");
+		List<String> expect = simulate(f, 1);
+		for (int threads : new int[] { 2, 4 })
+			assertEquals("tree8 with " + threads + " threads",
+					expect, simulate(f, threads));
+	}
+
+	private List<String> simulate(File f, int threads) throws Exception {
+		Main.headless = true;
+		LogisimFile.FileWithSimulations file = new Loader(null).openLogisimFile(f);
+		file.file.getOptions().getAttributeSet()
+				.setAttr(Options.ATTR_SIM_THREADS, Integer.valueOf(threads));
+		Project proj = new Project(file);
+		CircuitState state = CircuitState.createRootState(proj,
+				file.file.getMainCircuit());
+		Propagator prop = state.getPropagator();
+		List<String> trace = new ArrayList<>();
+		prop.propagate();
+		trace.add(dump(state));
+		for (int i = 0; i < TICKS; i++) {
+			prop.toggleClocks();
+			prop.propagate();
+			trace.add(dump(state));
+		}
+		return trace;
+	}
+
+	// Lists the values at every component end, recursing into subcircuits.
+	// Each component's entry starts with its location, and the entries are
+	// sorted, so the order depends on neither state ids nor hashing.
+	private static String dump(CircuitState state) {
+		List<String> entries = new ArrayList<>();
+		for (Component comp : state.getCircuit().getNonWires()) {
+			StringBuilder s = new StringBuilder();
+			s.append(comp.getLocation()).append(' ')
+					.append(comp.getFactory().getName()).append(':');
+			for (EndData end : comp.getEnds())
+				s.append(' ').append(end.getLocation()).append('=')
+						.append(state.getValue(end.getLocation()));
+			if (comp.getFactory() instanceof SubcircuitFactory) {
+				SubcircuitFactory sub = (SubcircuitFactory) comp.getFactory();
+				s.append(" [").append(dump(sub.getSubstate(state, comp))).append(']');
+			}
+			entries.add(s.toString());
+		}
+		Collections.sort(entries);
+		return String.join(", ", entries);
+	}
+}
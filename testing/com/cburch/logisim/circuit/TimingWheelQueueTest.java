@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * This file is part of logisim-evolution.
+ *
+ *   logisim-evolution is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   logisim-evolution is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with logisim-evolution.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *   Original code by Carl Burch (http://www.cburch.com), 2011.
+ *   Subsequent modifications by :
+ *     + Haute École Spécialisée Bernoise
+ *       http://www.bfh.ch
+ *     + Haute École du paysage, d'ingénierie et d'architecture de Genève
+ *       http://hepia.hesge.ch/
+ *     + Haute École d'Ingénierie et de Gestion du Canton de Vaud
+ *       http://www.heig-vd.ch/
+ *   The project is currently maintained by :
+ *     + REDS Institute - HEIG-VD
+ *       Yverdon-les-Bains, Switzerland
+ *       http://reds.heig-vd.ch
+ *******************************************************************************/
+
+package com.cburch.logisim.circuit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TimingWheelQueueTest {
+
+	private static class Event extends SplayQueue.Node {
+		Event(int time, int serial) {
+			super(((long) time << 32) | (serial & 0xffffffffL));
+		}
+	}
+
+	/**
+	 * Feeds the same random (time, serial) events to a TimingWheelQueue and a
+	 * SplayQueue, removing some as it goes, the way Propagator does, and checks
+	 * that both queues hand them back in the same order. Most delays are small,
+	 * but some go far past the end of the wheel, so events pass through the
+	 * overflow queue and are migrated into the wheel as time catches up.
+	 */
+	@Test
+	public void shouldMatchSplayQueueOrder() {
+		for (long seed = 1; seed <= 20; seed++)
+			checkSameOrder(new Random(seed), 20000);
+	}
+
+	/**
+	 * Checks that an empty wheel skips straight ahead to events that were
+	 * scheduled far in the future.
+	 */
+	@Test
+	public void shouldSkipAheadToOverflowEvents() {
+		TimingWheelQueue<Event> wheel = new TimingWheelQueue<>();
+		wheel.add(new Event(5000000, 2));
+		wheel.add(new Event(3, 1));
+		wheel.add(new Event(5000000, 3));
+		assertEquals(3, wheel.remove().key >> 32);
+		assertEquals(((long) 5000000 << 32) | 2, wheel.remove().key);
+		assertEquals(((long) 5000000 << 32) | 3, wheel.remove().key);
+		assertNull(wheel.remove());
+		assertTrue(wheel.isEmpty());
+	}
+
+	private void checkSameOrder(Random rng, int n) {
+		TimingWheelQueue<Event> wheel = new TimingWheelQueue<>();
+		SplayQueue<Event> splay = new SplayQueue<>();
+		int now = 0;
+		int serial = 0;
+		int added = 0;
+		while (added < n || !splay.isEmpty()) {
+			if (added < n && (splay.isEmpty() || rng.nextInt(3) != 0)) {
+				int delay;
+				switch (rng.nextInt(10)) {
+				case 0:
+					delay = 1024 + rng.nextInt(100000); // well past the wheel
+					break;
+				case 1:
+					delay = 1000 + rng.nextInt(50); // around the wheel's end
+					break;
+				default:
+					delay = 1 + rng.nextInt(20);
+				}
+				int time = now + delay;
+				serial++;
+				wheel.add(new Event(time, serial));
+				splay.add(new Event(time, serial));
+				added++;
+			} else {
+				Event expect = splay.remove();
+				Event got = wheel.remove();
+				assertEquals(expect.key, got.key);
+				now = (int) (got.key >> 32);
+			}
+			assertEquals(splay.size(), wheel.size());
+		}
+		assertNull(wheel.remove());
+		assertTrue(wheel.isEmpty());
+	}
+}